@@ -63,6 +63,14 @@ AUMETADATAPAGEINFO=src/generated/java/org/lockss/laaws/md/model/AuMetadataPageIn
 fixImport $AUMETADATAPAGEINFO org.lockss.laaws.md.model.ItemMetadata org.lockss.metadata.ItemMetadata
 fixImport $AUMETADATAPAGEINFO org.lockss.laaws.md.model.PageInfo org.lockss.util.rest.repo.model.PageInfo
 
+# Edit AuMetadataChanges.java.
+AUMETADATACHANGES=src/generated/java/org/lockss/laaws/md/model/AuMetadataChanges.java
+fixImport $AUMETADATACHANGES org.lockss.laaws.md.model.ItemMetadata org.lockss.metadata.ItemMetadata
+
+# Edit ItemInfoPageInfo.java.
+ITEMINFOPAGEINFO=src/generated/java/org/lockss/laaws/md/model/ItemInfoPageInfo.java
+fixImport $ITEMINFOPAGEINFO org.lockss.laaws.md.model.PageInfo org.lockss.util.rest.repo.model.PageInfo
+
 # Edit MdupdatesApiDelegate.java.
 MDUPDATES_API_DELEGATE=src/generated/java/org/lockss/laaws/md/api/MdupdatesApiDelegate.java
 fixImport $MDUPDATES_API_DELEGATE org.lockss.laaws.md.model.Job org.lockss.metadata.extractor.job.Job
@@ -76,6 +84,10 @@ fixImport $MDUPDATES_API org.lockss.laaws.md.model.MetadataUpdateSpec org.lockss
 fixImport $MDUPDATES_API org.lockss.laaws.md.model.Status org.lockss.metadata.extractor.job.Status
 fixResponseCode1234 $MDUPDATES_API
 
+# Edit MdupdateResult.java.
+MDUPDATERESULT=src/generated/java/org/lockss/laaws/md/model/MdupdateResult.java
+fixImport $MDUPDATERESULT org.lockss.laaws.md.model.Job org.lockss.metadata.extractor.job.Job
+
 # Edit JobPageInfo.java.
 JOBPAGEINFO=src/generated/java/org/lockss/laaws/md/model/JobPageInfo.java
 fixImport $JOBPAGEINFO org.lockss.laaws.md.model.Job org.lockss.metadata.extractor.job.Job
@@ -29,8 +29,15 @@ package org.lockss.laaws.md.client;
 
 import java.nio.charset.Charset;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
+import org.lockss.laaws.md.config.MessageConverterConfigurer;
 import org.lockss.util.rest.RestUtil;
 import org.springframework.http.HttpHeaders;
 
@@ -44,6 +51,12 @@ public class BaseClient {
   private static final String REST_PORT = "24615";
   protected static final String baseUri = "http://localhost:" + REST_PORT;
 
+  // The name of the system property with the media type of the responses to
+  // be requested, such as application/cbor or application/x-jackson-smile.
+  // Responses are requested as JSON by default.
+  private static final String ACCEPT_PROPERTY =
+      "org.lockss.laaws.md.client.accept";
+
   /**
    * Provides a RestTemplate that does not throw exceptions when the received
    * status code is not 2xx.
@@ -54,19 +67,35 @@ public class BaseClient {
   protected static RestTemplate getRestTemplate() {
     RestTemplate template = RestUtil.getRestTemplate();
 
+    // Make sure that binary responses are read like JSON ones.
+    List<HttpMessageConverter<?>> converters = template.getMessageConverters();
+
+    MessageConverterConfigurer.putConverter(converters,
+	new MappingJackson2CborHttpMessageConverter(
+	    Jackson2ObjectMapperBuilder.cbor().build()));
+    MessageConverterConfigurer.putConverter(converters,
+	new MappingJackson2SmileHttpMessageConverter(
+	    Jackson2ObjectMapperBuilder.smile().build()));
+
     return template;
   }
 
   /**
    * Provides the basic HTTP headers to be used in a request.
    * 
-   * @return a HttpHeaders with the Basic Authorization and Content Type
-   *         headers.
+   * @return a HttpHeaders with the Basic Authorization, Content Type and,
+   *         if configured, Accept headers.
    */
   protected static HttpHeaders getHttpHeaders() {
     HttpHeaders headers = new HttpHeaders();
     headers.setContentType(MediaType.APPLICATION_JSON);
 
+    String accept = System.getProperty(ACCEPT_PROPERTY);
+
+    if (accept != null && !accept.isEmpty()) {
+      headers.setAccept(Collections.singletonList(MediaType.valueOf(accept)));
+    }
+
     String credentials = userName + ":" + password;
     String authHeaderValue = "Basic " + Base64.getEncoder().encodeToString(
 	credentials.getBytes(Charset.forName("US-ASCII")));
@@ -0,0 +1,139 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.config;
+
+import java.util.List;
+import org.lockss.log.L4JLogger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Custom Spring MVC configurator that makes the binary CBOR and Smile
+ * representations of the JSON responses available through content
+ * negotiation.
+ * <br>
+ * JSON remains the representation used when the client does not explicitly
+ * accept one of the binary ones. The binary object mappers are configured
+ * with the same customizers as the JSON one, so that the same objects are
+ * represented in all of them.
+ */
+@Configuration
+public class MessageConverterConfigurer implements WebMvcConfigurer {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  /**
+   * The media type of the Smile representation.
+   */
+  public static final MediaType APPLICATION_SMILE =
+      new MediaType("application", "x-jackson-smile");
+
+  // The customizers of the object mappers.
+  private final ObjectProvider<Jackson2ObjectMapperBuilderCustomizer>
+      customizers;
+
+  /**
+   * Constructor.
+   *
+   * @param customizers
+   *          An {@code ObjectProvider<Jackson2ObjectMapperBuilderCustomizer>}
+   *          with the customizers applied to the JSON object mapper.
+   */
+  @Autowired
+  public MessageConverterConfigurer(
+      ObjectProvider<Jackson2ObjectMapperBuilderCustomizer> customizers) {
+    this.customizers = customizers;
+  }
+
+  /**
+   * Adds the CBOR and Smile message converters after the default ones,
+   * replacing any default ones.
+   *
+   * @param converters
+   *          A {@code List<HttpMessageConverter<?>>} with the configured
+   *          message converters.
+   */
+  @Override
+  public void extendMessageConverters(
+      List<HttpMessageConverter<?>> converters) {
+    putConverter(converters, new MappingJackson2CborHttpMessageConverter(
+	customize(Jackson2ObjectMapperBuilder.cbor()).build()));
+    putConverter(converters, new MappingJackson2SmileHttpMessageConverter(
+	customize(Jackson2ObjectMapperBuilder.smile()).build()));
+
+    log.debug2("converters = {}", converters);
+  }
+
+  /**
+   * Puts a message converter in a list in place of any converter of the same
+   * class, or at the end of the list if there is none.
+   *
+   * @param converters
+   *          A {@code List<HttpMessageConverter<?>>} with the message
+   *          converters.
+   * @param converter
+   *          An {@code HttpMessageConverter<?>} with the message converter to
+   *          be put.
+   */
+  public static void putConverter(List<HttpMessageConverter<?>> converters,
+      HttpMessageConverter<?> converter) {
+    for (int i = 0; i < converters.size(); i++) {
+      if (converters.get(i).getClass() == converter.getClass()) {
+	converters.set(i, converter);
+	return;
+      }
+    }
+
+    converters.add(converter);
+  }
+
+  /**
+   * Applies to an object mapper builder the customizers of the JSON object
+   * mapper.
+   *
+   * @param builder
+   *          A Jackson2ObjectMapperBuilder with the builder to be customized.
+   * @return a Jackson2ObjectMapperBuilder with the customized builder.
+   */
+  private Jackson2ObjectMapperBuilder customize(
+      Jackson2ObjectMapperBuilder builder) {
+    customizers.orderedStream().forEach(c -> c.customize(builder));
+    return builder;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import org.lockss.db.DbException;
+import org.lockss.log.L4JLogger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * A cache of the number of metadata items of each AU.
+ * <br>
+ * Each count is computed once per metadata extraction of its AU: It is
+ * discarded when a job for the AU finishes, and it is also recomputed if the
+ * time of the last metadata extraction of the AU does not match the one the
+ * count was computed for.
+ */
+@Component
+public class AuItemCountCache implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  // The cached counts, keyed by AU identifier.
+  private final ConcurrentHashMap<String, Count> counts =
+      new ConcurrentHashMap<>();
+
+  private final MetadataServiceSql mdSql;
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   * @param mdSql
+   *          A MetadataServiceSql with the metadata database queries.
+   */
+  @Autowired
+  public AuItemCountCache(MetadataJobMonitor jobMonitor,
+      MetadataServiceSql mdSql) {
+    this.mdSql = mdSql;
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides the number of metadata items of an AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the time of the last metadata extraction of the AU.
+   * @return a long with the number of metadata items of the AU.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public long getItemCount(String auid, long extractionTime)
+      throws DbException {
+    Count count = counts.get(auid);
+
+    // Check whether the count is cached for the current extraction.
+    if (count != null && count.extractionTime == extractionTime) {
+      // Yes.
+      log.trace("Cache hit for auid = {}", auid);
+      return count.itemCount;
+    }
+
+    long itemCount = mdSql.getAuItemCount(auid);
+    counts.put(auid, new Count(extractionTime, itemCount));
+
+    log.debug2("auid = {}, itemCount = {}", auid, itemCount);
+    return itemCount;
+  }
+
+  /**
+   * Discards the cached count of an AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   */
+  public void invalidate(String auid) {
+    log.debug2("auid = {}", auid);
+    counts.remove(auid);
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    invalidate(auid);
+  }
+
+  /**
+   * A cached count.
+   */
+  private static final class Count {
+    private final long extractionTime;
+    private final long itemCount;
+
+    private Count(long extractionTime, long itemCount) {
+      this.extractionTime = extractionTime;
+      this.itemCount = itemCount;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+/**
+ * The position of a consumer in the change feed of the metadata of an AU.
+ * <br>
+ * Metadata items get ever-increasing database keys when they are stored, so
+ * the items added since a position are those with a key greater than the
+ * highest key seen by the consumer. The number of items with a key not
+ * greater than that one is also recorded: If it has decreased, items already
+ * seen by the consumer have been deleted or replaced.
+ */
+public class AuMetadataChangesToken {
+  // The separator of the token elements in its string form.
+  private static final String SEPARATOR = "-";
+
+  private final long lastMdItemSeq;
+  private final long itemCount;
+
+  /**
+   * Constructor.
+   *
+   * @param lastMdItemSeq
+   *          A long with the highest database key of the items seen by the
+   *          consumer.
+   * @param itemCount
+   *          A long with the number of items of the AU with a database key not
+   *          greater than lastMdItemSeq.
+   */
+  public AuMetadataChangesToken(long lastMdItemSeq, long itemCount) {
+    this.lastMdItemSeq = lastMdItemSeq;
+    this.itemCount = itemCount;
+  }
+
+  /**
+   * Constructor from the string form of a token.
+   *
+   * @param token
+   *          A String with the string form of the token, or <code>null</code>
+   *          for the position before any item.
+   * @throws IllegalArgumentException
+   *           if the token is not valid.
+   */
+  public AuMetadataChangesToken(String token) {
+    if (token == null || token.trim().isEmpty()) {
+      lastMdItemSeq = 0;
+      itemCount = 0;
+      return;
+    }
+
+    String[] elements = token.trim().split(SEPARATOR);
+
+    if (elements.length != 2) {
+      throw new IllegalArgumentException("Invalid changes token '" + token
+	  + "'");
+    }
+
+    try {
+      lastMdItemSeq = Long.parseLong(elements[0]);
+      itemCount = Long.parseLong(elements[1]);
+    } catch (NumberFormatException nfe) {
+      throw new IllegalArgumentException("Invalid changes token '" + token
+	  + "'", nfe);
+    }
+
+    if (lastMdItemSeq < 0 || itemCount < 0) {
+      throw new IllegalArgumentException("Invalid changes token '" + token
+	  + "'");
+    }
+  }
+
+  public long getLastMdItemSeq() {
+    return lastMdItemSeq;
+  }
+
+  public long getItemCount() {
+    return itemCount;
+  }
+
+  /**
+   * Provides the string form of the token to be returned to the consumer.
+   *
+   * @return a String with the string form of the token.
+   */
+  public String toWebResponseToken() {
+    return lastMdItemSeq + SEPARATOR + itemCount;
+  }
+
+  @Override
+  public String toString() {
+    return "[AuMetadataChangesToken lastMdItemSeq=" + lastMdItemSeq
+	+ ", itemCount=" + itemCount + "]";
+  }
+}
@@ -0,0 +1,347 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.log.L4JLogger;
+import org.lockss.metadata.ItemMetadataPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * A bounded in-memory cache of pages of AU metadata, keyed by AU identifier,
+ * metadata extraction time, page size and continuation token.
+ * <br>
+ * Because the extraction time of the AU is part of the key, a page of a
+ * previous extraction is never served for a later one. The extraction times
+ * of the AUs are cached too, so that serving a cached page does not query the
+ * database. As a result, until the job monitor reports the job that reindexed
+ * an AU, the pages of its previous extraction may still be served.
+ * <br>
+ * The least recently used pages are evicted when either the number of cached
+ * pages or the total number of cached items exceeds its configured maximum.
+ * All the pages of an AU are discarded when a job for that AU finishes.
+ */
+@Component
+public class AuMetadataPageCache implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.pageCache.";
+
+  /**
+   * Whether pages of AU metadata are cached.
+   */
+  public static final String PARAM_ENABLED = PREFIX + "enabled";
+  public static final boolean DEFAULT_ENABLED = true;
+
+  /**
+   * The maximum number of pages in the cache.
+   */
+  public static final String PARAM_MAX_PAGES = PREFIX + "maxPages";
+  public static final int DEFAULT_MAX_PAGES = 1000;
+
+  /**
+   * The maximum total number of metadata items in all the cached pages.
+   */
+  public static final String PARAM_MAX_ITEMS = PREFIX + "maxItems";
+  public static final int DEFAULT_MAX_ITEMS = 50000;
+
+  // The cached pages, in access order.
+  private final LinkedHashMap<Key, ItemMetadataPage> pages =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  // The total number of items in the cached pages.
+  private long itemCount = 0;
+
+  // The times of the current metadata extractions of the AUs, in access
+  // order.
+  private final LinkedHashMap<String, Long> extractionTimes =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  // The number of invalidations, used to avoid caching pages fetched before
+  // an invalidation.
+  private long generation = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   */
+  @Autowired
+  public AuMetadataPageCache(MetadataJobMonitor jobMonitor) {
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides an indication of whether the cache is enabled.
+   *
+   * @return a boolean with <code>true</code> if the cache is enabled,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEnabled() {
+    return ConfigManager.getCurrentConfig()
+	.getBoolean(PARAM_ENABLED, DEFAULT_ENABLED);
+  }
+
+  /**
+   * Provides the current generation of the cache, to be passed to
+   * {@link #put(String, long, Integer, String, ItemMetadataPage, long)} after
+   * fetching a page.
+   *
+   * @return a long with the current generation of the cache.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Provides the cached time of the current metadata extraction of an AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @return a Long with the extraction time, or <code>null</code> if it is not
+   *         cached.
+   */
+  public synchronized Long getExtractionTime(String auid) {
+    return extractionTimes.get(auid);
+  }
+
+  /**
+   * Caches the time of the current metadata extraction of an AU, unless the
+   * cache has been invalidated since the time was read.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the extraction time.
+   * @param fetchGeneration
+   *          A long with the generation of the cache when the time was read.
+   */
+  public synchronized void putExtractionTime(String auid, long extractionTime,
+      long fetchGeneration) {
+    if (fetchGeneration != generation) {
+      log.trace("Not caching stale extraction time for auid = {}", auid);
+      return;
+    }
+
+    extractionTimes.put(auid, extractionTime);
+
+    // Keep at most as many extraction times as pages.
+    int maxPages = ConfigManager.getCurrentConfig()
+	.getInt(PARAM_MAX_PAGES, DEFAULT_MAX_PAGES);
+    Iterator<String> iterator = extractionTimes.keySet().iterator();
+
+    while (extractionTimes.size() > maxPages && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Provides a cached page.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the time of the current metadata extraction of the
+   *          AU.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @return an ItemMetadataPage with the cached page, or <code>null</code> if
+   *         it is not cached.
+   */
+  public synchronized ItemMetadataPage get(String auid, long extractionTime,
+      Integer limit, String continuationToken) {
+    ItemMetadataPage page =
+	pages.get(new Key(auid, extractionTime, limit, continuationToken));
+    log.trace("Cache {} for auid = {}, limit = {}, continuationToken = {}",
+	page == null ? "miss" : "hit", auid, limit, continuationToken);
+    return page;
+  }
+
+  /**
+   * Provides an indication of whether a page is cached, without counting as a
+   * use of the page.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the time of the metadata extraction of the AU.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @return a boolean with <code>true</code> if the page is cached,
+   *         <code>false</code> otherwise.
+   */
+  public synchronized boolean contains(String auid, long extractionTime,
+      Integer limit, String continuationToken) {
+    return pages.containsKey(
+	new Key(auid, extractionTime, limit, continuationToken));
+  }
+
+  /**
+   * Caches a page, unless the cache has been invalidated since the page was
+   * fetched.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the time of the metadata extraction of the AU from
+   *          which the page was fetched.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @param page
+   *          An ItemMetadataPage with the page to be cached.
+   * @param fetchGeneration
+   *          A long with the generation of the cache when the page was
+   *          fetched.
+   */
+  public synchronized void put(String auid, long extractionTime,
+      Integer limit, String continuationToken, ItemMetadataPage page,
+      long fetchGeneration) {
+    if (fetchGeneration != generation) {
+      log.trace("Not caching stale page for auid = {}", auid);
+      return;
+    }
+
+    Configuration config = ConfigManager.getCurrentConfig();
+    int maxPages = config.getInt(PARAM_MAX_PAGES, DEFAULT_MAX_PAGES);
+    int maxItems = config.getInt(PARAM_MAX_ITEMS, DEFAULT_MAX_ITEMS);
+
+    // Pages too big to fit are not cached.
+    if (page.getItems().size() > maxItems) {
+      return;
+    }
+
+    ItemMetadataPage previous = pages.put(
+	new Key(auid, extractionTime, limit, continuationToken), page);
+
+    if (previous != null) {
+      itemCount -= previous.getItems().size();
+    }
+
+    itemCount += page.getItems().size();
+
+    // Evict the least recently used pages, if necessary.
+    Iterator<Map.Entry<Key, ItemMetadataPage>> iterator =
+	pages.entrySet().iterator();
+
+    while ((pages.size() > maxPages || itemCount > maxItems)
+	&& iterator.hasNext()) {
+      itemCount -= iterator.next().getValue().getItems().size();
+      iterator.remove();
+    }
+
+    log.trace("pages.size() = {}, itemCount = {}", pages.size(), itemCount);
+  }
+
+  /**
+   * Discards all the cached pages of an AU and its extraction time.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   */
+  public synchronized void invalidate(String auid) {
+    log.debug2("auid = {}", auid);
+    generation++;
+    extractionTimes.remove(auid);
+
+    Iterator<Map.Entry<Key, ItemMetadataPage>> iterator =
+	pages.entrySet().iterator();
+
+    while (iterator.hasNext()) {
+      Map.Entry<Key, ItemMetadataPage> entry = iterator.next();
+
+      if (entry.getKey().auid.equals(auid)) {
+	itemCount -= entry.getValue().getItems().size();
+	iterator.remove();
+      }
+    }
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    invalidate(auid);
+  }
+
+  /**
+   * The key of a cached page.
+   */
+  static final class Key {
+    final String auid;
+    private final long extractionTime;
+    private final Integer limit;
+    private final String continuationToken;
+
+    Key(String auid, long extractionTime, Integer limit,
+	String continuationToken) {
+      this.auid = auid;
+      this.extractionTime = extractionTime;
+      this.limit = limit;
+      this.continuationToken = continuationToken;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+	return true;
+      }
+
+      if (!(o instanceof Key)) {
+	return false;
+      }
+
+      Key other = (Key)o;
+      return auid.equals(other.auid)
+	  && extractionTime == other.extractionTime
+	  && Objects.equals(limit, other.limit)
+	  && Objects.equals(continuationToken, other.continuationToken);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(auid, extractionTime, limit, continuationToken);
+    }
+  }
+}
@@ -0,0 +1,404 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.lockss.app.LockssApp;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.log.L4JLogger;
+import org.lockss.metadata.ItemMetadataContinuationToken;
+import org.lockss.metadata.ItemMetadataPage;
+import org.lockss.metadata.query.MetadataQueryManager;
+import org.lockss.util.Constants;
+import org.lockss.util.time.TimeBase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fetches in the background the page of AU metadata that follows a page just
+ * returned to a client, and holds it briefly so that it can be served without
+ * querying the database when the client asks for it.
+ * <br>
+ * The number of held pages is bounded, pages not claimed within their time to
+ * live are discarded, and all the pages of an AU are discarded when a job for
+ * that AU finishes. Prefetches that cannot be queued are simply dropped.
+ */
+@Component
+public class AuMetadataPrefetcher implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.prefetch.";
+
+  /**
+   * Whether the next page of AU metadata is prefetched.
+   */
+  public static final String PARAM_ENABLED = PREFIX + "enabled";
+  public static final boolean DEFAULT_ENABLED = false;
+
+  /**
+   * The maximum number of prefetched pages held at any time, including those
+   * still being fetched.
+   */
+  public static final String PARAM_MAX_PAGES = PREFIX + "maxPages";
+  public static final int DEFAULT_MAX_PAGES = 100;
+
+  /**
+   * The time a prefetched page is held waiting to be claimed.
+   */
+  public static final String PARAM_TTL = PREFIX + "ttl";
+  public static final long DEFAULT_TTL = 30 * Constants.SECOND;
+
+  /**
+   * The number of threads used to prefetch pages. Only read when the first
+   * prefetch is requested.
+   */
+  public static final String PARAM_THREADS = PREFIX + "threads";
+  public static final int DEFAULT_THREADS = 2;
+
+  // The prefetched pages, in the order in which they were requested.
+  private final LinkedHashMap<AuMetadataPageCache.Key, Prefetch> prefetches =
+      new LinkedHashMap<>();
+
+  private ThreadPoolExecutor executor = null;
+
+  // The number of prefetched pages that have been claimed.
+  private final AtomicLong hitCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   */
+  @Autowired
+  public AuMetadataPrefetcher(MetadataJobMonitor jobMonitor) {
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides an indication of whether prefetching is enabled.
+   *
+   * @return a boolean with <code>true</code> if prefetching is enabled,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEnabled() {
+    return ConfigManager.getCurrentConfig()
+	.getBoolean(PARAM_ENABLED, DEFAULT_ENABLED);
+  }
+
+  /**
+   * Starts fetching a page in the background, unless it is already held.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the continuation token of
+   *          the page.
+   */
+  public void prefetch(String auid, Integer limit,
+      ItemMetadataContinuationToken imct) {
+    String continuationToken = imct.toWebResponseContinuationToken();
+    log.debug2("auid = {}, limit = {}, continuationToken = {}", auid, limit,
+	continuationToken);
+
+    AuMetadataPageCache.Key key = new AuMetadataPageCache.Key(auid,
+	imct.getAuExtractionTimestamp().longValue(), limit, continuationToken);
+    Prefetch prefetch = new Prefetch();
+
+    synchronized (this) {
+      Configuration config = ConfigManager.getCurrentConfig();
+      int maxPages = config.getInt(PARAM_MAX_PAGES, DEFAULT_MAX_PAGES);
+      long now = TimeBase.nowMs();
+
+      discardExpired(now);
+
+      if (prefetches.containsKey(key)) {
+	return;
+      }
+
+      // Make room by discarding the oldest prefetches, if necessary.
+      Iterator<Prefetch> iterator = prefetches.values().iterator();
+
+      while (prefetches.size() >= maxPages && iterator.hasNext()) {
+	iterator.next().future.cancel(false);
+	iterator.remove();
+      }
+
+      if (maxPages <= 0) {
+	return;
+      }
+
+      prefetch.expiration =
+	  now + config.getTimeInterval(PARAM_TTL, DEFAULT_TTL);
+      prefetches.put(key, prefetch);
+    }
+
+    try {
+      getExecutor().execute(() -> {
+	// Check whether the prefetch has been discarded while queued.
+	if (!prefetch.started.compareAndSet(false, true)
+	    || prefetch.future.isDone()) {
+	  // Yes: Nothing to do.
+	  return;
+	}
+
+	try {
+	  prefetch.future.complete(ItemMetadataInterner.intern(
+	      LockssApp.getManagerByTypeStatic(MetadataQueryManager.class)
+	      .getAuMetadataDetail(auid, limit, imct)));
+	} catch (Exception e) {
+	  log.debug("Cannot prefetch page for auid '" + auid + "'", e);
+	  prefetch.future.completeExceptionally(e);
+	}
+      });
+    } catch (RejectedExecutionException ree) {
+      log.debug2("Prefetch queue full; not prefetching auid '{}'", auid);
+
+      synchronized (this) {
+	prefetches.remove(key, prefetch);
+      }
+    }
+  }
+
+  /**
+   * Claims a prefetched page, waiting for it if it is being fetched.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the time of the current metadata extraction of the
+   *          AU.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @return an ItemMetadataPage with the prefetched page, or
+   *         <code>null</code> if it is not available.
+   */
+  public ItemMetadataPage take(String auid, long extractionTime,
+      Integer limit, String continuationToken) {
+    Prefetch prefetch = null;
+
+    synchronized (this) {
+      discardExpired(TimeBase.nowMs());
+      prefetch = prefetches.remove(new AuMetadataPageCache.Key(auid,
+	  extractionTime, limit, continuationToken));
+    }
+
+    if (prefetch == null) {
+      return null;
+    }
+
+    // Check whether the page has not started to be fetched.
+    if (prefetch.started.compareAndSet(false, true)) {
+      // Yes: Querying the database directly is faster than waiting.
+      prefetch.future.cancel(false);
+      log.trace("Prefetch not started for auid = {}", auid);
+      return null;
+    }
+
+    try {
+      ItemMetadataPage page = prefetch.future.join();
+      hitCount.incrementAndGet();
+      log.trace("Prefetch hit for auid = {}, continuationToken = {}", auid,
+	  continuationToken);
+      return page;
+    } catch (RuntimeException re) {
+      // The prefetch failed or was discarded.
+      return null;
+    }
+  }
+
+  /**
+   * Provides the number of prefetched pages that have been claimed.
+   *
+   * @return a long with the number of claimed prefetched pages.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Provides an indication of whether a page is held, whether it has already
+   * been fetched or not.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the time of the metadata extraction of the AU.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @return a boolean with <code>true</code> if the page is held,
+   *         <code>false</code> otherwise.
+   */
+  synchronized boolean isHeld(String auid, long extractionTime, Integer limit,
+      String continuationToken) {
+    return prefetches.containsKey(new AuMetadataPageCache.Key(auid,
+	extractionTime, limit, continuationToken));
+  }
+
+  /**
+   * Provides an indication of whether a held page has been fetched
+   * successfully.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A long with the time of the metadata extraction of the AU.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @return a boolean with <code>true</code> if the page has been fetched,
+   *         <code>false</code> otherwise.
+   */
+  synchronized boolean isFetched(String auid, long extractionTime,
+      Integer limit, String continuationToken) {
+    Prefetch prefetch = prefetches.get(new AuMetadataPageCache.Key(auid,
+	extractionTime, limit, continuationToken));
+
+    return prefetch != null && prefetch.future.isDone()
+	&& !prefetch.future.isCompletedExceptionally();
+  }
+
+  /**
+   * Discards all the prefetched pages of an AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   */
+  public synchronized void invalidate(String auid) {
+    log.debug2("auid = {}", auid);
+
+    Iterator<Map.Entry<AuMetadataPageCache.Key, Prefetch>> iterator =
+	prefetches.entrySet().iterator();
+
+    while (iterator.hasNext()) {
+      Map.Entry<AuMetadataPageCache.Key, Prefetch> entry = iterator.next();
+
+      if (entry.getKey().auid.equals(auid)) {
+	entry.getValue().future.cancel(false);
+	iterator.remove();
+      }
+    }
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    invalidate(auid);
+  }
+
+  /**
+   * Stops prefetching.
+   */
+  @PreDestroy
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+
+    prefetches.clear();
+  }
+
+  /**
+   * Discards the prefetched pages whose time to live has passed.
+   *
+   * @param now
+   *          A long with the current time.
+   */
+  private void discardExpired(long now) {
+    Iterator<Prefetch> iterator = prefetches.values().iterator();
+
+    while (iterator.hasNext()) {
+      Prefetch prefetch = iterator.next();
+
+      // The prefetches are in expiration order.
+      if (prefetch.expiration > now) {
+	break;
+      }
+
+      prefetch.future.cancel(false);
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Provides the executor of the prefetches, creating it if necessary.
+   *
+   * @return a ThreadPoolExecutor with the executor.
+   */
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      Configuration config = ConfigManager.getCurrentConfig();
+      int threads = Math.max(1, config.getInt(PARAM_THREADS, DEFAULT_THREADS));
+      int maxPages =
+	  Math.max(1, config.getInt(PARAM_MAX_PAGES, DEFAULT_MAX_PAGES));
+
+      executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+	  new ArrayBlockingQueue<Runnable>(maxPages), r -> {
+	    Thread thread = new Thread(r, "AuMetadataPrefetcher");
+	    thread.setDaemon(true);
+	    return thread;
+	  });
+      executor.allowCoreThreadTimeOut(true);
+    }
+
+    return executor;
+  }
+
+  /**
+   * A page being prefetched or already prefetched.
+   */
+  private static final class Prefetch {
+    private final CompletableFuture<ItemMetadataPage> future =
+	new CompletableFuture<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private long expiration;
+  }
+}
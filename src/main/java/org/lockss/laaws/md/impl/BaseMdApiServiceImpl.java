@@ -0,0 +1,177 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.log.L4JLogger;
+import org.lockss.spring.base.BaseSpringApiServiceImpl;
+import org.lockss.util.Constants;
+import org.lockss.util.rest.status.ApiStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Base class of the services of the metadata REST web service.
+ * <br>
+ * By default, requests received before the service is fully initialized wait
+ * until it is. In fail-fast mode they are rejected right away instead, with a
+ * Retry-After header estimated from the progress of the startup of the
+ * daemon, so that servlet threads are not parked during a restart.
+ */
+public abstract class BaseMdApiServiceImpl extends BaseSpringApiServiceImpl {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.readiness.";
+
+  /**
+   * If true, requests received before the service is ready are rejected
+   * immediately instead of waiting for the service to become ready.
+   */
+  public static final String PARAM_FAIL_FAST = PREFIX + "failFast";
+  public static final boolean DEFAULT_FAIL_FAST = false;
+
+  /**
+   * The estimated duration of each remaining startup phase, used to compute
+   * the Retry-After header of rejected requests.
+   */
+  public static final String PARAM_PHASE_DURATION = PREFIX + "phaseDuration";
+  public static final long DEFAULT_PHASE_DURATION = 10 * Constants.SECOND;
+
+  /**
+   * The minimum value of the Retry-After header of rejected requests.
+   */
+  public static final String PARAM_MIN_RETRY_AFTER = PREFIX + "minRetryAfter";
+  public static final long DEFAULT_MIN_RETRY_AFTER = 5 * Constants.SECOND;
+
+  /**
+   * The maximum value of the Retry-After header of rejected requests.
+   */
+  public static final String PARAM_MAX_RETRY_AFTER = PREFIX + "maxRetryAfter";
+  public static final long DEFAULT_MAX_RETRY_AFTER = 5 * Constants.MINUTE;
+
+  @Autowired
+  protected HttpServletRequest request;
+
+  @Autowired
+  protected HttpServletResponse response;
+
+  @Autowired
+  private StatusApiServiceImpl statusService;
+
+  /**
+   * Provides an indication of whether the service is ready to process a
+   * request, either waiting for it to become ready or, in fail-fast mode,
+   * adding a Retry-After header to the response when it is not.
+   *
+   * @return a boolean with <code>true</code> if the service is ready,
+   *         <code>false</code> otherwise.
+   */
+  protected boolean checkReady() {
+    Configuration config = ConfigManager.getCurrentConfig();
+
+    // Check whether requests may wait for the service to become ready.
+    if (!config.getBoolean(PARAM_FAIL_FAST, DEFAULT_FAIL_FAST)) {
+      // Yes.
+      return waitUntilReady();
+    }
+
+    ApiStatus apiStatus = getApiStatus();
+
+    if (apiStatus.isReady()) {
+      return true;
+    }
+
+    long retryAfter = getRetryAfter(apiStatus, config);
+    log.debug("Service not ready: startupStatus = {}, retryAfter = {}",
+	apiStatus.getStartupStatus(), retryAfter);
+
+    response.setHeader(HttpHeaders.RETRY_AFTER,
+	String.valueOf(retryAfter / Constants.SECOND));
+    return false;
+  }
+
+  /**
+   * Waits for the service to become ready.
+   *
+   * @return a boolean with <code>true</code> if the service is ready,
+   *         <code>false</code> otherwise.
+   */
+  boolean waitUntilReady() {
+    return waitReady();
+  }
+
+  /**
+   * Provides the current status of the service.
+   *
+   * @return an ApiStatus with the status of the service.
+   */
+  ApiStatus getApiStatus() {
+    return statusService.getApiStatus();
+  }
+
+  /**
+   * Provides the estimated time until the service becomes ready.
+   *
+   * @param apiStatus
+   *          An ApiStatus with the status of the service.
+   * @param config
+   *          A Configuration with the current configuration.
+   * @return a long with the estimated time in milliseconds.
+   */
+  long getRetryAfter(ApiStatus apiStatus, Configuration config) {
+    long phaseDuration =
+	config.getTimeInterval(PARAM_PHASE_DURATION, DEFAULT_PHASE_DURATION);
+    long minRetryAfter =
+	config.getTimeInterval(PARAM_MIN_RETRY_AFTER, DEFAULT_MIN_RETRY_AFTER);
+    long maxRetryAfter =
+	config.getTimeInterval(PARAM_MAX_RETRY_AFTER, DEFAULT_MAX_RETRY_AFTER);
+
+    // The startup phases are the successive values of the startup status, so
+    // the number of those still to come measures the remaining work.
+    int remainingPhases = 1;
+    ApiStatus.StartupStatus startupStatus = apiStatus.getStartupStatus();
+
+    if (startupStatus != null) {
+      remainingPhases = Math.max(1, ApiStatus.StartupStatus.values().length
+	  - 1 - startupStatus.ordinal());
+    }
+
+    log.trace("remainingPhases = {}", remainingPhases);
+
+    return Math.min(maxRetryAfter,
+	Math.max(minRetryAfter, remainingPhases * phaseDuration));
+  }
+}
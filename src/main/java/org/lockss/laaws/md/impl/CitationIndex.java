@@ -0,0 +1,537 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.lockss.app.LockssApp;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.log.L4JLogger;
+import org.lockss.metadata.ItemMetadata;
+import org.lockss.metadata.ItemMetadataContinuationToken;
+import org.lockss.metadata.ItemMetadataPage;
+import org.lockss.metadata.query.MetadataQueryManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * An optional in-memory index of the access URLs of the metadata items of all
+ * AUs by their citation, that is, the ISSN or ISBN of their publication and
+ * their volume, issue and start page, used to answer the OpenURL queries by
+ * citation without the OpenURL resolver.
+ * <br>
+ * The index is built in the background when first used. The entries of an AU
+ * are replaced whenever a job for that AU finishes. Only the queries that
+ * consist of a single ISSN or ISBN, a volume, a start page and optionally an
+ * issue, and that match exactly one access URL, are answered by the index;
+ * any other query is left to the OpenURL resolver.
+ */
+@Component
+public class CitationIndex implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.citationIndex.";
+
+  /**
+   * Whether the citation index is maintained and used for OpenURL queries.
+   */
+  public static final String PARAM_ENABLED = PREFIX + "enabled";
+  public static final boolean DEFAULT_ENABLED = false;
+
+  /**
+   * The number of items read from the database at a time when indexing an AU.
+   */
+  public static final String PARAM_BATCH_SIZE = PREFIX + "batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  // The canonical OpenURL parameters of a citation.
+  private static final Set<String> IDENTIFIER_PARAMS =
+      new HashSet<>(Arrays.asList("rft.issn", "rft.eissn", "rft.isbn"));
+  private static final String VOLUME_PARAM = "rft.volume";
+  private static final String ISSUE_PARAM = "rft.issue";
+  private static final String START_PAGE_PARAM = "rft.spage";
+
+  // The canonical OpenURL parameters that are allowed in a query answered by
+  // the index, besides those of the citation.
+  private static final Set<String> IGNORED_PARAMS =
+      new HashSet<>(Arrays.asList("rft_val_fmt"));
+
+  // The names in the item metadata of the maps of the publication
+  // identifiers.
+  private static final List<String> IDENTIFIER_MAPS =
+      Arrays.asList("issn", "isbn");
+
+  private final MetadataServiceSql mdSql;
+  private final OpenUrlResolutionCache resolutionCache;
+
+  // Serializes the updates of the index.
+  private final Object updateLock = new Object();
+
+  // The index in use, or null if it has not been built yet.
+  private volatile Index index = null;
+
+  // Whether the build of the index has been scheduled.
+  private boolean buildScheduled = false;
+
+  private ExecutorService executor = null;
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   * @param mdSql
+   *          A MetadataServiceSql with the metadata database queries.
+   * @param resolutionCache
+   *          An OpenUrlResolutionCache with the cache of the results of
+   *          OpenURL queries, which may hold results obtained from entries
+   *          replaced by an update.
+   */
+  @Autowired
+  public CitationIndex(MetadataJobMonitor jobMonitor,
+      MetadataServiceSql mdSql, OpenUrlResolutionCache resolutionCache) {
+    this.mdSql = mdSql;
+    this.resolutionCache = resolutionCache;
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides an indication of whether the citation index is enabled.
+   *
+   * @return a boolean with <code>true</code> if the citation index is
+   *         enabled, <code>false</code> otherwise.
+   */
+  public boolean isEnabled() {
+    return ConfigManager.getCurrentConfig()
+	.getBoolean(PARAM_ENABLED, DEFAULT_ENABLED);
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    if (!isEnabled() || index == null) {
+      // The AU will be indexed when the index is built.
+      return;
+    }
+
+    getExecutor().execute(() -> {
+      try {
+	reindexAu(auid);
+      } catch (Exception e) {
+	log.error("Cannot index the citations of auid '" + auid + "'", e);
+      }
+    });
+  }
+
+  /**
+   * Provides the access URL that results from an OpenURL query by citation.
+   *
+   * @param key
+   *          An OpenUrlKey with the canonical OpenURL query parameters.
+   * @return a {@code List<String>} with the single access URL that results
+   *         from the query, or <code>null</code> if the query cannot be
+   *         answered by the index.
+   */
+  public List<String> lookup(OpenUrlKey key) {
+    log.debug2("key = {}", key);
+
+    Index current = getIndex();
+
+    if (current == null) {
+      return null;
+    }
+
+    String identifier = null;
+    Map<String, String> params = key.getParams();
+
+    for (String name : params.keySet()) {
+      if (IDENTIFIER_PARAMS.contains(name)) {
+	// Check whether the query has more than one identifier.
+	if (identifier != null) {
+	  // Yes: It cannot be answered by the index.
+	  return null;
+	}
+
+	identifier = params.get(name);
+      } else if (!VOLUME_PARAM.equals(name) && !ISSUE_PARAM.equals(name)
+	  && !START_PAGE_PARAM.equals(name) && !IGNORED_PARAMS.contains(name)) {
+	return null;
+      }
+    }
+
+    String volume = params.get(VOLUME_PARAM);
+    String startPage = params.get(START_PAGE_PARAM);
+
+    if (identifier == null || volume == null || startPage == null) {
+      return null;
+    }
+
+    List<Citation> citations = current.citations.get(citationKey(identifier,
+	volume, params.get(ISSUE_PARAM), startPage));
+
+    if (citations == null) {
+      return null;
+    }
+
+    String url = null;
+
+    for (Citation citation : citations) {
+      // Check whether the query matches more than one access URL.
+      if (url != null && !url.equals(citation.url)) {
+	// Yes: Leave the choice to the OpenURL resolver.
+	return null;
+      }
+
+      url = citation.url;
+    }
+
+    List<String> result = Collections.singletonList(url);
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Builds the index from the metadata of all the AUs and starts using it.
+   *
+   * @throws Exception
+   *           if there are problems reading the metadata.
+   */
+  public void rebuild() throws Exception {
+    long startTime = System.currentTimeMillis();
+
+    synchronized (updateLock) {
+      Index newIndex = new Index();
+      List<String> auids = mdSql.getAuidsWithMetadata();
+
+      for (String auid : auids) {
+	indexAu(newIndex, auid);
+      }
+
+      index = newIndex;
+      log.info("Built citation index of {} AUs with {} citations in {} ms",
+	  auids.size(), newIndex.citations.size(),
+	  System.currentTimeMillis() - startTime);
+    }
+  }
+
+  /**
+   * Replaces the entries of an AU with its current metadata.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @throws Exception
+   *           if there are problems reading the metadata.
+   */
+  public void reindexAu(String auid) throws Exception {
+    log.debug2("auid = {}", auid);
+
+    synchronized (updateLock) {
+      Index current = index;
+
+      if (current != null) {
+	indexAu(current, auid);
+
+	// Cached results may come from the replaced entries.
+	resolutionCache.invalidateAll();
+      }
+    }
+  }
+
+  /**
+   * Stops the updating of the index.
+   */
+  @PreDestroy
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Provides the index in use, scheduling its build on first use.
+   *
+   * @return an Index with the index, or <code>null</code> if it has not been
+   *         built yet.
+   */
+  private Index getIndex() {
+    Index current = index;
+
+    if (current == null) {
+      scheduleBuild();
+    }
+
+    return current;
+  }
+
+  /**
+   * Schedules the build of the index, unless it has already been scheduled.
+   */
+  private synchronized void scheduleBuild() {
+    if (buildScheduled) {
+      return;
+    }
+
+    buildScheduled = true;
+
+    getExecutor().execute(() -> {
+      try {
+	rebuild();
+      } catch (Exception e) {
+	log.error("Cannot build the citation index", e);
+
+	synchronized (CitationIndex.this) {
+	  buildScheduled = false;
+	}
+      }
+    });
+  }
+
+  /**
+   * Provides the executor of the updates of the index, creating it if
+   * necessary.
+   *
+   * @return an ExecutorService with the executor.
+   */
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(r -> {
+	Thread thread = new Thread(r, "CitationIndex");
+	thread.setDaemon(true);
+	return thread;
+      });
+    }
+
+    return executor;
+  }
+
+  /**
+   * Replaces the entries of an AU in an index with its current metadata.
+   *
+   * @param index
+   *          An Index with the index to be updated.
+   * @param auid
+   *          A String with the AU identifier.
+   * @throws Exception
+   *           if there are problems reading the metadata.
+   */
+  private void indexAu(Index index, String auid) throws Exception {
+    int batchSize = ConfigManager.getCurrentConfig()
+	.getInt(PARAM_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+
+    // Read the new entries before replacing the old ones, so that a failure
+    // leaves the old ones in place.
+    Map<String, Set<String>> urlsByKey = new HashMap<>();
+
+    MetadataQueryManager mqm =
+	LockssApp.getManagerByTypeStatic(MetadataQueryManager.class);
+    ItemMetadataContinuationToken imct =
+	new ItemMetadataContinuationToken((String)null);
+
+    try {
+      while (imct != null) {
+	ItemMetadataPage page = mqm.getAuMetadataDetail(auid, batchSize, imct);
+
+	for (ItemMetadata item : page.getItems()) {
+	  addCitationKeys(item, urlsByKey);
+	}
+
+	imct = page.getContinuationToken();
+      }
+    } catch (IllegalArgumentException iae) {
+      // The AU no longer has metadata.
+      log.debug("No metadata to index for auid '{}'", auid);
+    }
+
+    index.replaceAu(auid, urlsByKey);
+    log.debug("Indexed {} citations of auid '{}'", urlsByKey.size(), auid);
+  }
+
+  /**
+   * Adds the citation keys of an item with their access URL.
+   * <br>
+   * Items of the same AU may share a citation key, as when issues restart
+   * their page numbering and the key has no issue, so each key collects all
+   * the access URLs that it matches.
+   *
+   * @param item
+   *          An ItemMetadata with the metadata of the item.
+   * @param urlsByKey
+   *          A {@code Map<String, Set<String>>} to which the access URL of the
+   *          item is added for each of its citation keys.
+   */
+  static void addCitationKeys(ItemMetadata item,
+      Map<String, Set<String>> urlsByKey) {
+    Map<String, String> scalarMap = item.getScalarMap();
+    Map<String, Map<String, String>> mapMap = item.getMapMap();
+
+    if (scalarMap == null || mapMap == null || mapMap.get("url") == null) {
+      return;
+    }
+
+    String url = mapMap.get("url").get("Access");
+    String volume = scalarMap.get("volume");
+    String startPage = scalarMap.get("start_page");
+
+    if (url == null || volume == null || startPage == null) {
+      return;
+    }
+
+    String issue = scalarMap.get("issue");
+
+    for (String mapName : IDENTIFIER_MAPS) {
+      Map<String, String> identifiers = mapMap.get(mapName);
+
+      if (identifiers == null) {
+	continue;
+      }
+
+      for (String identifier : identifiers.values()) {
+	if (identifier == null) {
+	  continue;
+	}
+
+	// The item can be found with or without its issue.
+	urlsByKey.computeIfAbsent(citationKey(identifier, volume, null,
+	    startPage), k -> new HashSet<>()).add(url);
+
+	if (issue != null) {
+	  urlsByKey.computeIfAbsent(citationKey(identifier, volume, issue,
+	      startPage), k -> new HashSet<>()).add(url);
+	}
+      }
+    }
+  }
+
+  /**
+   * Provides the index key of a citation.
+   *
+   * @param identifier
+   *          A String with the ISSN or ISBN.
+   * @param volume
+   *          A String with the volume.
+   * @param issue
+   *          A String with the issue, or <code>null</code> if not specified.
+   * @param startPage
+   *          A String with the start page.
+   * @return a String with the index key.
+   */
+  static String citationKey(String identifier, String volume, String issue,
+      String startPage) {
+    String normalizedIssue =
+	issue == null ? "" : issue.trim().toLowerCase(Locale.ROOT);
+
+    return identifier.replace("-", "").replace(" ", "")
+	.toUpperCase(Locale.ROOT)
+	+ '\u0000' + volume.trim().toLowerCase(Locale.ROOT)
+	+ '\u0000' + normalizedIssue
+	+ '\u0000' + startPage.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * The entries of the index.
+   */
+  private static class Index {
+    // The citations of the items, by citation key. The lists are replaced,
+    // never modified, so that they can be read while being updated.
+    final Map<String, List<Citation>> citations = new ConcurrentHashMap<>();
+
+    // The citation keys of each AU.
+    final Map<String, Set<String>> keysByAu = new HashMap<>();
+
+    /**
+     * Replaces the entries of an AU.
+     *
+     * @param auid
+     *          A String with the AU identifier.
+     * @param urlsByKey
+     *          A {@code Map<String, Set<String>>} with the access URLs of the
+     *          new entries of the AU, by citation key.
+     */
+    void replaceAu(String auid, Map<String, Set<String>> urlsByKey) {
+      Set<String> oldKeys = keysByAu.remove(auid);
+
+      if (oldKeys != null) {
+	for (String key : oldKeys) {
+	  citations.computeIfPresent(key, (k, list) -> {
+	    List<Citation> kept = new ArrayList<>(list);
+	    kept.removeIf(citation -> citation.auid.equals(auid));
+	    return kept.isEmpty() ? null : kept;
+	  });
+	}
+      }
+
+      for (Map.Entry<String, Set<String>> entry : urlsByKey.entrySet()) {
+	List<Citation> added = new ArrayList<>();
+
+	for (String url : entry.getValue()) {
+	  added.add(new Citation(auid, url));
+	}
+
+	citations.merge(entry.getKey(), added, (list, more) -> {
+	  List<Citation> merged = new ArrayList<>(list);
+	  merged.addAll(more);
+	  return merged;
+	});
+      }
+
+      if (!urlsByKey.isEmpty()) {
+	keysByAu.put(auid, new HashSet<>(urlsByKey.keySet()));
+      }
+    }
+  }
+
+  /**
+   * The access URL of an item with a citation.
+   */
+  private static class Citation {
+    final String auid;
+    final String url;
+
+    Citation(String auid, String url) {
+      this.auid = auid;
+      this.url = url;
+    }
+  }
+}
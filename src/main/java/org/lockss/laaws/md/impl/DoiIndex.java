@@ -0,0 +1,835 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.laaws.md.model.ItemInfo;
+import org.lockss.log.L4JLogger;
+import org.lockss.util.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * An optional read-only index of the DOIs of the metadata items of all AUs,
+ * kept in a local file that is memory-mapped, so that a DOI lookup does not
+ * need the metadata database.
+ * <br>
+ * The file contains a header, a table with the position of each entry and
+ * the entries, sorted by their case-folded DOI so that they can be found by
+ * binary search. Each entry has the DOI, the AU identifier and the access URL
+ * of an item. The header records the number of metadata items in the database
+ * and their largest database key when the file was built.
+ * <br>
+ * The file is rebuilt in the background, shortly after jobs finish, and then
+ * replaces the previous one. An existing file is used on startup, but it is
+ * rebuilt if the metadata database has changed since it was built. A DOI
+ * not found in the index is not necessarily absent from the metadata
+ * database, so callers should fall back to the database in that case.
+ */
+@Component
+public class DoiIndex implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.doiIndex.";
+
+  /**
+   * Whether the DOI index is maintained and used for DOI lookups.
+   */
+  public static final String PARAM_ENABLED = PREFIX + "enabled";
+  public static final boolean DEFAULT_ENABLED = false;
+
+  /**
+   * The path of the file of the DOI index. A relative path is resolved against
+   * the daemon data directory, or the temporary directory if there is none.
+   */
+  public static final String PARAM_INDEX_FILE = PREFIX + "indexFile";
+  public static final String DEFAULT_INDEX_FILE = "md-doi-index";
+
+  /**
+   * The number of items read from the database at a time when building the
+   * index.
+   */
+  public static final String PARAM_BATCH_SIZE = PREFIX + "batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 10000;
+
+  /**
+   * The maximum number of entries sorted in memory at a time when building the
+   * index. Larger indexes are built by merging sorted runs of this size.
+   */
+  public static final String PARAM_SORT_RUN_SIZE = PREFIX + "sortRunSize";
+  public static final int DEFAULT_SORT_RUN_SIZE = 1000000;
+
+  /**
+   * The time to wait after a job finishes before rebuilding the index, so
+   * that the jobs that finish close together cause a single rebuild.
+   */
+  public static final String PARAM_REBUILD_DELAY = PREFIX + "rebuildDelay";
+  public static final long DEFAULT_REBUILD_DELAY = Constants.MINUTE;
+
+  // The identification of the format of the index file.
+  static final int MAGIC = 0x4c444f49;
+  static final int VERSION = 2;
+
+  // The size of the header of the index file.
+  static final int HEADER_SIZE = 32;
+
+  // The maximum size of each field of an entry, in bytes.
+  static final int MAX_FIELD_SIZE = 0xffff;
+
+  // The maximum size of an entry, in bytes.
+  static final int MAX_ENTRY_SIZE = 3 * (2 + MAX_FIELD_SIZE);
+
+  // The size of each mapped segment of the index file, not counting the
+  // overlap with the next one that makes each entry readable from the segment
+  // in which it starts.
+  static final long SEGMENT_SIZE = 1L << 30;
+
+  // The order of the entries in the index file.
+  private static final Comparator<Entry> ENTRY_ORDER = (e1, e2) -> {
+    int result = Arrays.compareUnsigned(e1.key, e2.key);
+    return result != 0 ? result : Arrays.compareUnsigned(e1.auid, e2.auid);
+  };
+
+  private final MetadataServiceSql mdSql;
+
+  // Serializes the rebuilds of the index, without blocking lookups.
+  private final Object rebuildLock = new Object();
+
+  // Whether a rebuild has been scheduled but not yet started.
+  private final AtomicBoolean rebuildPending = new AtomicBoolean(false);
+
+  // The currently mapped index file, or null if none has been mapped.
+  private volatile MappedIndex mappedIndex = null;
+
+  // Whether an attempt has been made to map an existing index file.
+  private boolean opened = false;
+
+  private ScheduledThreadPoolExecutor executor = null;
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   * @param mdSql
+   *          A MetadataServiceSql with the metadata database queries.
+   */
+  @Autowired
+  public DoiIndex(MetadataJobMonitor jobMonitor, MetadataServiceSql mdSql) {
+    this.mdSql = mdSql;
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides an indication of whether the DOI index is enabled.
+   *
+   * @return a boolean with <code>true</code> if the DOI index is enabled,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEnabled() {
+    return ConfigManager.getCurrentConfig()
+	.getBoolean(PARAM_ENABLED, DEFAULT_ENABLED);
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    scheduleRebuild(ConfigManager.getCurrentConfig()
+	.getTimeInterval(PARAM_REBUILD_DELAY, DEFAULT_REBUILD_DELAY), false);
+  }
+
+  /**
+   * Provides the access URLs of the items with a DOI.
+   *
+   * @param doi
+   *          A String with the DOI.
+   * @return a {@code List<String>} with the unique access URLs of the items
+   *         with the DOI, empty if the DOI is not in the index or the index
+   *         is not available.
+   */
+  public List<String> lookup(String doi) {
+    log.debug2("doi = {}", doi);
+
+    List<String> result = new ArrayList<>();
+
+    if (doi == null) {
+      return result;
+    }
+
+    MappedIndex index = getMappedIndex();
+
+    if (index == null) {
+      return result;
+    }
+
+    for (Entry entry : index.find(toKey(doi))) {
+      String url = new String(entry.url, StandardCharsets.UTF_8);
+
+      if (!result.contains(url)) {
+	result.add(url);
+      }
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Builds the index file from the current contents of the metadata database
+   * and starts using it.
+   *
+   * @throws Exception
+   *           if there are problems reading the metadata or writing the index
+   *           file.
+   */
+  public void rebuild() throws Exception {
+    synchronized (rebuildLock) {
+      rebuildIndex();
+    }
+  }
+
+  /**
+   * Builds the index file and starts using it.
+   *
+   * @throws Exception
+   *           if there are problems reading the metadata or writing the index
+   *           file.
+   */
+  private void rebuildIndex() throws Exception {
+    Configuration config = ConfigManager.getCurrentConfig();
+    Path indexPath = getIndexPath();
+    int batchSize = Math.max(1, config.getInt(PARAM_BATCH_SIZE,
+	DEFAULT_BATCH_SIZE));
+    int runSize = Math.max(1, config.getInt(PARAM_SORT_RUN_SIZE,
+	DEFAULT_SORT_RUN_SIZE));
+
+    long startTime = System.currentTimeMillis();
+    Path dir = indexPath.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+
+    List<Path> runs = new ArrayList<>();
+    Path tmpPath = null;
+
+    try {
+      // Items added or deleted while the file is built make it stale.
+      long[] source = mdSql.getMdItemCountAndMaxSeq();
+      long count = writeSortedRuns(dir, batchSize, runSize, runs);
+
+      tmpPath = Files.createTempFile(dir, indexPath.getFileName().toString(),
+	  ".tmp");
+      mergeRuns(runs, count, source, tmpPath);
+
+      // The file being replaced remains valid while it is still mapped.
+      Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING,
+	  StandardCopyOption.ATOMIC_MOVE);
+      tmpPath = null;
+
+      mappedIndex = MappedIndex.map(indexPath);
+      log.info("Built DOI index {} with {} entries in {} ms", indexPath, count,
+	  System.currentTimeMillis() - startTime);
+    } finally {
+      for (Path run : runs) {
+	Files.deleteIfExists(run);
+      }
+
+      if (tmpPath != null) {
+	Files.deleteIfExists(tmpPath);
+      }
+    }
+  }
+
+  /**
+   * Stops the rebuilding of the index.
+   */
+  @PreDestroy
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Provides the currently mapped index, mapping the existing index file or
+   * scheduling a rebuild on first use.
+   *
+   * @return a MappedIndex with the mapped index, or <code>null</code> if no
+   *         index is available yet.
+   */
+  private MappedIndex getMappedIndex() {
+    MappedIndex index = mappedIndex;
+
+    if (index != null) {
+      return index;
+    }
+
+    synchronized (this) {
+      if (!opened) {
+	opened = true;
+	Path indexPath = getIndexPath();
+
+	try {
+	  // Check whether an index file already exists.
+	  if (Files.isRegularFile(indexPath)) {
+	    // Yes: Map it.
+	    mappedIndex = MappedIndex.map(indexPath);
+	    log.info("Mapped DOI index {}", indexPath);
+	  }
+	} catch (IOException ioe) {
+	  log.warn("Cannot map DOI index " + indexPath, ioe);
+	}
+
+	// Rebuild the index if there is none or it may be out of date.
+	scheduleRebuild(0, mappedIndex != null);
+      }
+
+      return mappedIndex;
+    }
+  }
+
+  /**
+   * Provides an indication of whether the metadata database has changed since
+   * the mapped index file was built.
+   *
+   * @return a boolean with <code>true</code> if there is no mapped index or it
+   *         is out of date, <code>false</code> otherwise.
+   * @throws Exception
+   *           if there are problems reading the metadata database.
+   */
+  boolean isStale() throws Exception {
+    MappedIndex index = mappedIndex;
+
+    if (index == null) {
+      return true;
+    }
+
+    long[] source = mdSql.getMdItemCountAndMaxSeq();
+    return source[0] != index.sourceItemCount
+	|| source[1] != index.sourceMaxMdItemSeq;
+  }
+
+  /**
+   * Provides the path of the index file.
+   *
+   * @return a Path with the path of the index file.
+   */
+  private static Path getIndexPath() {
+    return ConfigManager.getConfigManager()
+	.findConfiguredDataDir(PARAM_INDEX_FILE, DEFAULT_INDEX_FILE, false)
+	.toPath();
+  }
+
+  /**
+   * Schedules a rebuild of the index, unless one is already pending.
+   *
+   * @param delay
+   *          A long with the delay of the rebuild, in milliseconds.
+   * @param ifStale
+   *          A boolean with <code>true</code> if the index is only to be
+   *          rebuilt if it is out of date.
+   */
+  private synchronized void scheduleRebuild(long delay, boolean ifStale) {
+    if (!rebuildPending.compareAndSet(false, true)) {
+      return;
+    }
+
+    if (executor == null) {
+      executor = new ScheduledThreadPoolExecutor(1, r -> {
+	Thread thread = new Thread(r, "DoiIndex");
+	thread.setDaemon(true);
+	return thread;
+      });
+    }
+
+    executor.schedule(() -> {
+      // Changes made from now on need a new rebuild.
+      rebuildPending.set(false);
+
+      try {
+	// Check whether the index needs to be rebuilt.
+	if (!ifStale || isStale()) {
+	  // Yes.
+	  rebuild();
+	} else {
+	  log.debug("DOI index is up to date");
+	}
+      } catch (Exception e) {
+	log.error("Cannot build the DOI index", e);
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Reads the DOIs and access URLs from the database into sorted run files.
+   *
+   * @param dir
+   *          A Path with the directory of the run files.
+   * @param batchSize
+   *          An int with the number of items read at a time.
+   * @param runSize
+   *          An int with the maximum number of entries of a run file.
+   * @param runs
+   *          A {@code List<Path>} to which the paths of the run files are
+   *          added.
+   * @return a long with the total number of entries written.
+   * @throws Exception
+   *           if there are problems reading the metadata or writing the run
+   *           files.
+   */
+  private long writeSortedRuns(Path dir, int batchSize, int runSize,
+      List<Path> runs) throws Exception {
+    long count = 0;
+    long lastMdItemSeq = 0;
+    List<Entry> run = new ArrayList<>();
+
+    while (true) {
+      List<ItemInfo> page = mdSql.getDoiAccessUrls(lastMdItemSeq, batchSize);
+
+      if (page.isEmpty()) {
+	break;
+      }
+
+      for (ItemInfo itemInfo : page) {
+	Entry entry = Entry.from(itemInfo);
+
+	if (entry == null) {
+	  log.warn("Skipped too long DOI index entry for item {}",
+	      itemInfo.getId());
+	  continue;
+	}
+
+	run.add(entry);
+	count++;
+
+	if (run.size() >= runSize) {
+	  runs.add(writeRun(dir, run));
+	  run.clear();
+	}
+      }
+
+      lastMdItemSeq = page.get(page.size() - 1).getId();
+    }
+
+    if (!run.isEmpty() || runs.isEmpty()) {
+      runs.add(writeRun(dir, run));
+    }
+
+    return count;
+  }
+
+  /**
+   * Writes a sorted run file.
+   *
+   * @param dir
+   *          A Path with the directory of the run file.
+   * @param run
+   *          A {@code List<Entry>} with the entries to be written.
+   * @return a Path with the path of the run file.
+   * @throws IOException
+   *           if there are problems writing the run file.
+   */
+  private static Path writeRun(Path dir, List<Entry> run) throws IOException {
+    run.sort(ENTRY_ORDER);
+    Path path = Files.createTempFile(dir, "doi-index-run", ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+	Files.newOutputStream(path)))) {
+      for (Entry entry : run) {
+	entry.write(out);
+      }
+    }
+
+    return path;
+  }
+
+  /**
+   * Merges sorted run files into an index file.
+   *
+   * @param runs
+   *          A {@code List<Path>} with the paths of the run files.
+   * @param count
+   *          A long with the total number of entries in the run files.
+   * @param source
+   *          A long[] with the number of metadata items in the database and
+   *          their largest database key, recorded in the header.
+   * @param path
+   *          A Path with the path of the index file.
+   * @throws IOException
+   *           if there are problems reading the run files or writing the index
+   *           file.
+   */
+  private static void mergeRuns(List<Path> runs, long count, long[] source,
+      Path path) throws IOException {
+    List<DataInputStream> inputs = new ArrayList<>();
+    long dataStart = HEADER_SIZE + 8 * count;
+
+    // The entry table and the entries are written at the same time, each
+    // through its own channel.
+    try (FileChannel tableChannel = FileChannel.open(path,
+	    StandardOpenOption.WRITE);
+	FileChannel dataChannel = FileChannel.open(path,
+	    StandardOpenOption.WRITE)) {
+      DataOutputStream table = new DataOutputStream(new BufferedOutputStream(
+	  Channels.newOutputStream(tableChannel)));
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+	  Channels.newOutputStream(dataChannel.position(dataStart))));
+
+      table.writeInt(MAGIC);
+      table.writeInt(VERSION);
+      table.writeLong(count);
+      table.writeLong(source[0]);
+      table.writeLong(source[1]);
+
+      // The next entry of each run, ordered by entry.
+      PriorityQueue<RunHead> heads =
+	  new PriorityQueue<>((h1, h2) -> ENTRY_ORDER.compare(h1.entry,
+	      h2.entry));
+
+      for (Path run : runs) {
+	DataInputStream in = new DataInputStream(new BufferedInputStream(
+	    Files.newInputStream(run)));
+	inputs.add(in);
+	Entry entry = Entry.read(in);
+
+	if (entry != null) {
+	  heads.add(new RunHead(in, entry));
+	}
+      }
+
+      long position = dataStart;
+
+      while (!heads.isEmpty()) {
+	RunHead head = heads.poll();
+	table.writeLong(position);
+	position += head.entry.write(data);
+
+	head.entry = Entry.read(head.in);
+
+	if (head.entry != null) {
+	  heads.add(head);
+	}
+      }
+
+      table.flush();
+      data.flush();
+      dataChannel.force(false);
+    } finally {
+      for (InputStream in : inputs) {
+	in.close();
+      }
+    }
+  }
+
+  /**
+   * Provides the index key of a DOI.
+   *
+   * @param doi
+   *          A String with the DOI.
+   * @return a byte[] with the index key.
+   */
+  static byte[] toKey(String doi) {
+    // DOIs are case-insensitive.
+    return doi.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * An entry of the index, with its fields encoded in UTF-8.
+   */
+  static class Entry {
+    final byte[] key;
+    final byte[] auid;
+    final byte[] url;
+
+    Entry(byte[] key, byte[] auid, byte[] url) {
+      this.key = key;
+      this.auid = auid;
+      this.url = url;
+    }
+
+    /**
+     * Provides the entry of an item.
+     *
+     * @param itemInfo
+     *          An ItemInfo with the DOI, AU identifier and access URL of the
+     *          item.
+     * @return an Entry with the entry, or <code>null</code> if any of its
+     *         fields is too long.
+     */
+    static Entry from(ItemInfo itemInfo) {
+      Entry entry = new Entry(toKey(itemInfo.getDoi()),
+	  itemInfo.getAuid().getBytes(StandardCharsets.UTF_8),
+	  itemInfo.getAccessUrl().getBytes(StandardCharsets.UTF_8));
+
+      if (entry.key.length > MAX_FIELD_SIZE
+	  || entry.auid.length > MAX_FIELD_SIZE
+	  || entry.url.length > MAX_FIELD_SIZE) {
+	return null;
+      }
+
+      return entry;
+    }
+
+    /**
+     * Writes this entry.
+     *
+     * @param out
+     *          A DataOutputStream where to write the entry.
+     * @return an int with the number of bytes written.
+     * @throws IOException
+     *           if there are problems writing the entry.
+     */
+    int write(DataOutputStream out) throws IOException {
+      out.writeShort(key.length);
+      out.write(key);
+      out.writeShort(auid.length);
+      out.write(auid);
+      out.writeShort(url.length);
+      out.write(url);
+      return 6 + key.length + auid.length + url.length;
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param in
+     *          A DataInputStream from where to read the entry.
+     * @return an Entry with the entry read, or <code>null</code> if there are
+     *         no more entries.
+     * @throws IOException
+     *           if there are problems reading the entry.
+     */
+    static Entry read(DataInputStream in) throws IOException {
+      int keyLength;
+
+      try {
+	keyLength = in.readUnsignedShort();
+      } catch (EOFException eofe) {
+	return null;
+      }
+
+      byte[] key = new byte[keyLength];
+      in.readFully(key);
+      byte[] auid = new byte[in.readUnsignedShort()];
+      in.readFully(auid);
+      byte[] url = new byte[in.readUnsignedShort()];
+      in.readFully(url);
+      return new Entry(key, auid, url);
+    }
+  }
+
+  /**
+   * The next entry of a run file being merged.
+   */
+  private static class RunHead {
+    final DataInputStream in;
+    Entry entry;
+
+    RunHead(DataInputStream in, Entry entry) {
+      this.in = in;
+      this.entry = entry;
+    }
+  }
+
+  /**
+   * A memory-mapped index file.
+   */
+  static class MappedIndex {
+    private final MappedByteBuffer[] segments;
+    private final long count;
+
+    // The number of metadata items in the database and their largest database
+    // key when the index file was built.
+    final long sourceItemCount;
+    final long sourceMaxMdItemSeq;
+
+    private MappedIndex(MappedByteBuffer[] segments, long count,
+	long sourceItemCount, long sourceMaxMdItemSeq) {
+      this.segments = segments;
+      this.count = count;
+      this.sourceItemCount = sourceItemCount;
+      this.sourceMaxMdItemSeq = sourceMaxMdItemSeq;
+    }
+
+    /**
+     * Maps an index file.
+     *
+     * @param path
+     *          A Path with the path of the index file.
+     * @return a MappedIndex with the mapped index file.
+     * @throws IOException
+     *           if there are problems mapping the file or it is not a valid
+     *           index file.
+     */
+    static MappedIndex map(Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path,
+	  StandardOpenOption.READ)) {
+	long size = channel.size();
+
+	if (size < HEADER_SIZE) {
+	  throw new IOException("Truncated DOI index file " + path);
+	}
+
+	int segmentCount = (int)((size - 1) / SEGMENT_SIZE) + 1;
+	MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+
+	for (int i = 0; i < segmentCount; i++) {
+	  long start = i * SEGMENT_SIZE;
+	  segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+	      Math.min(SEGMENT_SIZE + MAX_ENTRY_SIZE, size - start));
+	}
+
+	MappedIndex index = new MappedIndex(segments, 0, 0, 0);
+
+	if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+	  throw new IOException("Invalid DOI index file " + path);
+	}
+
+	long count = index.getLong(8);
+
+	if (count < 0 || HEADER_SIZE + 8 * count > size) {
+	  throw new IOException("Truncated DOI index file " + path);
+	}
+
+	return new MappedIndex(segments, count, index.getLong(16),
+	    index.getLong(24));
+      }
+    }
+
+    /**
+     * Provides the entries with a key.
+     *
+     * @param key
+     *          A byte[] with the key.
+     * @return a {@code List<Entry>} with the entries with the key.
+     */
+    List<Entry> find(byte[] key) {
+      // Find the first entry with a key not smaller than the given one.
+      long low = 0;
+      long high = count;
+
+      while (low < high) {
+	long middle = (low + high) >>> 1;
+
+	if (Arrays.compareUnsigned(getEntry(middle).key, key) < 0) {
+	  low = middle + 1;
+	} else {
+	  high = middle;
+	}
+      }
+
+      List<Entry> result = new ArrayList<>();
+
+      for (long i = low; i < count; i++) {
+	Entry entry = getEntry(i);
+
+	if (!Arrays.equals(entry.key, key)) {
+	  break;
+	}
+
+	result.add(entry);
+      }
+
+      return result;
+    }
+
+    /**
+     * Provides an entry given its position in the entry table.
+     *
+     * @param index
+     *          A long with the position of the entry in the entry table.
+     * @return an Entry with the entry.
+     */
+    private Entry getEntry(long index) {
+      long position = getLong(HEADER_SIZE + 8 * index);
+      byte[] key = getBytes(position);
+      position += 2 + key.length;
+      byte[] auid = getBytes(position);
+      position += 2 + auid.length;
+      return new Entry(key, auid, getBytes(position));
+    }
+
+    private int getInt(long position) {
+      return segment(position).getInt(offset(position));
+    }
+
+    private long getLong(long position) {
+      return segment(position).getLong(offset(position));
+    }
+
+    // Reads a field preceded by its length.
+    private byte[] getBytes(long position) {
+      MappedByteBuffer segment = segment(position);
+      int offset = offset(position);
+      byte[] result = new byte[segment.getShort(offset) & 0xffff];
+      segment.get(offset + 2, result);
+      return result;
+    }
+
+    private MappedByteBuffer segment(long position) {
+      return segments[(int)(position / SEGMENT_SIZE)];
+    }
+
+    private static int offset(long position) {
+      return (int)(position % SEGMENT_SIZE);
+    }
+  }
+}
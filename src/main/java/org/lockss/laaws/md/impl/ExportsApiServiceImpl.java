@@ -0,0 +1,285 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import org.lockss.laaws.md.api.ExportsApiDelegate;
+import org.lockss.laaws.md.model.Export;
+import org.lockss.laaws.md.model.ExportSpec;
+import org.lockss.log.L4JLogger;
+import org.lockss.spring.auth.AuthUtil;
+import org.lockss.spring.auth.Roles;
+import org.lockss.util.StringUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+/**
+ * Controller for the exports of AU metadata to files.
+ */
+@Service
+public class ExportsApiServiceImpl extends BaseMdApiServiceImpl
+    implements ExportsApiDelegate {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  // The media types of export files.
+  static final MediaType APPLICATION_GZIP =
+      MediaType.parseMediaType("application/gzip");
+  static final MediaType APPLICATION_ARROW_FILE =
+      MediaType.parseMediaType("application/vnd.apache.arrow.file");
+
+  @Autowired
+  private MetadataExporter exporter;
+
+  /**
+   * Deletes an export, stopping it if it is running and deleting its file.
+   *
+   * @param exportid
+   *          A String with the export identifier.
+   * @return a {@code ResponseEntity<Export>} with the deleted export.
+   */
+  @Override
+  public ResponseEntity<Export> deleteExportsExportid(String exportid) {
+    log.debug2("exportid = {}", exportid);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    try {
+      Export result = exporter.delete(exportid);
+      log.debug2("result = {}", result);
+      return new ResponseEntity<Export>(result, HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      String message = "No export found for exportid = '" + exportid + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    } catch (Exception e) {
+      String message =
+	  "Cannot deleteExportsExportid() for exportid = '" + exportid + "'";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides all the exports.
+   *
+   * @return a {@code ResponseEntity<List<Export>>} with the exports.
+   */
+  @Override
+  public ResponseEntity<List<Export>> getExports() {
+    log.debug2("Invoked");
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    try {
+      List<Export> result = exporter.getExports();
+      log.debug2("result = {}", result);
+      return new ResponseEntity<List<Export>>(result, HttpStatus.OK);
+    } catch (Exception e) {
+      String message = "Cannot getExports()";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides an export given its identifier.
+   *
+   * @param exportid
+   *          A String with the export identifier.
+   * @return a {@code ResponseEntity<Export>} with the export.
+   */
+  @Override
+  public ResponseEntity<Export> getExportsExportid(String exportid) {
+    log.debug2("exportid = {}", exportid);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    try {
+      Export result = exporter.getExport(exportid);
+      log.debug2("result = {}", result);
+      return new ResponseEntity<Export>(result, HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      String message = "No export found for exportid = '" + exportid + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    } catch (Exception e) {
+      String message =
+	  "Cannot getExportsExportid() for exportid = '" + exportid + "'";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides the file written by a finished export.
+   *
+   * @param exportid
+   *          A String with the export identifier.
+   * @return a {@code ResponseEntity<Resource>} with the Arrow IPC file or
+   *         the gzip-compressed CSV file.
+   */
+  @Override
+  public ResponseEntity<Resource> getExportsExportidFile(String exportid) {
+    log.debug2("exportid = {}", exportid);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    try {
+      String format = exporter.getExport(exportid).getFormat();
+      File file = exporter.getExportFile(exportid);
+
+      HttpHeaders headers = new HttpHeaders();
+      headers.setContentType(MetadataExporter.FORMAT_CSV.equals(format)
+	  ? APPLICATION_GZIP : APPLICATION_ARROW_FILE);
+      headers.setContentLength(file.length());
+      headers.set(HttpHeaders.CONTENT_DISPOSITION,
+	  "attachment; filename=\"" + file.getName() + "\"");
+
+      return new ResponseEntity<Resource>(new FileSystemResource(file),
+	  headers, HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      String message = "No export found for exportid = '" + exportid + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    } catch (IllegalStateException ise) {
+      String message = "Export file not available for exportid = '"
+	  + exportid + "'";
+      log.warn(message, ise);
+      return new ResponseEntity<>(HttpStatus.CONFLICT);
+    } catch (Exception e) {
+      String message =
+	  "Cannot getExportsExportidFile() for exportid = '" + exportid + "'";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Submits an export of the metadata of AUs to a file.
+   *
+   * @param exportSpec
+   *          An ExportSpec with the specification of the export.
+   * @return a {@code ResponseEntity<Export>} with the submitted export.
+   */
+  @Override
+  public ResponseEntity<Export> postExports(ExportSpec exportSpec) {
+    log.debug2("exportSpec = {}", exportSpec);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    // Validation of the specification.
+    if (exportSpec == null || exportSpec.getAuids() == null
+	|| exportSpec.getAuids().isEmpty()) {
+      String message = "At least one auid must be specified";
+      log.warn(message);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    for (String auid : exportSpec.getAuids()) {
+      if (StringUtil.isNullString(auid)) {
+	String message = "Invalid empty auid";
+	log.warn(message);
+	return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+      }
+    }
+
+    if (exportSpec.getColumns() != null) {
+      for (String column : exportSpec.getColumns()) {
+	if (StringUtil.isNullString(column)) {
+	  String message = "Invalid empty column";
+	  log.warn(message);
+	  return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+	}
+      }
+    }
+
+    if (exportSpec.getFormat() != null
+	&& !MetadataExporter.isSupportedFormat(exportSpec.getFormat())) {
+      String message = "Invalid format '" + exportSpec.getFormat() + "'";
+      log.warn(message);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    try {
+      Export result = exporter.submit(exportSpec.getAuids(),
+	  exportSpec.getColumns(), exportSpec.getFormat());
+      log.debug2("result = {}", result);
+      return new ResponseEntity<Export>(result, HttpStatus.ACCEPTED);
+    } catch (RejectedExecutionException ree) {
+      String message = "Too many exports waiting to run";
+      log.warn(message, ree);
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    } catch (Exception e) {
+      String message = "Cannot postExports() for exportSpec = " + exportSpec;
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+}
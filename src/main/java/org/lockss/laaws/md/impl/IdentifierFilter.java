@@ -0,0 +1,560 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.config.Tdb;
+import org.lockss.db.DbException;
+import org.lockss.log.L4JLogger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * An optional in-memory Bloom filter of the DOIs and ISSNs in the metadata
+ * database, used to answer without a database query the OpenURL queries that
+ * certainly have no results.
+ * <br>
+ * The filter is built in the background when first used. The identifiers of
+ * an AU are added whenever a job for that AU finishes. Identifiers that are
+ * removed from the database remain in the filter, which only makes it less
+ * effective, until the filter is rebuilt because it has grown beyond its
+ * capacity.
+ * <br>
+ * The identifiers of an AU reach the filter only when the job monitor polls
+ * the job manager after the job for the AU has finished. While the job
+ * monitor has pending changes, the filter does not exclude any query, which
+ * then goes to the database as if there were no filter.
+ */
+@Component
+public class IdentifierFilter implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.identifierFilter.";
+
+  /**
+   * Whether the identifier filter is maintained and used to skip OpenURL
+   * queries.
+   */
+  public static final String PARAM_ENABLED = PREFIX + "enabled";
+  public static final boolean DEFAULT_ENABLED = false;
+
+  /**
+   * The minimum number of identifiers for which the filter is sized. A filter
+   * that grows beyond its size is rebuilt with twice the number of identifiers
+   * it holds.
+   */
+  public static final String PARAM_EXPECTED_ENTRIES =
+      PREFIX + "expectedEntries";
+  public static final long DEFAULT_EXPECTED_ENTRIES = 1000000;
+
+  /**
+   * The number of bits of the filter per identifier. Ten bits give a false
+   * positive rate of about 1%.
+   */
+  public static final String PARAM_BITS_PER_ENTRY = PREFIX + "bitsPerEntry";
+  public static final int DEFAULT_BITS_PER_ENTRY = 10;
+
+  // The OpenURL parameters with a DOI, and the prefix of the DOI in them.
+  private static final String RFT_ID_PARAM = "rft_id";
+  private static final String RFT_ID_DOI_PREFIX = "info:doi/";
+  private static final String ID_PARAM = "id";
+  private static final String ID_DOI_PREFIX = "doi:";
+
+  // The OpenURL parameters with an ISSN.
+  private static final Set<String> ISSN_PARAMS = new HashSet<>(Arrays.asList(
+      "rft.issn", "rft.eissn", "issn", "eissn"));
+
+  // The OpenURL parameters that cannot lead to results on their own.
+  private static final Set<String> NON_IDENTIFYING_PARAMS =
+      new HashSet<>(Arrays.asList("url_ver", "url_ctx_fmt", "ctx_ver",
+	  "ctx_enc", "ctx_tim", "rft_val_fmt", "rfr_id", "rft.volume",
+	  "rft.issue", "rft.spage", "rft.epage", "rft.pages", "rft.artnum",
+	  "rft.date", "volume", "issue", "spage", "epage", "pages", "artnum",
+	  "date"));
+
+  private final MetadataJobMonitor jobMonitor;
+  private final MetadataServiceSql mdSql;
+
+  // Serializes the replacement of the filter with the additions of the
+  // identifiers of AUs, so that no addition is lost during a rebuild.
+  private final Object filterLock = new Object();
+
+  // The filter in use, or null if it has not been built yet.
+  private volatile Filter filter = null;
+
+  // The filter being built, or null if none is being built.
+  private Filter building = null;
+
+  // Whether a rebuild has been scheduled but not yet finished.
+  private boolean rebuildPending = false;
+
+  private ExecutorService executor = null;
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   * @param mdSql
+   *          A MetadataServiceSql with the metadata database queries.
+   */
+  @Autowired
+  public IdentifierFilter(MetadataJobMonitor jobMonitor,
+      MetadataServiceSql mdSql) {
+    this.jobMonitor = jobMonitor;
+    this.mdSql = mdSql;
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides an indication of whether the identifier filter is enabled.
+   *
+   * @return a boolean with <code>true</code> if the identifier filter is
+   *         enabled, <code>false</code> otherwise.
+   */
+  public boolean isEnabled() {
+    return ConfigManager.getCurrentConfig()
+	.getBoolean(PARAM_ENABLED, DEFAULT_ENABLED);
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    List<String> keys = new ArrayList<>();
+
+    try {
+      mdSql.scanDois(auid, doi -> keys.add(doiKey(doi)));
+      mdSql.scanIssns(auid, issn -> keys.add(issnKey(issn)));
+    } catch (DbException dbe) {
+      // The filter could now give false negatives, so it cannot be used.
+      log.error("Cannot add the identifiers of auid '" + auid + "'", dbe);
+
+      synchronized (filterLock) {
+	filter = null;
+      }
+
+      scheduleRebuild();
+      return;
+    }
+
+    boolean isFull = false;
+
+    synchronized (filterLock) {
+      if (filter != null) {
+	filter.addAll(keys);
+	isFull = filter.isFull();
+      }
+
+      if (building != null) {
+	building.addAll(keys);
+      }
+    }
+
+    log.debug("Added {} identifiers of auid '{}'", keys.size(), auid);
+
+    if (isFull) {
+      scheduleRebuild();
+    }
+  }
+
+  /**
+   * Provides an indication of whether an OpenURL query certainly has no
+   * results, because it only identifies its target by DOIs and ISSNs that are
+   * not known.
+   *
+   * @param params
+   *          A {@code Map<String, String>} with the OpenURL query parameters.
+   * @return a boolean with <code>true</code> if the query certainly has no
+   *         results, <code>false</code> if it may have results or some job may
+   *         have added identifiers not yet in the filter.
+   */
+  public boolean excludes(Map<String, String> params) {
+    Filter current = getFilter();
+
+    if (current == null || params == null) {
+      return false;
+    }
+
+    // Check whether some job may have added identifiers to the database that
+    // have not been added to the filter yet.
+    if (jobMonitor.hasPendingChanges()) {
+      // Yes: The query cannot be excluded.
+      log.debug2("Job monitor has pending changes");
+      return false;
+    }
+
+    boolean hasIdentifier = false;
+
+    for (Map.Entry<String, String> param : params.entrySet()) {
+      String name = param.getKey();
+      String value = param.getValue();
+
+      if (value == null || NON_IDENTIFYING_PARAMS.contains(name)) {
+	continue;
+      }
+
+      if (RFT_ID_PARAM.equals(name) && value.startsWith(RFT_ID_DOI_PREFIX)) {
+	value = value.substring(RFT_ID_DOI_PREFIX.length());
+      } else if (ID_PARAM.equals(name) && value.startsWith(ID_DOI_PREFIX)) {
+	value = value.substring(ID_DOI_PREFIX.length());
+      } else if (ISSN_PARAMS.contains(name)) {
+	// The OpenURL resolver also finds ISSNs in the title database.
+	if (current.mightContain(issnKey(value)) || isInTdb(value)) {
+	  return false;
+	}
+
+	hasIdentifier = true;
+	continue;
+      } else {
+	// Other parameters may lead to results in other ways.
+	return false;
+      }
+
+      if (current.mightContain(doiKey(value))) {
+	return false;
+      }
+
+      hasIdentifier = true;
+    }
+
+    log.debug2("hasIdentifier = {}", hasIdentifier);
+    return hasIdentifier;
+  }
+
+  /**
+   * Provides an indication of whether a DOI may be in the metadata database.
+   *
+   * @param doi
+   *          A String with the DOI.
+   * @return a boolean with <code>false</code> if the DOI is certainly not in
+   *         the metadata database or the filter has not been built yet,
+   *         <code>true</code> otherwise.
+   */
+  public boolean mightContainDoi(String doi) {
+    Filter current = getFilter();
+    return current != null && current.mightContain(doiKey(doi));
+  }
+
+  /**
+   * Provides an indication of whether an ISSN may be in the metadata
+   * database.
+   *
+   * @param issn
+   *          A String with the ISSN.
+   * @return a boolean with <code>false</code> if the ISSN is certainly not in
+   *         the metadata database or the filter has not been built yet,
+   *         <code>true</code> otherwise.
+   */
+  public boolean mightContainIssn(String issn) {
+    Filter current = getFilter();
+    return current != null && current.mightContain(issnKey(issn));
+  }
+
+  /**
+   * Builds the filter from the current contents of the metadata database and
+   * starts using it.
+   *
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public void rebuild() throws DbException {
+    Configuration config = ConfigManager.getCurrentConfig();
+    long capacity = config.getLong(PARAM_EXPECTED_ENTRIES,
+	DEFAULT_EXPECTED_ENTRIES);
+    int bitsPerEntry = Math.max(1, config.getInt(PARAM_BITS_PER_ENTRY,
+	DEFAULT_BITS_PER_ENTRY));
+
+    Filter previous = filter;
+
+    if (previous != null) {
+      capacity = Math.max(capacity, 2 * previous.size());
+    }
+
+    long startTime = System.currentTimeMillis();
+    Filter newFilter = new Filter(capacity, bitsPerEntry);
+
+    synchronized (filterLock) {
+      building = newFilter;
+    }
+
+    try {
+      mdSql.scanDois(null, doi -> newFilter.add(doiKey(doi)));
+      mdSql.scanIssns(null, issn -> newFilter.add(issnKey(issn)));
+
+      synchronized (filterLock) {
+	filter = newFilter;
+      }
+    } finally {
+      synchronized (filterLock) {
+	building = null;
+      }
+    }
+
+    log.info("Built identifier filter with {} identifiers in {} ms",
+	newFilter.size(), System.currentTimeMillis() - startTime);
+  }
+
+  /**
+   * Stops the rebuilding of the filter.
+   */
+  @PreDestroy
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Provides the filter in use, scheduling its build on first use.
+   *
+   * @return a Filter with the filter, or <code>null</code> if it has not been
+   *         built yet.
+   */
+  private Filter getFilter() {
+    Filter current = filter;
+
+    if (current == null) {
+      scheduleRebuild();
+    }
+
+    return current;
+  }
+
+  /**
+   * Schedules a rebuild of the filter, unless one is already pending.
+   */
+  private synchronized void scheduleRebuild() {
+    if (rebuildPending) {
+      return;
+    }
+
+    rebuildPending = true;
+
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(r -> {
+	Thread thread = new Thread(r, "IdentifierFilter");
+	thread.setDaemon(true);
+	return thread;
+      });
+    }
+
+    executor.execute(() -> {
+      try {
+	rebuild();
+      } catch (Exception e) {
+	log.error("Cannot build the identifier filter", e);
+      } finally {
+	synchronized (IdentifierFilter.this) {
+	  rebuildPending = false;
+	}
+      }
+    });
+  }
+
+  /**
+   * Provides an indication of whether an ISSN is in the title database, with
+   * or without its hyphen.
+   *
+   * @param issn
+   *          A String with the ISSN.
+   * @return a boolean with <code>true</code> if the ISSN is in the title
+   *         database, <code>false</code> otherwise.
+   */
+  private static boolean isInTdb(String issn) {
+    Tdb tdb = ConfigManager.getCurrentConfig().getTdb();
+
+    if (tdb == null) {
+      return false;
+    }
+
+    String trimmed = issn.trim();
+    String unhyphenated = trimmed.replace("-", "");
+
+    // The title database usually has the ISSNs in their hyphenated form.
+    if (unhyphenated.length() == 8 && hasTitles(tdb,
+	unhyphenated.substring(0, 4) + "-" + unhyphenated.substring(4))) {
+      return true;
+    }
+
+    return hasTitles(tdb, trimmed) || hasTitles(tdb, unhyphenated);
+  }
+
+  /**
+   * Provides an indication of whether the title database has titles with an
+   * ISSN written exactly as given.
+   *
+   * @param tdb
+   *          A Tdb with the title database.
+   * @param issn
+   *          A String with the ISSN.
+   * @return a boolean with <code>true</code> if there are titles with the
+   *         ISSN, <code>false</code> otherwise.
+   */
+  private static boolean hasTitles(Tdb tdb, String issn) {
+    Collection<?> titles = tdb.getTdbTitlesByIssn(issn);
+    return titles != null && !titles.isEmpty();
+  }
+
+  /**
+   * Provides the filter key of a DOI.
+   *
+   * @param doi
+   *          A String with the DOI.
+   * @return a String with the filter key.
+   */
+  static String doiKey(String doi) {
+    // DOIs are case-insensitive.
+    return "doi:" + doi.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Provides the filter key of an ISSN.
+   *
+   * @param issn
+   *          A String with the ISSN.
+   * @return a String with the filter key.
+   */
+  static String issnKey(String issn) {
+    return "issn:" + issn.replace("-", "").trim().toUpperCase(Locale.ROOT);
+  }
+
+  /**
+   * A Bloom filter of strings that can be added to concurrently.
+   */
+  static class Filter {
+    // The seed of the second hash of a key.
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *          A long with the number of keys for which the filter is sized.
+     * @param bitsPerEntry
+     *          An int with the number of bits per key.
+     */
+    Filter(long capacity, int bitsPerEntry) {
+      this.capacity = Math.max(1, capacity);
+      long wordCount = Math.min(Integer.MAX_VALUE,
+	  (this.capacity * bitsPerEntry + 63) / 64);
+      words = new AtomicLongArray((int)wordCount);
+      bitCount = wordCount * 64;
+      hashCount = Math.max(1, (int)Math.round(bitsPerEntry * Math.log(2)));
+    }
+
+    void add(String key) {
+      long h1 = mix(hash(key));
+      long h2 = mix(h1 ^ SEED) | 1;
+
+      for (int i = 0; i < hashCount; i++) {
+	long bit = Math.floorMod(h1 + i * h2, bitCount);
+	long mask = 1L << (bit & 63);
+	words.accumulateAndGet((int)(bit >>> 6), mask, (w, m) -> w | m);
+      }
+
+      size.incrementAndGet();
+    }
+
+    void addAll(Collection<String> keys) {
+      for (String key : keys) {
+	add(key);
+      }
+    }
+
+    boolean mightContain(String key) {
+      long h1 = mix(hash(key));
+      long h2 = mix(h1 ^ SEED) | 1;
+
+      for (int i = 0; i < hashCount; i++) {
+	long bit = Math.floorMod(h1 + i * h2, bitCount);
+
+	if ((words.get((int)(bit >>> 6)) & (1L << (bit & 63))) == 0) {
+	  return false;
+	}
+      }
+
+      return true;
+    }
+
+    long size() {
+      return size.get();
+    }
+
+    boolean isFull() {
+      return size.get() > capacity;
+    }
+
+    // The 64-bit FNV-1a hash of the characters of a key.
+    private static long hash(String key) {
+      long h = 0xcbf29ce484222325L;
+
+      for (int i = 0; i < key.length(); i++) {
+	h ^= key.charAt(i);
+	h *= 0x100000001b3L;
+      }
+
+      return h;
+    }
+
+    // The finalizer of the SplitMix64 generator, to spread the hash bits.
+    private static long mix(long h) {
+      h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+      h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+      return h ^ (h >>> 31);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.lockss.metadata.ItemMetadata;
+
+/**
+ * Hoists out of the items of a page of AU metadata the elements that have the
+ * same value in all of them, such as the AU identifier or the publisher name,
+ * so that they are listed only once per page.
+ */
+public class ItemMetadataCompactor {
+  private final ItemMetadata auConstants;
+  private final List<ItemMetadata> items;
+
+  /**
+   * Constructor.
+   * <br>
+   * The passed items are not modified, as they may be shared, for example, by
+   * cached pages.
+   *
+   * @param items
+   *          A {@code List<ItemMetadata>} with the items of the page.
+   * @param names
+   *          A {@code Collection<String>} with the names of the scalar or map
+   *          elements that may be hoisted.
+   */
+  public ItemMetadataCompactor(List<ItemMetadata> items,
+      Collection<String> names) {
+    auConstants = new ItemMetadata();
+    auConstants.setScalarMap(new HashMap<String, String>());
+    auConstants.setMapMap(new HashMap<String, Map<String, String>>());
+
+    if (items.isEmpty()) {
+      this.items = items;
+      return;
+    }
+
+    // Find the elements with the same value in all the items.
+    for (String name : names) {
+      String scalar = getScalar(items.get(0), name);
+
+      if (scalar != null) {
+	boolean constant = true;
+
+	for (ItemMetadata item : items) {
+	  if (!scalar.equals(getScalar(item, name))) {
+	    constant = false;
+	    break;
+	  }
+	}
+
+	if (constant) {
+	  auConstants.getScalarMap().put(name, scalar);
+	}
+      }
+
+      Map<String, String> map = getMap(items.get(0), name);
+
+      if (map != null) {
+	boolean constant = true;
+
+	for (ItemMetadata item : items) {
+	  if (!map.equals(getMap(item, name))) {
+	    constant = false;
+	    break;
+	  }
+	}
+
+	if (constant) {
+	  auConstants.getMapMap().put(name, map);
+	}
+      }
+    }
+
+    if (auConstants.getScalarMap().isEmpty()
+	&& auConstants.getMapMap().isEmpty()) {
+      this.items = items;
+      return;
+    }
+
+    // Remove the hoisted elements from copies of the items.
+    this.items = new ArrayList<>(items.size());
+
+    for (ItemMetadata item : items) {
+      ItemMetadata copy = new ItemMetadata();
+      copy.setId(item.getId());
+      copy.setScalarMap(without(item.getScalarMap(),
+	  auConstants.getScalarMap()));
+      copy.setSetMap(item.getSetMap());
+      copy.setListMap(item.getListMap());
+      copy.setMapMap(without(item.getMapMap(), auConstants.getMapMap()));
+      this.items.add(copy);
+    }
+  }
+
+  /**
+   * Provides the elements with the same value in all the items.
+   *
+   * @return an ItemMetadata with the elements common to all the items.
+   */
+  public ItemMetadata getAuConstants() {
+    return auConstants;
+  }
+
+  /**
+   * Provides the items without the elements common to all of them.
+   *
+   * @return a {@code List<ItemMetadata>} with the compacted items.
+   */
+  public List<ItemMetadata> getItems() {
+    return items;
+  }
+
+  private static String getScalar(ItemMetadata item, String name) {
+    return item.getScalarMap() == null ? null : item.getScalarMap().get(name);
+  }
+
+  private static Map<String, String> getMap(ItemMetadata item, String name) {
+    return item.getMapMap() == null ? null : item.getMapMap().get(name);
+  }
+
+  /**
+   * Provides a copy of a map without the entries of another one.
+   *
+   * @param map
+   *          A {@code Map<String, V>} with the map to be copied.
+   * @param removed
+   *          A {@code Map<String, V>} with the entries to be left out.
+   * @return a {@code Map<String, V>} with the copy.
+   */
+  private static <V> Map<String, V> without(Map<String, V> map,
+      Map<String, V> removed) {
+    if (map == null || removed.isEmpty()) {
+      return map;
+    }
+
+    Map<String, V> result = new HashMap<>();
+
+    for (Map.Entry<String, V> entry : map.entrySet()) {
+      if (!Objects.equals(entry.getValue(), removed.get(entry.getKey()))) {
+	result.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.lockss.metadata.ItemMetadata;
+import org.lockss.metadata.ItemMetadataPage;
+
+/**
+ * Replaces equal strings in the items of a page of AU metadata with a single
+ * instance.
+ * <br>
+ * The items of an AU repeat the same element names and many of the same
+ * values, such as the AU identifier and the publisher, provider and
+ * publication names, so pages kept in memory take much less space once their
+ * strings are shared. The dictionary is scoped to the page, so nothing is
+ * retained after the page is discarded.
+ */
+public class ItemMetadataInterner {
+  // The page-scoped dictionary of strings.
+  private final Map<String, String> strings = new HashMap<>();
+
+  /**
+   * Deduplicates in place the strings of the items of a page.
+   * <br>
+   * This must be done before the page is shared, as the elements of its items
+   * are replaced.
+   *
+   * @param page
+   *          An ItemMetadataPage with the page.
+   * @return an ItemMetadataPage with the same page, for convenience.
+   */
+  public static ItemMetadataPage intern(ItemMetadataPage page) {
+    if (page != null && page.getItems() != null) {
+      ItemMetadataInterner interner = new ItemMetadataInterner();
+
+      for (ItemMetadata item : page.getItems()) {
+	interner.intern(item);
+      }
+    }
+
+    return page;
+  }
+
+  /**
+   * Deduplicates in place the strings of an item.
+   *
+   * @param item
+   *          An ItemMetadata with the item.
+   */
+  void intern(ItemMetadata item) {
+    if (item.getScalarMap() != null) {
+      Map<String, String> scalarMap = new HashMap<>();
+
+      for (Map.Entry<String, String> entry : item.getScalarMap().entrySet()) {
+	scalarMap.put(intern(entry.getKey()), intern(entry.getValue()));
+      }
+
+      item.setScalarMap(scalarMap);
+    }
+
+    if (item.getSetMap() != null) {
+      Map<String, Set<String>> setMap = new HashMap<>();
+
+      for (Map.Entry<String, Set<String>> entry
+	  : item.getSetMap().entrySet()) {
+	Set<String> values = null;
+
+	if (entry.getValue() != null) {
+	  values = new LinkedHashSet<>();
+
+	  for (String value : entry.getValue()) {
+	    values.add(intern(value));
+	  }
+	}
+
+	setMap.put(intern(entry.getKey()), values);
+      }
+
+      item.setSetMap(setMap);
+    }
+
+    if (item.getListMap() != null) {
+      Map<String, List<String>> listMap = new HashMap<>();
+
+      for (Map.Entry<String, List<String>> entry
+	  : item.getListMap().entrySet()) {
+	List<String> values = null;
+
+	if (entry.getValue() != null) {
+	  values = new ArrayList<>(entry.getValue().size());
+
+	  for (String value : entry.getValue()) {
+	    values.add(intern(value));
+	  }
+	}
+
+	listMap.put(intern(entry.getKey()), values);
+      }
+
+      item.setListMap(listMap);
+    }
+
+    if (item.getMapMap() != null) {
+      Map<String, Map<String, String>> mapMap = new HashMap<>();
+
+      for (Map.Entry<String, Map<String, String>> entry
+	  : item.getMapMap().entrySet()) {
+	Map<String, String> map = null;
+
+	if (entry.getValue() != null) {
+	  map = new HashMap<>();
+
+	  for (Map.Entry<String, String> mapEntry : entry.getValue().entrySet()) {
+	    map.put(intern(mapEntry.getKey()), intern(mapEntry.getValue()));
+	  }
+	}
+
+	mapMap.put(intern(entry.getKey()), map);
+      }
+
+      item.setMapMap(mapMap);
+    }
+  }
+
+  /**
+   * Provides the shared instance of a string.
+   *
+   * @param string
+   *          A String with the string.
+   * @return a String with the shared instance equal to the passed string.
+   */
+  private String intern(String string) {
+    if (string == null) {
+      return null;
+    }
+
+    String result = strings.putIfAbsent(string, string);
+    return result == null ? string : result;
+  }
+}
@@ -0,0 +1,228 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.lockss.metadata.ItemMetadata;
+
+/**
+ * A selection of the metadata elements of items to be returned to a client.
+ * <br>
+ * Each field names a metadata element, such as <code>doi</code>,
+ * <code>item_title</code> or <code>url</code>, in whichever of the scalar,
+ * set, list or map elements of an item it appears. A field of the form
+ * <code>name.key</code> selects a single entry of a map element, such as
+ * <code>url.Access</code>.
+ * <br>
+ * The projection is applied to items already read in full from the database,
+ * so it reduces the size of responses but not the cost of the queries.
+ */
+public class ItemMetadataProjection {
+  /**
+   * The projection that includes all the metadata elements.
+   */
+  public static final ItemMetadataProjection ALL =
+      new ItemMetadataProjection(null, null);
+
+  // The names of the elements included in full.
+  private final Set<String> names;
+
+  // The keys of the entries included for partially-included map elements.
+  private final Map<String, Set<String>> mapKeys;
+
+  /**
+   * Provides the projection defined by a list of fields.
+   *
+   * @param fields
+   *          A {@code List<String>} with the fields to be included.
+   * @return an ItemMetadataProjection with the projection, which includes all
+   *         the metadata elements if no fields are passed.
+   */
+  public static ItemMetadataProjection fromFields(List<String> fields) {
+    if (fields == null || fields.isEmpty()) {
+      return ALL;
+    }
+
+    Set<String> names = new HashSet<>();
+    Map<String, Set<String>> mapKeys = new HashMap<>();
+
+    for (String field : fields) {
+      if (field == null) {
+	continue;
+      }
+
+      // Fields may also be passed as a single comma-separated value.
+      for (String name : field.split(",")) {
+	name = name.trim();
+
+	if (name.isEmpty()) {
+	  continue;
+	}
+
+	int dotLoc = name.indexOf('.');
+
+	if (dotLoc > 0 && dotLoc < name.length() - 1) {
+	  mapKeys.computeIfAbsent(name.substring(0, dotLoc),
+	      k -> new HashSet<>()).add(name.substring(dotLoc + 1));
+	} else {
+	  names.add(name);
+	}
+      }
+    }
+
+    if (names.isEmpty() && mapKeys.isEmpty()) {
+      return ALL;
+    }
+
+    return new ItemMetadataProjection(names, mapKeys);
+  }
+
+  private ItemMetadataProjection(Set<String> names,
+      Map<String, Set<String>> mapKeys) {
+    this.names = names;
+    this.mapKeys = mapKeys;
+  }
+
+  /**
+   * Provides an indication of whether this projection includes all the
+   * metadata elements.
+   *
+   * @return a boolean with <code>true</code> if all the metadata elements are
+   *         included, <code>false</code> otherwise.
+   */
+  public boolean isAll() {
+    return names == null;
+  }
+
+  /**
+   * Provides the projection of a list of items.
+   *
+   * @param items
+   *          A {@code List<ItemMetadata>} with the items to be projected.
+   * @return a {@code List<ItemMetadata>} with the projected items.
+   */
+  public List<ItemMetadata> project(List<ItemMetadata> items) {
+    if (isAll()) {
+      return items;
+    }
+
+    List<ItemMetadata> result = new ArrayList<>(items.size());
+
+    for (ItemMetadata item : items) {
+      result.add(project(item));
+    }
+
+    return result;
+  }
+
+  /**
+   * Provides the projection of an item.
+   * <br>
+   * The passed item is not modified, as it may be shared, for example, by
+   * cached pages.
+   *
+   * @param item
+   *          An ItemMetadata with the item to be projected.
+   * @return an ItemMetadata with the projected item.
+   */
+  public ItemMetadata project(ItemMetadata item) {
+    if (isAll()) {
+      return item;
+    }
+
+    ItemMetadata result = new ItemMetadata();
+    result.setId(item.getId());
+    result.setScalarMap(select(item.getScalarMap()));
+    result.setSetMap(select(item.getSetMap()));
+    result.setListMap(select(item.getListMap()));
+
+    Map<String, Map<String, String>> mapMap = select(item.getMapMap());
+
+    if (item.getMapMap() != null) {
+      // Add the individually selected entries of map elements.
+      for (Map.Entry<String, Set<String>> entry : mapKeys.entrySet()) {
+	Map<String, String> map = item.getMapMap().get(entry.getKey());
+
+	if (map == null || names.contains(entry.getKey())) {
+	  continue;
+	}
+
+	Map<String, String> selected = new HashMap<>();
+
+	for (String key : entry.getValue()) {
+	  if (map.containsKey(key)) {
+	    selected.put(key, map.get(key));
+	  }
+	}
+
+	if (!selected.isEmpty()) {
+	  mapMap.put(entry.getKey(), selected);
+	}
+      }
+    }
+
+    result.setMapMap(mapMap);
+    return result;
+  }
+
+  /**
+   * Provides the elements of a map that are included in full.
+   *
+   * @param map
+   *          A {@code Map<String, V>} with the metadata elements.
+   * @return a {@code Map<String, V>} with the included metadata elements.
+   */
+  private <V> Map<String, V> select(Map<String, V> map) {
+    Map<String, V> result = new HashMap<>();
+
+    if (map != null) {
+      for (String name : names) {
+	if (map.containsKey(name)) {
+	  result.put(name, map.get(name));
+	}
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "[ItemMetadataProjection names=" + names + ", mapKeys=" + mapKeys
+	+ "]";
+  }
+}
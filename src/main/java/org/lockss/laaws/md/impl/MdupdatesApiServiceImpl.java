@@ -31,12 +31,14 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package org.lockss.laaws.md.impl;
 
-import jakarta.servlet.http.HttpServletRequest;
 import org.lockss.account.UserAccount;
 import org.lockss.app.LockssApp;
 import org.lockss.app.LockssDaemon;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
 import org.lockss.laaws.md.api.MdupdatesApiDelegate;
 import org.lockss.laaws.md.model.JobPageInfo;
+import org.lockss.laaws.md.model.MdupdateResult;
 import org.lockss.log.L4JLogger;
 import org.lockss.metadata.extractor.MetadataExtractorManager;
 import org.lockss.metadata.extractor.job.*;
@@ -45,7 +47,6 @@ import org.lockss.plugin.AuUtil;
 import org.lockss.servlet.DebugPanel;
 import org.lockss.spring.auth.AuthUtil;
 import org.lockss.spring.auth.Roles;
-import org.lockss.spring.base.BaseSpringApiServiceImpl;
 import org.lockss.state.AuState;
 import org.lockss.util.rest.md.MetadataUpdateSpec;
 import org.lockss.util.rest.repo.model.PageInfo;
@@ -55,7 +56,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.lockss.servlet.DebugPanel.ACTION_FORCE_REINDEX_METADATA;
 import static org.lockss.servlet.DebugPanel.ACTION_REINDEX_METADATA;
@@ -65,15 +71,24 @@ import static org.lockss.util.rest.MetadataExtractorConstants.*;
  * Controller for access to the AU metadata jobs.
  */
 @Service
-public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
+public class MdupdatesApiServiceImpl extends BaseMdApiServiceImpl
     implements MdupdatesApiDelegate {
   private static final L4JLogger log = L4JLogger.getLogger();
 
   static final String USE_FORCE_MESSAGE =
       "Use the 'force=true' query parameter to override.";
 
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.mdupdates.";
+
+  /**
+   * The maximum number of metadata update specifications in a batch request.
+   */
+  public static final String PARAM_MAX_BATCH_SIZE = PREFIX + "maxBatchSize";
+  public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+
   @Autowired
-  private HttpServletRequest request;
+  private MetadataJobMonitor jobMonitor;
 
   /**
    * Deletes all of the queued jobs and stops any processing and deletes any
@@ -86,7 +101,7 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
     log.debug2("Invoked");
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
@@ -119,7 +134,7 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
     log.debug2("jobid = {}", jobid);
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
@@ -164,7 +179,7 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
     log.debug2("continuationToken = {}", continuationToken);
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
@@ -253,7 +268,7 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
     log.debug2("jobid = {}", jobid);
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
@@ -298,22 +313,22 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
     log.debug2("force = {}", force);
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
 
     AuthUtil.checkHasRole(Roles.ROLE_AU_ADMIN);
 
+    boolean forced = Boolean.TRUE.equals(force);
+
+    MetadataExtractorManager mdxManager =
+	LockssApp.getManagerByTypeStatic(MetadataExtractorManager.class);
+
     // Check whether metadata extraction is not enabled.
-    if (!LockssApp.getManagerByTypeStatic(MetadataExtractorManager.class)
-	.isIndexingEnabled()) {
-      // Yes: Add to the audit log a reference to this operation, if necessary.
-      if (force) {
-        audit(ACTION_FORCE_REINDEX_METADATA, null);
-      } else {
-        audit(ACTION_REINDEX_METADATA, null);
-      }
+    if (!mdxManager.isIndexingEnabled()) {
+      // Yes: Add to the audit log a reference to this operation.
+      auditUpdates(Collections.singletonList(null), forced);
 
       // Report the problem.
       String message = "Metadata extraction is disabled";
@@ -321,53 +336,203 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
       return new ResponseEntity<>(HttpStatus.CONFLICT);
     }
 
+    List<String> auditedAuids = new ArrayList<String>(1);
+    MdupdateResult result =
+	processUpdate(metadataUpdateSpec, forced, mdxManager, auditedAuids);
+    log.trace("result = {}", () -> result);
+
+    // Add to the audit log a reference to this operation.
+    auditUpdates(auditedAuids, forced);
+
+    // Check whether the job was not created.
+    if (result.getJob() == null) {
+      // Yes: Report the problem.
+      return new ResponseEntity<>(HttpStatus.valueOf(result.getStatus()));
+    }
+
+    return new ResponseEntity<Job>(result.getJob(), HttpStatus.ACCEPTED);
+  }
+
+  /**
+   * Performs multiple AU metadata update operations, validating them
+   * together.
+   * <br>
+   * An operation rejected for its own specification does not affect the
+   * others, but a failure to schedule a job removes the jobs already
+   * scheduled by the batch and fails the whole batch. The operations are
+   * added to the audit log together once the batch has been processed.
+   * 
+   * @param metadataUpdateSpecs A {@code List<MetadataUpdateSpec>} with the
+   *                            specifications of the metadata update
+   *                            operations.
+   * @param force               A Boolean with the indication of whether to
+   *                            force the operations regardless of the current
+   *                            state of the AUs.
+   * @return a {@code ResponseEntity<List<MdupdateResult>>} with the result of
+   *         each operation, in the order of the specifications.
+   */
+  @Override
+  public ResponseEntity<List<MdupdateResult>> postMdupdatesBatch(
+      List<MetadataUpdateSpec> metadataUpdateSpecs, Boolean force) {
+    log.debug2("metadataUpdateSpecs = {}", metadataUpdateSpecs);
+    log.debug2("force = {}", force);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_AU_ADMIN);
+
+    if (!isValidBatch(metadataUpdateSpecs)) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    boolean forced = Boolean.TRUE.equals(force);
+    List<String> auditedAuids =
+	new ArrayList<String>(metadataUpdateSpecs.size());
+
+    try {
+      MetadataExtractorManager mdxManager =
+	  LockssApp.getManagerByTypeStatic(MetadataExtractorManager.class);
+
+      // Check whether metadata extraction is not enabled.
+      if (!metadataUpdateSpecs.isEmpty() && !mdxManager.isIndexingEnabled()) {
+	// Yes: Add to the audit log a reference to each operation.
+	for (MetadataUpdateSpec metadataUpdateSpec : metadataUpdateSpecs) {
+	  auditedAuids.add(metadataUpdateSpec.getAuid());
+	}
+
+	// Report the problem.
+	String message = "Metadata extraction is disabled";
+	log.warn(message);
+	return new ResponseEntity<>(HttpStatus.CONFLICT);
+      }
+
+      List<MdupdateResult> results =
+	  new ArrayList<MdupdateResult>(metadataUpdateSpecs.size());
+      Set<String> auids = new HashSet<String>();
+
+      for (MetadataUpdateSpec metadataUpdateSpec : metadataUpdateSpecs) {
+	String auid = metadataUpdateSpec.getAuid();
+
+	// Check whether the AU has already been handled in this batch.
+	if (auid != null && !auids.add(auid)) {
+	  // Yes: Reject the operation, as it would conflict with the first one.
+	  auditedAuids.add(auid);
+	  results.add(reject(new MdupdateResult().auid(auid)
+	      .updateType(metadataUpdateSpec.getUpdateType()),
+	      HttpStatus.BAD_REQUEST, "Duplicate auid in batch = '" + auid
+	      + "'"));
+	  continue;
+	}
+
+	MdupdateResult result =
+	    processUpdate(metadataUpdateSpec, forced, mdxManager, auditedAuids);
+
+	// Check whether the job could not be scheduled.
+	if (result.getStatus() == HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+	  // Yes: Undo the rest of the batch and report the problem.
+	  removeScheduledJobs(results);
+	  return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+	}
+
+	results.add(result);
+      }
+
+      log.debug2("results = {}", results);
+      return new ResponseEntity<List<MdupdateResult>>(results, HttpStatus.OK);
+    } catch (Exception e) {
+      String message = "Cannot postMdupdatesBatch() for "
+	  + metadataUpdateSpecs.size() + " specifications, force = " + force;
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    } finally {
+      // Add to the audit log a reference to each operation.
+      auditUpdates(auditedAuids, forced);
+    }
+  }
+
+  /**
+   * Removes the jobs scheduled by the operations of a batch that has failed.
+   * 
+   * @param results A {@code List<MdupdateResult>} with the results of the
+   *                operations of the batch performed so far.
+   */
+  private void removeScheduledJobs(List<MdupdateResult> results) {
+    for (MdupdateResult result : results) {
+      // Check whether the operation scheduled a job.
+      if (result.getJob() != null) {
+	// Yes: Remove it.
+	String jobid = result.getJob().getId();
+
+	try {
+	  getJobManager().removeJob(jobid);
+	} catch (Exception e) {
+	  log.error("Cannot remove job of failed batch: jobid = '" + jobid
+	      + "'", e);
+	}
+      }
+    }
+  }
+
+  /**
+   * Validates and performs an AU metadata update operation.
+   * 
+   * @param metadataUpdateSpec A MetadataUpdateSpec with the specification of
+   *                           the metadata update operation.
+   * @param forced             A boolean with the indication of whether to
+   *                           force the operation regardless of the current
+   *                           state of the AU.
+   * @param mdxManager         A MetadataExtractorManager with the metadata
+   *                           extractor manager.
+   * @param auditedAuids       A {@code List<String>} where to add the AU of
+   *                           the operation, for the audit log.
+   * @return an MdupdateResult with the result of the operation, including the
+   *         job created, if any.
+   */
+  private MdupdateResult processUpdate(MetadataUpdateSpec metadataUpdateSpec,
+      boolean forced, MetadataExtractorManager mdxManager,
+      List<String> auditedAuids) {
+    MdupdateResult result = new MdupdateResult();
     String auid = null;
 
     try {
       // Check whether no metadata extraction specification was received.
       if (metadataUpdateSpec == null) {
-	// Yes: Add to the audit log a reference to this operation, if
-	// necessary.
-        if (force) {
-          audit(ACTION_FORCE_REINDEX_METADATA, null);
-        } else {
-          audit(ACTION_REINDEX_METADATA, null);
-        }
+	// Yes: Add to the audit log a reference to this operation.
+	auditedAuids.add(null);
 
 	// Report the problem.
-	String message = "Invalid metadata update specification: null";
-	log.warn(message);
-	return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+	return reject(result, HttpStatus.BAD_REQUEST,
+	    "Invalid metadata update specification: null");
       }
 
       auid = metadataUpdateSpec.getAuid();
       log.trace("auid = {}", auid);
+      result.setAuid(auid);
 
-      // Add to the audit log a reference to this operation, if necessary.
-      if (force) {
-        audit(ACTION_FORCE_REINDEX_METADATA, auid);
-      } else {
-        audit(ACTION_REINDEX_METADATA, auid);
-      }
+      // Add to the audit log a reference to this operation.
+      auditedAuids.add(auid);
 
       if (auid == null || auid.isEmpty()) {
-	String message = "Invalid auid = '" + auid + "'";
-	log.warn(message);
-	return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+	return reject(result, HttpStatus.BAD_REQUEST,
+	    "Invalid auid = '" + auid + "'");
       }
 
       String updateType = metadataUpdateSpec.getUpdateType();
       log.trace("updateType = {}", updateType);
+      result.setUpdateType(updateType);
 
       if (updateType == null || updateType.isEmpty()) {
-	String message = "Invalid updateType = '" + updateType + "'";
-	log.warn(message);
-	return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+	return reject(result, HttpStatus.BAD_REQUEST,
+	    "Invalid updateType = '" + updateType + "'");
       }
 
       // Check whether the state of the AU needs to be validated before
       // proceeding with the operation.
-      if (!force) {
+      if (!forced) {
 	// Yes: Get the Archival Unit to have its metadata indexing enabled.
 	ArchivalUnit au =
 	    LockssDaemon.getLockssDaemon().getPluginManager().getAuFromId(auid);
@@ -378,12 +543,9 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
 	  throw new IllegalArgumentException();
 	}
 
-	String message = null;
-
 	if (!AuUtil.hasCrawled(au)) {
-	  message = "AU has never been crawled. " + USE_FORCE_MESSAGE;
-	  log.warn(message);
-	  return new ResponseEntity<>(HttpStatus.CONFLICT);
+	  return reject(result, HttpStatus.CONFLICT,
+	      "AU has never been crawled. " + USE_FORCE_MESSAGE);
 	}
 
 	AuState auState = AuUtil.getAuState(au);
@@ -391,13 +553,11 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
 
 	switch (auState.getSubstanceState()) {
 	  case No:
-	    message = "AU has no substance. " + USE_FORCE_MESSAGE;
-	    log.warn(message);
-	    return new ResponseEntity<>(HttpStatus.CONFLICT);
+	    return reject(result, HttpStatus.CONFLICT,
+		"AU has no substance. " + USE_FORCE_MESSAGE);
 	  case Unknown:
-	    message = "Unknown substance for AU. " + USE_FORCE_MESSAGE;
-	    log.warn(message);
-	    return new ResponseEntity<>(HttpStatus.CONFLICT);
+	    return reject(result, HttpStatus.CONFLICT,
+		"Unknown substance for AU. " + USE_FORCE_MESSAGE);
 	  case Yes:
 	    // Fall through.
 	}
@@ -405,9 +565,8 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
 	// Check whether metadata extraction for the AU is not enabled.
 	if (!auState.isMetadataExtractionEnabled()) {
 	  // Yes: Report the problem.
-	  message = "Metadata extraction for this AU has been disabled";
-	  log.warn(message);
-	  return new ResponseEntity<>(HttpStatus.CONFLICT);
+	  return reject(result, HttpStatus.CONFLICT,
+	      "Metadata extraction for this AU has been disabled");
 	}
       }
 
@@ -418,21 +577,17 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
 
       if (canonicalUpdateType.equals(MD_UPDATE_FULL_EXTRACTION) ||
           canonicalUpdateType.equals(MD_UPDATE_INCREMENTAL_EXTRACTION)) {
-        MetadataExtractorManager mdxManager =
-            LockssApp.getManagerByTypeStatic(MetadataExtractorManager.class);
         if (!mdxManager.isEligibleForReindexing(auid)) {
-          String message = "AU is not eligible for reindexing per the index "
-              + "priority configuration: auid = '" + auid + "'";
-          log.warn(message);
-          return new ResponseEntity<>(HttpStatus.CONFLICT);
+          return reject(result, HttpStatus.CONFLICT,
+              "AU is not eligible for reindexing per the index "
+              + "priority configuration: auid = '" + auid + "'");
         }
         // Skip AUs whose plugin cannot produce article metadata; there is
         // nothing to index and a job would extract nothing.
         if (!mdxManager.hasArticleMetadata(auid)) {
-          String message = "AU has no article metadata extractor; there is "
-              + "nothing to index: auid = '" + auid + "'";
-          log.warn(message);
-          return new ResponseEntity<>(HttpStatus.CONFLICT);
+          return reject(result, HttpStatus.CONFLICT,
+              "AU has no article metadata extractor; there is "
+              + "nothing to index: auid = '" + auid + "'");
         }
       }
 
@@ -443,27 +598,90 @@ public class MdupdatesApiServiceImpl extends BaseSpringApiServiceImpl
       } else if (canonicalUpdateType.equals(MD_UPDATE_DELETE)) {
 	jobAuStatus = getJobManager().scheduleMetadataRemoval(auid);
       } else {
-	String message = "Invalid updateType = '" + updateType + "'";
-	log.warn(message);
-	return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+	return reject(result, HttpStatus.BAD_REQUEST,
+	    "Invalid updateType = '" + updateType + "'");
       }
 
       if (log.isTraceEnabled()) log.trace("jobAuStatus = {}", jobAuStatus);
+      jobMonitor.jobScheduled();
 
-      Job result = new Job(jobAuStatus);
-      log.trace("result = {}", () -> result);
-
-      return new ResponseEntity<Job>(result, HttpStatus.ACCEPTED);
+      return result.status(HttpStatus.ACCEPTED.value())
+	  .job(new Job(jobAuStatus));
     } catch (IllegalArgumentException iae) {
       String message = "No Archival Unit found for auid = '" + auid + "'";
       log.warn(message, iae);
-      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+      return result.status(HttpStatus.NOT_FOUND.value()).message(message);
     } catch (Exception e) {
       String message = "Cannot postMdupdates() for metadataUpdateSpec = '"
-	  + metadataUpdateSpec + "', force = " + force;
+	  + metadataUpdateSpec + "', force = " + forced;
       log.error(message, e);
-      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+      return result.status(HttpStatus.INTERNAL_SERVER_ERROR.value())
+	  .message(message);
+    }
+  }
+
+  /**
+   * Adds to the audit log references to AU metadata update operations.
+   * 
+   * @param auids  A {@code List<String>} with the identifiers of the AUs of
+   *               the operations.
+   * @param forced A boolean with the indication of whether the operations are
+   *               forced regardless of the current state of the AUs.
+   */
+  private void auditUpdates(List<String> auids, boolean forced) {
+    String action =
+	forced ? ACTION_FORCE_REINDEX_METADATA : ACTION_REINDEX_METADATA;
+
+    for (String auid : auids) {
+      audit(action, auid);
+    }
+  }
+
+  /**
+   * Records in the result of an AU metadata update operation why it was not
+   * performed.
+   * 
+   * @param result  An MdupdateResult with the result of the operation.
+   * @param status  An HttpStatus with the HTTP status of the problem.
+   * @param message A String with the description of the problem.
+   * @return an MdupdateResult with the result of the operation.
+   */
+  private static MdupdateResult reject(MdupdateResult result,
+      HttpStatus status, String message) {
+    log.warn(message);
+    return result.status(status.value()).message(message);
+  }
+
+  /**
+   * Provides an indication of whether the specifications of a batch request
+   * are acceptable.
+   * 
+   * @param metadataUpdateSpecs A {@code List<MetadataUpdateSpec>} with the
+   *                            specifications of the batch request.
+   * @return a boolean with <code>true</code> if the specifications are
+   *         acceptable, <code>false</code> otherwise.
+   */
+  private boolean isValidBatch(List<MetadataUpdateSpec> metadataUpdateSpecs) {
+    if (metadataUpdateSpecs == null) {
+      log.warn("Invalid null batch");
+      return false;
     }
+
+    int maxBatchSize = ConfigManager.getCurrentConfig()
+	.getInt(PARAM_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+
+    if (metadataUpdateSpecs.size() > maxBatchSize) {
+      log.warn("Batch of {} specifications exceeds the maximum of {}",
+	  metadataUpdateSpecs.size(), maxBatchSize);
+      return false;
+    }
+
+    if (metadataUpdateSpecs.contains(null)) {
+      log.warn("Invalid null specification in batch");
+      return false;
+    }
+
+    return true;
   }
 
   /**
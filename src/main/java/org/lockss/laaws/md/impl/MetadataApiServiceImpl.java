@@ -31,38 +31,130 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package org.lockss.laaws.md.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
-import jakarta.servlet.http.HttpServletRequest;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.lockss.app.LockssApp;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
 import org.lockss.laaws.md.api.MetadataApiDelegate;
+import org.lockss.laaws.md.config.MessageConverterConfigurer;
+import org.lockss.laaws.md.impl.MetadataServiceSql.ItemCriterion;
+import org.lockss.laaws.md.model.AuMetadataChanges;
 import org.lockss.laaws.md.model.AuMetadataPageInfo;
+import org.lockss.laaws.md.model.AusMetadataPageInfo;
+import org.lockss.laaws.md.model.ItemInfo;
+import org.lockss.laaws.md.model.ItemInfoPageInfo;
 import org.lockss.log.L4JLogger;
+import org.lockss.metadata.ItemMetadata;
 import org.lockss.metadata.ItemMetadataContinuationToken;
 import org.lockss.metadata.ItemMetadataPage;
 import org.lockss.metadata.query.MetadataQueryManager;
 import org.lockss.spring.auth.AuthUtil;
 import org.lockss.spring.auth.Roles;
-import org.lockss.spring.base.BaseSpringApiServiceImpl;
+import org.lockss.util.StringUtil;
 import org.lockss.util.rest.repo.model.PageInfo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
 
 /**
- * Service for access to the metadata of an AU.
+ * Service for access to the metadata of AUs.
  */
 @Service
-public class MetadataApiServiceImpl extends BaseSpringApiServiceImpl
+public class MetadataApiServiceImpl extends BaseMdApiServiceImpl
     implements MetadataApiDelegate {
   private static final L4JLogger log = L4JLogger.getLogger();
 
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.metadata.";
+
+  /**
+   * The number of items fetched from the database at a time when the metadata
+   * of an AU is streamed as newline-delimited JSON.
+   */
+  public static final String PARAM_STREAM_BATCH_SIZE =
+      PREFIX + "streamBatchSize";
+  public static final int DEFAULT_STREAM_BATCH_SIZE = 500;
+
+  /**
+   * The maximum number of AUs in a single request for the metadata of
+   * multiple AUs.
+   */
+  public static final String PARAM_MAX_BATCH_AUS = PREFIX + "maxBatchAus";
+  public static final int DEFAULT_MAX_BATCH_AUS = 1000;
+
+  /**
+   * The names of the metadata elements that are listed once per page in
+   * compacted pages when they have the same value in all the items.
+   */
+  public static final String PARAM_COMPACT_ELEMENTS =
+      PREFIX + "compactElements";
+  public static final List<String> DEFAULT_COMPACT_ELEMENTS = List.of(
+      "au_id", "publisher_name", "provider_name", "publication_name",
+      "coverage", "issn");
+
+  // The line separator of a newline-delimited JSON stream.
+  private static final byte[] NDJSON_LINE_SEPARATOR = {'\n'};
+
+  // The mapper configured for the JSON responses, so that streamed items are
+  // serialized like those in pages.
+  @Autowired
+  private ObjectMapper mapper;
+
+  @Autowired
+  private AuMetadataPageCache pageCache;
+
+  @Autowired
+  private MetadataServiceSql mdSql;
+
+  @Autowired
+  private AuMetadataPrefetcher prefetcher;
+
+  @Autowired
+  private AuItemCountCache itemCountCache;
+
   @Autowired
-  private HttpServletRequest request;
+  private MetadataSearchIndex searchIndex;
+
+  // The name of the response header with the number of items of an AU.
+  static final String TOTAL_COUNT_HEADER = "X-Total-Count";
 
   /**
    * Provides the full metadata stored for an AU given the AU identifier or a
    * pageful of the metadata defined by the continuation token and size.
+   * <br>
+   * If the client accepts newline-delimited JSON, all the metadata items of
+   * the AU, starting after the continuation token, if any, are streamed in the
+   * response body instead, one item per line.
+   * <br>
+   * The response carries an entity tag derived from the time of the metadata
+   * extraction of the AU from which the returned items come, and a request
+   * with an If-None-Match header matching the current extraction is answered
+   * with a 304 status without fetching any items.
+   * <br>
+   * A continuation token is bound to the metadata extraction of the AU that
+   * was current when the pagination started. If the AU is reindexed before the
+   * pagination completes, the request fails with a 409 status, unless resuming
+   * is requested, in which case the pagination continues after the last
+   * returned item against the newly extracted metadata.
+   * <br>
+   * The metadata elements included in each item may be restricted to those
+   * named in the fields parameter.
    * 
    * @param auid
    *          A String with the AU identifier.
@@ -72,17 +164,32 @@ public class MetadataApiServiceImpl extends BaseSpringApiServiceImpl
    * @param continuationToken
    *          A String with the continuation token of the next page of metadata
    *          to be returned.
+   * @param resumeOnReindex
+   *          A Boolean with the indication of whether to resume a pagination
+   *          interrupted by the reindexing of the AU instead of failing.
+   * @param fields
+   *          A {@code List<String>} with the names of the metadata elements
+   *          to be included in each item, or <code>null</code> to include
+   *          them all.
+   * @param compact
+   *          A Boolean with the indication of whether the elements with the
+   *          same value in all the items of the page are to be listed once
+   *          instead of in each item.
    * @return a {@code ResponseEntity<AuMetadataPageInfo>} with the metadata.
    */
   @Override
   public ResponseEntity<AuMetadataPageInfo> getMetadataAusAuid(String auid,
-      Integer limit, String continuationToken) {
+      Integer limit, String continuationToken, Boolean resumeOnReindex,
+      List<String> fields, Boolean compact) {
     log.debug2("auid = {}", () -> auid);
     log.debug2("limit = {}", () -> limit);
     log.debug2("continuationToken = {}", () -> continuationToken);
+    log.debug2("resumeOnReindex = {}", () -> resumeOnReindex);
+    log.debug2("fields = {}", () -> fields);
+    log.debug2("compact = {}", () -> compact);
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
@@ -90,10 +197,7 @@ public class MetadataApiServiceImpl extends BaseSpringApiServiceImpl
     AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
 
     // Validation of requested page size.
-    if (limit == null || limit.intValue() < 0) {
-      String message = "Limit of requested items must be a non-negative "
-	  + "integer; it was '" + limit + "'";
-      log.warn(message);
+    if (!isValidLimit(limit)) {
       return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
     }
 
@@ -108,45 +212,107 @@ public class MetadataApiServiceImpl extends BaseSpringApiServiceImpl
       return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
     }
 
+    boolean resume = Boolean.TRUE.equals(resumeOnReindex);
+    ItemMetadataProjection projection =
+	ItemMetadataProjection.fromFields(fields);
+    log.trace("projection = {}", projection);
+    boolean streaming = isNdjsonRequested();
+
+    // Get the time of the current metadata extraction of the AU, which keys
+    // the cached pages and validates the metadata.
+    Long extractionTime = getAuExtractionTime(auid);
+    String representation = getRepresentationName(streaming);
+    String etag = extractionTime == null ? null
+	: toEtag(extractionTime.longValue(), representation);
+
+    // Check whether the client already has the current metadata.
+    if (etag != null && isNotModified(etag)) {
+      // Yes: Report it without fetching any items.
+      log.debug2("Not modified: auid = {}, etag = {}", auid, etag);
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+	  .varyBy(HttpHeaders.ACCEPT).build();
+    }
+
+    // Check whether the metadata is to be streamed.
+    if (streaming) {
+      // Yes.
+      return streamAuMetadata(auid, extractionTime, imct, resume, projection,
+	  representation);
+    }
+
     try {
       // Get the pageful of results.
-      ItemMetadataPage itemsPage = LockssApp.getManagerByTypeStatic(
-	  MetadataQueryManager.class).getAuMetadataDetail(auid, limit, imct);
-      log.trace("itemsPage = {}", () -> itemsPage);
+      ItemMetadataPage itemsPage = null;
+      ItemMetadataContinuationToken pageImct = imct;
 
-      AuMetadataPageInfo result = new AuMetadataPageInfo();
-      PageInfo pi = new PageInfo();
-      result.setPageInfo(pi);
+      try {
+	itemsPage = getItemsPage(auid, extractionTime, limit,
+	    continuationToken, imct);
+      } catch (ConcurrentModificationException cme) {
+	ItemMetadataContinuationToken resumedImct =
+	    resume ? getResumedToken(auid, imct) : null;
 
-      StringBuffer curLinkBuffer = new StringBuffer(
-	  request.getRequestURL().toString()).append("?limit=").append(limit);
+	// Check whether the pagination cannot be resumed.
+	if (resumedImct == null) {
+	  // Yes: Report the conflict.
+	  throw cme;
+	}
 
-      if (continuationToken != null) {
-	curLinkBuffer.append("&continuationToken=").append(continuationToken);
+	itemsPage = getItemsPage(auid, resumedImct.getAuExtractionTimestamp(),
+	    limit, resumedImct.toWebResponseContinuationToken(), resumedImct);
+	pageImct = resumedImct;
       }
 
-      log.trace("curLink = {}", () -> curLinkBuffer.toString());
+      log.trace("itemsPage = {}", itemsPage);
+
+      // Check whether the client is likely to ask for the next page and it
+      // is not already cached.
+      if (itemsPage.getContinuationToken() != null && prefetcher.isEnabled()
+	  && !isCached(auid, limit, itemsPage.getContinuationToken())) {
+	// Yes: Get it ready.
+	prefetcher.prefetch(auid, limit, itemsPage.getContinuationToken());
+      }
 
-      pi.setCurLink(curLinkBuffer.toString());
-      pi.setItemsInPage(itemsPage.getItems().size());
+      // The query parameters that are not page-specific.
+      StringBuilder modeParamsBuilder = new StringBuilder();
 
-      // Check whether there is a response continuation token.
-      if (itemsPage.getContinuationToken() != null) {
-	// Yes.
-	pi.setContinuationToken(itemsPage.getContinuationToken()
-	    .toWebResponseContinuationToken());
+      if (resume) {
+	modeParamsBuilder.append("&resumeOnReindex=true");
+      }
 
-	String nextLink = request.getRequestURL().toString() + "?limit=" + limit
-	    + "&continuationToken=" + pi.getContinuationToken();
-	log.trace("nextLink = {}", () -> nextLink);
+      if (!projection.isAll()) {
+	modeParamsBuilder.append("&fields=").append(UriUtils.encodeQueryParam(
+	    String.join(",", fields), StandardCharsets.UTF_8));
+      }
 
-	pi.setNextLink(nextLink);
+      if (Boolean.TRUE.equals(compact)) {
+	modeParamsBuilder.append("&compact=true");
+      }
+
+      String modeParams = modeParamsBuilder.toString();
+
+      AuMetadataPageInfo result = buildAuMetadataPageInfo(
+	  request.getRequestURL().toString(), limit, continuationToken,
+	  modeParams, itemsPage, projection, Boolean.TRUE.equals(compact));
+
+      HttpHeaders responseHeaders = new HttpHeaders();
+
+      // The entity tag describes the extraction of the returned page, which
+      // may be newer than the one checked above.
+      Long pageExtractionTime =
+	  getPageExtractionTime(itemsPage, pageImct, extractionTime);
+
+      if (pageExtractionTime != null) {
+	responseHeaders.setETag(
+	    toEtag(pageExtractionTime.longValue(), representation));
       }
 
-      result.setItems(itemsPage.getItems());
+      // The representation depends on the accepted media types.
+      responseHeaders.setVary(List.of(HttpHeaders.ACCEPT));
 
       log.debug2("result = {}", () -> result);
-      return new ResponseEntity<AuMetadataPageInfo>(result, HttpStatus.OK);
+      return new ResponseEntity<AuMetadataPageInfo>(result, responseHeaders,
+	  HttpStatus.OK);
     } catch (ConcurrentModificationException cme) {
       String message =
 	  "Pagination conflict for auid '" + auid + "': " + cme.getMessage();
@@ -162,4 +328,1282 @@ public class MetadataApiServiceImpl extends BaseSpringApiServiceImpl
       return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
     }
   }
+
+  /**
+   * Provides a pageful of the metadata of an AU, from the page cache, if
+   * possible.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A Long with the time of the current metadata extraction of the
+   *          AU, or <code>null</code> if it is not known.
+   * @param limit
+   *          An Integer with the maximum number of AU metadata items to be
+   *          returned.
+   * @param continuationToken
+   *          A String with the continuation token of the page as received.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the parsed continuation
+   *          token of the page.
+   * @return an ItemMetadataPage with the requested page.
+   * @throws Exception
+   *           if there are problems getting the page.
+   */
+  private ItemMetadataPage getItemsPage(String auid, Long extractionTime,
+      Integer limit, String continuationToken,
+      ItemMetadataContinuationToken imct) throws Exception {
+    // Check whether the page cache is not enabled or the page cannot be tied
+    // to a metadata extraction.
+    if (!pageCache.isEnabled() || extractionTime == null) {
+      // Yes: Get the page from the database.
+      return fetchItemsPage(auid, extractionTime, limit, continuationToken,
+	  imct);
+    }
+
+    ItemMetadataPage itemsPage =
+	pageCache.get(auid, extractionTime, limit, continuationToken);
+
+    // Check whether the page is not cached.
+    if (itemsPage == null) {
+      // Yes: Get it from the database and cache it.
+      long generation = pageCache.getGeneration();
+
+      // Share the strings repeated in the items before keeping them around.
+      itemsPage = ItemMetadataInterner.intern(fetchItemsPage(auid,
+	  extractionTime, limit, continuationToken, imct));
+
+      ItemMetadataContinuationToken nextImct = itemsPage.getContinuationToken();
+
+      // Check whether the page does not belong to a newer extraction that
+      // happened after the extraction time was obtained.
+      if (nextImct == null
+	  || extractionTime.equals(nextImct.getAuExtractionTimestamp())) {
+	// Yes: Cache it.
+	pageCache.put(auid, extractionTime, limit, continuationToken,
+	    itemsPage, generation);
+      }
+    }
+
+    return itemsPage;
+  }
+
+  /**
+   * Provides an indication of whether a page of the metadata of an AU is in
+   * the page cache.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the continuation token of
+   *          the page.
+   * @return a boolean with <code>true</code> if the page is cached,
+   *         <code>false</code> otherwise.
+   */
+  private boolean isCached(String auid, Integer limit,
+      ItemMetadataContinuationToken imct) {
+    return pageCache.isEnabled() && imct.getAuExtractionTimestamp() != null
+	&& pageCache.contains(auid, imct.getAuExtractionTimestamp(), limit,
+	    imct.toWebResponseContinuationToken());
+  }
+
+  /**
+   * Provides a pageful of the metadata of an AU that has already been
+   * prefetched or, otherwise, from the database.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A Long with the time of the current metadata extraction of the
+   *          AU, or <code>null</code> if it is not known.
+   * @param limit
+   *          An Integer with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the parsed continuation
+   *          token of the page.
+   * @return an ItemMetadataPage with the page.
+   * @throws Exception
+   *           if there are problems getting the page.
+   */
+  private ItemMetadataPage fetchItemsPage(String auid, Long extractionTime,
+      Integer limit, String continuationToken,
+      ItemMetadataContinuationToken imct) throws Exception {
+    // Check whether the page may have been prefetched.
+    if (continuationToken != null && extractionTime != null
+	&& prefetcher.isEnabled()) {
+      // Yes.
+      ItemMetadataPage itemsPage = prefetcher.take(auid,
+	  extractionTime.longValue(), limit, continuationToken);
+
+      if (itemsPage != null) {
+	return itemsPage;
+      }
+    }
+
+    return LockssApp.getManagerByTypeStatic(MetadataQueryManager.class)
+	.getAuMetadataDetail(auid, limit, imct);
+  }
+
+  /**
+   * Provides a continuation token that resumes, against the current metadata
+   * of an AU, a pagination started before the AU was last reindexed.
+   * <br>
+   * The metadata items are paginated in the order of their database keys, and
+   * the keys of newly extracted items are always greater than those of the
+   * items they replace, so no current item is skipped, although items
+   * re-extracted after the pagination started may be returned again.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the continuation token
+   *          bound to a previous metadata extraction.
+   * @return an ItemMetadataContinuationToken bound to the current metadata
+   *         extraction, or <code>null</code> if the pagination cannot be
+   *         resumed.
+   */
+  private ItemMetadataContinuationToken getResumedToken(String auid,
+      ItemMetadataContinuationToken imct) {
+    log.debug2("auid = {}", auid);
+    log.debug2("imct = {}", imct);
+
+    if (imct == null || imct.getLastItemMdItemSeq() == null) {
+      return null;
+    }
+
+    try {
+      Long extractionTime = mdSql.getAuExtractionTime(auid);
+      log.trace("extractionTime = {}", extractionTime);
+
+      // Check whether the AU has no metadata or it has not been reindexed.
+      if (extractionTime == null
+	  || extractionTime.equals(imct.getAuExtractionTimestamp())) {
+	// Yes: There is nothing to resume against.
+	return null;
+      }
+
+      ItemMetadataContinuationToken result = new ItemMetadataContinuationToken(
+	  extractionTime, imct.getLastItemMdItemSeq().longValue());
+      log.info("Resuming pagination of reindexed auid '{}' with '{}'", auid,
+	  result.toWebResponseContinuationToken());
+      return result;
+    } catch (Exception e) {
+      log.warn("Cannot resume pagination for auid '" + auid + "'", e);
+      return null;
+    }
+  }
+
+  /**
+   * Provides the time of the current metadata extraction of an AU, from the
+   * page cache if possible.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @return a Long with the extraction time, or <code>null</code> if the AU
+   *         has no metadata or the time cannot be determined.
+   */
+  private Long getAuExtractionTime(String auid) {
+    boolean isCacheEnabled = pageCache.isEnabled();
+
+    // Check whether the extraction time is cached.
+    if (isCacheEnabled) {
+      Long extractionTime = pageCache.getExtractionTime(auid);
+
+      if (extractionTime != null) {
+	// Yes: Use it.
+	return extractionTime;
+      }
+    }
+
+    try {
+      long generation = pageCache.getGeneration();
+      Long extractionTime = mdSql.getAuExtractionTime(auid);
+      log.trace("extractionTime = {}", extractionTime);
+
+      if (isCacheEnabled && extractionTime != null) {
+	pageCache.putExtractionTime(auid, extractionTime, generation);
+      }
+
+      return extractionTime;
+    } catch (Exception e) {
+      log.warn("Cannot get the extraction time for auid '" + auid + "'", e);
+      return null;
+    }
+  }
+
+  /**
+   * Provides the time of the metadata extraction of an AU from which a page of
+   * its metadata was fetched.
+   *
+   * @param itemsPage
+   *          An ItemMetadataPage with the page.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the continuation token with
+   *          which the page was fetched.
+   * @param extractionTime
+   *          A Long with the time of the current metadata extraction of the AU
+   *          when the page was requested, or <code>null</code> if it is not
+   *          known.
+   * @return a Long with the extraction time of the page, or <code>null</code>
+   *         if it is not known.
+   */
+  private static Long getPageExtractionTime(ItemMetadataPage itemsPage,
+      ItemMetadataContinuationToken imct, Long extractionTime) {
+    // The continuation token of the next page, if any, is bound to the same
+    // extraction as the page.
+    ItemMetadataContinuationToken nextImct = itemsPage.getContinuationToken();
+
+    if (nextImct != null && nextImct.getAuExtractionTimestamp() != null) {
+      return nextImct.getAuExtractionTimestamp();
+    }
+
+    // Otherwise, a page fetched with a continuation token is bound to the same
+    // extraction as the token.
+    if (imct != null && imct.getAuExtractionTimestamp() != null) {
+      return imct.getAuExtractionTimestamp();
+    }
+
+    // The only page of the AU.
+    return extractionTime;
+  }
+
+  /**
+   * Provides the entity tag of a representation of the metadata of an AU
+   * extracted at some time.
+   *
+   * @param extractionTime
+   *          A long with the time of the metadata extraction of the AU.
+   * @param representation
+   *          A String with the name of the representation of the metadata.
+   * @return a String with the entity tag.
+   */
+  private static String toEtag(long extractionTime, String representation) {
+    return "\"" + Long.toHexString(extractionTime) + "-" + representation
+	+ "\"";
+  }
+
+  /**
+   * Provides an indication of whether a requested number of items is valid.
+   *
+   * @param limit
+   *          An Integer with the requested maximum number of items.
+   * @return a boolean with <code>true</code> if the number is a non-negative
+   *         integer, <code>false</code> otherwise.
+   */
+  private static boolean isValidLimit(Integer limit) {
+    if (limit == null || limit.intValue() < 0) {
+      log.warn("Limit of requested items must be a non-negative integer; it "
+	  + "was '{}'", limit);
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Provides an indication of whether an entity tag matches any of those in
+   * the If-None-Match header of the request.
+   *
+   * @param etag
+   *          A String with the entity tag of the current metadata.
+   * @return a boolean with <code>true</code> if the entity tag matches,
+   *         <code>false</code> otherwise.
+   */
+  private boolean isNotModified(String etag) {
+    Enumeration<String> headers =
+	request.getHeaders(HttpHeaders.IF_NONE_MATCH);
+
+    while (headers != null && headers.hasMoreElements()) {
+      for (String candidate : headers.nextElement().split(",")) {
+	candidate = candidate.trim();
+
+	// Weak comparison applies to If-None-Match.
+	if (candidate.startsWith("W/")) {
+	  candidate = candidate.substring(2);
+	}
+
+	if (candidate.equals("*") || candidate.equals(etag)) {
+	  return true;
+	}
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Provides the name of the representation of the metadata that will be
+   * negotiated for the request, so that each representation gets its own
+   * entity tag.
+   *
+   * @param streaming
+   *          A boolean with the indication of whether the metadata is
+   *          represented as newline-delimited JSON.
+   * @return a String with the name of the representation.
+   */
+  private String getRepresentationName(boolean streaming) {
+    if (streaming) {
+      return "ndjson";
+    }
+
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    String result = "json";
+
+    if (accept == null || accept.isEmpty()) {
+      return result;
+    }
+
+    try {
+      double bestQuality = -1.0;
+
+      for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+	String name = null;
+
+	if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_JSON)) {
+	  name = "json";
+	} else if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+	  name = "cbor";
+	} else if (mediaType.equalsTypeAndSubtype(
+	    MessageConverterConfigurer.APPLICATION_SMILE)) {
+	  name = "smile";
+	}
+
+	if (name != null && mediaType.getQualityValue() > bestQuality) {
+	  result = name;
+	  bestQuality = mediaType.getQualityValue();
+	}
+      }
+    } catch (InvalidMediaTypeException imte) {
+      log.debug("Ignoring invalid Accept header '{}'", accept, imte);
+    }
+
+    log.trace("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Provides an indication of whether the client has explicitly requested the
+   * response as newline-delimited JSON.
+   *
+   * @return a boolean with <code>true</code> if the client has requested
+   *         newline-delimited JSON, <code>false</code> otherwise.
+   */
+  private boolean isNdjsonRequested() {
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    log.trace("accept = {}", accept);
+
+    if (accept == null || accept.isEmpty()) {
+      return false;
+    }
+
+    try {
+      for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+	if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON)) {
+	  return true;
+	}
+      }
+    } catch (InvalidMediaTypeException imte) {
+      log.debug("Ignoring invalid Accept header '{}'", accept, imte);
+    }
+
+    return false;
+  }
+
+  /**
+   * Provides the number of metadata items stored for an AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @return a {@code ResponseEntity<Long>} with the number of items.
+   */
+  @Override
+  public ResponseEntity<Long> getMetadataAusAuidCount(String auid) {
+    log.debug2("auid = {}", auid);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    return countAuItems(auid, false, "getMetadataAusAuidCount");
+  }
+
+  /**
+   * Provides in a response header the number of metadata items stored for an
+   * AU, without any of the items.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @return a {@code ResponseEntity<Void>} with the number of items in the
+   *         X-Total-Count header.
+   */
+  @Override
+  public ResponseEntity<Void> headMetadataAusAuid(String auid) {
+    log.debug2("auid = {}", auid);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    ResponseEntity<Long> countResponse =
+	countAuItems(auid, true, "headMetadataAusAuid");
+
+    return new ResponseEntity<>(countResponse.getHeaders(),
+	countResponse.getStatusCode());
+  }
+
+  /**
+   * Provides the response with the number of metadata items of an AU, computed
+   * once per metadata extraction of the AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param withEtag
+   *          A boolean with the indication of whether the response must carry
+   *          the entity tag of the metadata of the AU.
+   * @param operation
+   *          A String with the name of the operation, for logging purposes.
+   * @return a {@code ResponseEntity<Long>} with the number of items in the
+   *         body and in the X-Total-Count header.
+   */
+  private ResponseEntity<Long> countAuItems(String auid, boolean withEtag,
+      String operation) {
+    try {
+      Long extractionTime = mdSql.getAuExtractionTime(auid);
+      log.trace("extractionTime = {}", extractionTime);
+
+      if (extractionTime == null) {
+	log.warn("No metadata found for auid '{}'", auid);
+	return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+      }
+
+      Long result = Long.valueOf(
+	  itemCountCache.getItemCount(auid, extractionTime.longValue()));
+
+      HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders.set(TOTAL_COUNT_HEADER, result.toString());
+
+      if (withEtag) {
+	responseHeaders.setETag(toEtag(extractionTime.longValue(),
+	    getRepresentationName(false)));
+      }
+
+      log.debug2("result = {}", result);
+      return new ResponseEntity<Long>(result, responseHeaders, HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      String message = "No Archival Unit found for auid '" + auid + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    } catch (Exception e) {
+      String message = "Cannot " + operation + "() for auid '" + auid + "'";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides the metadata items added to an AU since a position in its change
+   * feed.
+   * <br>
+   * Items are never modified in place: A reindexing of the AU deletes the
+   * items it replaces and stores new ones. Therefore, the new items are those
+   * with a database key greater than the highest one seen by the client, and
+   * any deletion is detected by a decrease in the number of items with a key
+   * not greater than that one, in which case the client is told to start
+   * again.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param since
+   *          A String with the token returned by the previous request for
+   *          changes, or <code>null</code> to start from the first item.
+   * @param limit
+   *          An Integer with the maximum number of items to be returned.
+   * @return a {@code ResponseEntity<AuMetadataChanges>} with the changes.
+   */
+  @Override
+  public ResponseEntity<AuMetadataChanges> getMetadataAusAuidChanges(
+      String auid, String since, Integer limit) {
+    log.debug2("auid = {}", auid);
+    log.debug2("since = {}", since);
+    log.debug2("limit = {}", limit);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    // Validation of requested page size.
+    if (!isValidLimit(limit)) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    AuMetadataChangesToken token = null;
+
+    try {
+      token = new AuMetadataChangesToken(since);
+      log.trace("token = {}", token);
+    } catch (IllegalArgumentException iae) {
+      String message = "Invalid since = '" + since + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    try {
+      Long extractionTime = mdSql.getAuExtractionTime(auid);
+      log.trace("extractionTime = {}", extractionTime);
+
+      if (extractionTime == null) {
+	log.warn("No metadata found for auid '{}'", auid);
+	return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+      }
+
+      AuMetadataChanges result = new AuMetadataChanges();
+
+      long seenItemCount =
+	  mdSql.getAuItemCount(auid, token.getLastMdItemSeq());
+      log.trace("seenItemCount = {}", seenItemCount);
+
+      // Check whether items already seen by the client have been removed.
+      if (seenItemCount < token.getItemCount()) {
+	// Yes: The client needs to start again.
+	log.debug("Resync required for auid '{}' after {}", auid, token);
+	result.setItems(new ArrayList<ItemMetadata>());
+	result.setSince(new AuMetadataChangesToken(0, 0).toWebResponseToken());
+	result.setMore(Boolean.TRUE);
+	result.setResyncRequired(Boolean.TRUE);
+
+	log.debug2("result = {}", result);
+	return new ResponseEntity<AuMetadataChanges>(result, HttpStatus.OK);
+      }
+
+      // Get the items added after those already seen.
+      ItemMetadataPage itemsPage =
+	  LockssApp.getManagerByTypeStatic(MetadataQueryManager.class)
+	  .getAuMetadataDetail(auid, limit, new ItemMetadataContinuationToken(
+	      extractionTime, token.getLastMdItemSeq()));
+
+      List<ItemMetadata> items = itemsPage.getItems();
+      long lastMdItemSeq = items.isEmpty() ? token.getLastMdItemSeq()
+	  : items.get(items.size() - 1).getId().longValue();
+
+      result.setItems(items);
+      result.setSince(new AuMetadataChangesToken(lastMdItemSeq,
+	  seenItemCount + items.size()).toWebResponseToken());
+      result.setMore(itemsPage.getContinuationToken() != null);
+      result.setResyncRequired(Boolean.FALSE);
+
+      log.debug2("result = {}", result);
+      return new ResponseEntity<AuMetadataChanges>(result, HttpStatus.OK);
+    } catch (ConcurrentModificationException cme) {
+      String message =
+	  "Changes conflict for auid '" + auid + "': " + cme.getMessage();
+      log.warn(message, cme);
+      return new ResponseEntity<>(HttpStatus.CONFLICT);
+    } catch (IllegalArgumentException iae) {
+      String message = "No Archival Unit found for auid '" + auid + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    } catch (Exception e) {
+      String message =
+	  "Cannot getMetadataAusAuidChanges() for auid '" + auid + "'";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides a pageful of the items of all AUs that belong to the publication
+   * with an ISSN, an ISBN or a name, or that have a DOI starting with a
+   * prefix.
+   *
+   * @param issn
+   *          A String with the ISSN of the publication of the items.
+   * @param isbn
+   *          A String with the ISBN of the publication of the items.
+   * @param doiPrefix
+   *          A String with the prefix of the DOI of the items.
+   * @param publication
+   *          A String with the name of the publication of the items.
+   * @param limit
+   *          An Integer with the maximum number of items to be returned.
+   * @param continuationToken
+   *          A String with the continuation token of the next page of items
+   *          to be returned.
+   * @return a {@code ResponseEntity<ItemInfoPageInfo>} with the items.
+   */
+  @Override
+  public ResponseEntity<ItemInfoPageInfo> getMetadataItems(String issn,
+      String isbn, String doiPrefix, String publication, Integer limit,
+      String continuationToken) {
+    log.debug2("issn = {}", issn);
+    log.debug2("isbn = {}", isbn);
+    log.debug2("doiPrefix = {}", doiPrefix);
+    log.debug2("publication = {}", publication);
+    log.debug2("limit = {}", limit);
+    log.debug2("continuationToken = {}", continuationToken);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    // Validation of requested page size.
+    if (!isValidLimit(limit)) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    // Validation of the criterion.
+    ItemCriterion criterion = null;
+    String value = null;
+    String criterionParam = null;
+    int criterionCount = 0;
+
+    if (!StringUtil.isNullString(issn)) {
+      criterion = ItemCriterion.ISSN;
+      value = issn.replace("-", "").trim().toUpperCase();
+      criterionParam = "issn="
+	  + UriUtils.encodeQueryParam(issn, StandardCharsets.UTF_8);
+      criterionCount++;
+    }
+
+    if (!StringUtil.isNullString(isbn)) {
+      criterion = ItemCriterion.ISBN;
+      value = isbn.replace("-", "").replace(" ", "").trim().toUpperCase();
+      criterionParam = "isbn="
+	  + UriUtils.encodeQueryParam(isbn, StandardCharsets.UTF_8);
+      criterionCount++;
+    }
+
+    if (!StringUtil.isNullString(doiPrefix)) {
+      criterion = ItemCriterion.DOI_PREFIX;
+      value = doiPrefix.trim();
+      criterionParam = "doiPrefix="
+	  + UriUtils.encodeQueryParam(doiPrefix, StandardCharsets.UTF_8);
+      criterionCount++;
+    }
+
+    if (!StringUtil.isNullString(publication)) {
+      criterion = ItemCriterion.PUBLICATION;
+      value = publication.trim();
+      criterionParam = "publication="
+	  + UriUtils.encodeQueryParam(publication, StandardCharsets.UTF_8);
+      criterionCount++;
+    }
+
+    if (criterionCount != 1) {
+      String message = "Exactly one of issn, isbn, doiPrefix or publication "
+	  + "must be specified";
+      log.warn(message);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    // Parse the request continuation token.
+    long lastMdItemSeq = 0;
+
+    if (continuationToken != null) {
+      try {
+	lastMdItemSeq = Long.parseLong(continuationToken.trim());
+      } catch (NumberFormatException nfe) {
+	String message =
+	    "Invalid continuation token '" + continuationToken + "'";
+	log.warn(message, nfe);
+	return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+      }
+    }
+
+    try {
+      // Get one more item than requested to know whether there are more.
+      List<ItemInfo> items = mdSql.findItems(criterion, value, lastMdItemSeq,
+	  limit.intValue() + 1);
+      boolean more = items.size() > limit.intValue();
+
+      if (more) {
+	items = items.subList(0, limit.intValue());
+      }
+
+      ItemInfoPageInfo result = new ItemInfoPageInfo();
+      PageInfo pi = new PageInfo();
+      result.setPageInfo(pi);
+
+      String baseLink = request.getRequestURL().toString() + "?"
+	  + criterionParam + "&limit=" + limit;
+
+      String curLink = continuationToken == null ? baseLink
+	  : baseLink + "&continuationToken=" + continuationToken;
+      log.trace("curLink = {}", curLink);
+
+      pi.setCurLink(curLink);
+      pi.setItemsInPage(items.size());
+
+      // Check whether there are more items.
+      if (more) {
+	// Yes.
+	pi.setContinuationToken(
+	    String.valueOf(items.get(items.size() - 1).getId()));
+
+	String nextLink =
+	    baseLink + "&continuationToken=" + pi.getContinuationToken();
+	log.trace("nextLink = {}", nextLink);
+
+	pi.setNextLink(nextLink);
+      }
+
+      result.setItems(items);
+
+      log.debug2("result = {}", result);
+      return new ResponseEntity<ItemInfoPageInfo>(result, HttpStatus.OK);
+    } catch (Exception e) {
+      String message = "Cannot getMetadataItems() for " + criterionParam;
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides a pageful of the items of all AUs that match a full-text query
+   * over their titles, author names and publication names, in order of
+   * relevance.
+   *
+   * @param q
+   *          A String with the full-text query.
+   * @param limit
+   *          An Integer with the maximum number of items to be returned.
+   * @param continuationToken
+   *          A String with the continuation token of the next page of items
+   *          to be returned.
+   * @return a {@code ResponseEntity<ItemInfoPageInfo>} with the items.
+   */
+  @Override
+  public ResponseEntity<ItemInfoPageInfo> getMetadataSearch(String q,
+      Integer limit, String continuationToken) {
+    log.debug2("q = {}", q);
+    log.debug2("limit = {}", limit);
+    log.debug2("continuationToken = {}", continuationToken);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    // Check whether the search index is not enabled.
+    if (!searchIndex.isEnabled()) {
+      // Yes: Notify the client.
+      log.warn("The metadata search index is not enabled");
+      return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+    }
+
+    if (StringUtil.isNullString(q)) {
+      String message = "The query must be specified";
+      log.warn(message);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    // Validation of requested page size.
+    if (!isValidLimit(limit)) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    // Validate the request continuation token, the position of the last item
+    // already returned.
+    try {
+      MetadataSearchIndex.parseContinuationToken(continuationToken);
+    } catch (IllegalArgumentException iae) {
+      log.warn(iae.getMessage());
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    try {
+      MetadataSearchIndex.SearchPage searchPage =
+	  searchIndex.search(q, continuationToken, limit.intValue());
+      List<ItemInfo> items = searchPage.getItems();
+
+      ItemInfoPageInfo result = new ItemInfoPageInfo();
+      PageInfo pi = new PageInfo();
+      result.setPageInfo(pi);
+
+      String baseLink = request.getRequestURL().toString() + "?q="
+	  + UriUtils.encodeQueryParam(q, StandardCharsets.UTF_8)
+	  + "&limit=" + limit;
+
+      String curLink = continuationToken == null ? baseLink
+	  : baseLink + "&continuationToken=" + continuationToken;
+      log.trace("curLink = {}", curLink);
+
+      pi.setCurLink(curLink);
+      pi.setItemsInPage(items.size());
+
+      // Check whether there are more items.
+      if (searchPage.getContinuationToken() != null) {
+	// Yes.
+	pi.setContinuationToken(searchPage.getContinuationToken());
+
+	String nextLink =
+	    baseLink + "&continuationToken=" + pi.getContinuationToken();
+	log.trace("nextLink = {}", nextLink);
+
+	pi.setNextLink(nextLink);
+      }
+
+      result.setItems(items);
+
+      log.debug2("result = {}", result);
+      return new ResponseEntity<ItemInfoPageInfo>(result, HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      String message = "Invalid query '" + q + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    } catch (Exception e) {
+      String message = "Cannot getMetadataSearch() for query '" + q + "'";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides the metadata of multiple AUs given their AU identifiers: The
+   * first pageful of the metadata of each AU or, if the client accepts
+   * newline-delimited JSON, all the metadata items of all the AUs, streamed in
+   * the response body one item per line.
+   *
+   * @param auids
+   *          A {@code List<String>} with the AU identifiers.
+   * @param limit
+   *          An Integer with the maximum number of metadata items to be
+   *          returned for each AU.
+   * @param fields
+   *          A {@code List<String>} with the names of the metadata elements
+   *          to be included in each item, or <code>null</code> to include
+   *          them all.
+   * @return a {@code ResponseEntity<AusMetadataPageInfo>} with the metadata.
+   */
+  @Override
+  public ResponseEntity<AusMetadataPageInfo> postMetadataAus(
+      List<String> auids, Integer limit, List<String> fields) {
+    log.debug2("auids = {}", () -> auids);
+    log.debug2("limit = {}", () -> limit);
+    log.debug2("fields = {}", () -> fields);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    // Validation of requested page size.
+    if (!isValidLimit(limit)) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    // Validation of the requested AUs.
+    if (auids == null || auids.isEmpty()) {
+      String message = "Invalid auids = '" + auids + "'";
+      log.warn(message);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    int maxBatchAus = ConfigManager.getCurrentConfig()
+	.getInt(PARAM_MAX_BATCH_AUS, DEFAULT_MAX_BATCH_AUS);
+
+    if (auids.size() > maxBatchAus) {
+      String message = "Too many auids: " + auids.size()
+	  + "; the maximum is " + maxBatchAus;
+      log.warn(message);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    // Ignore duplicated and empty AU identifiers.
+    Set<String> uniqueAuids = new LinkedHashSet<>();
+
+    for (String auid : auids) {
+      if (auid != null && !auid.isEmpty()) {
+	uniqueAuids.add(auid);
+      }
+    }
+
+    ItemMetadataProjection projection =
+	ItemMetadataProjection.fromFields(fields);
+    log.trace("projection = {}", projection);
+
+    // Check whether the metadata is to be streamed.
+    if (isNdjsonRequested()) {
+      // Yes.
+      streamAusMetadata(uniqueAuids, projection);
+      return null;
+    }
+
+    try {
+      String modeParams = projection.isAll() ? ""
+	  : "&fields=" + UriUtils.encodeQueryParam(String.join(",", fields),
+	      StandardCharsets.UTF_8);
+
+      String ausUrl = request.getRequestURL().toString();
+      ItemMetadataContinuationToken firstImct =
+	  new ItemMetadataContinuationToken((String)null);
+
+      Map<String, AuMetadataPageInfo> aus = new LinkedHashMap<>();
+      List<String> notFound = new ArrayList<>();
+
+      for (String auid : uniqueAuids) {
+	try {
+	  ItemMetadataPage itemsPage = getItemsPage(auid,
+	      getAuExtractionTime(auid), limit, null, firstImct);
+	  log.trace("itemsPage = {}", itemsPage);
+
+	  aus.put(auid, buildAuMetadataPageInfo(ausUrl + "/"
+	      + UriUtils.encodePathSegment(auid, StandardCharsets.UTF_8),
+	      limit, null, modeParams, itemsPage, projection, false));
+	} catch (IllegalArgumentException iae) {
+	  String message = "No Archival Unit found for auid '" + auid + "'";
+	  log.warn(message, iae);
+	  notFound.add(auid);
+	}
+      }
+
+      AusMetadataPageInfo result = new AusMetadataPageInfo();
+      result.setAus(aus);
+      result.setNotFound(notFound);
+
+      log.debug2("result = {}", () -> result);
+      return new ResponseEntity<AusMetadataPageInfo>(result, HttpStatus.OK);
+    } catch (Exception e) {
+      String message = "Cannot postMetadataAus() for auids = " + auids;
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides the display page of a pageful of AU metadata.
+   *
+   * @param auUrl
+   *          A String with the URL of the metadata of the AU.
+   * @param limit
+   *          An Integer with the maximum number of AU metadata items in the
+   *          page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @param modeParams
+   *          A String with the query parameters that are not page-specific.
+   * @param itemsPage
+   *          An ItemMetadataPage with the pageful of metadata.
+   * @param projection
+   *          An ItemMetadataProjection with the metadata elements to be
+   *          included in each item.
+   * @param compact
+   *          A boolean with the indication of whether the elements with the
+   *          same value in all the items are to be listed once.
+   * @return an AuMetadataPageInfo with the display page.
+   */
+  private AuMetadataPageInfo buildAuMetadataPageInfo(String auUrl,
+      Integer limit, String continuationToken, String modeParams,
+      ItemMetadataPage itemsPage, ItemMetadataProjection projection,
+      boolean compact) {
+    AuMetadataPageInfo result = new AuMetadataPageInfo();
+    PageInfo pi = new PageInfo();
+    result.setPageInfo(pi);
+
+    StringBuffer curLinkBuffer =
+	new StringBuffer(auUrl).append("?limit=").append(limit);
+
+    if (continuationToken != null) {
+      curLinkBuffer.append("&continuationToken=").append(continuationToken);
+    }
+
+    curLinkBuffer.append(modeParams);
+    log.trace("curLink = {}", () -> curLinkBuffer.toString());
+
+    pi.setCurLink(curLinkBuffer.toString());
+    pi.setItemsInPage(itemsPage.getItems().size());
+
+    // Check whether there is a response continuation token.
+    if (itemsPage.getContinuationToken() != null) {
+      // Yes.
+      pi.setContinuationToken(itemsPage.getContinuationToken()
+	  .toWebResponseContinuationToken());
+
+      String nextLink = auUrl + "?limit=" + limit
+	  + "&continuationToken=" + pi.getContinuationToken() + modeParams;
+      log.trace("nextLink = {}", () -> nextLink);
+
+      pi.setNextLink(nextLink);
+    }
+
+    List<ItemMetadata> items = projection.project(itemsPage.getItems());
+
+    // Check whether the page is to be compacted.
+    if (compact) {
+      // Yes.
+      ItemMetadataCompactor compactor = new ItemMetadataCompactor(items,
+	  ConfigManager.getCurrentConfig().getList(PARAM_COMPACT_ELEMENTS,
+	      DEFAULT_COMPACT_ELEMENTS));
+      result.setAuConstants(compactor.getAuConstants());
+      items = compactor.getItems();
+    }
+
+    result.setItems(items);
+    return result;
+  }
+
+  /**
+   * Writes to the response, as newline-delimited JSON, all the metadata items
+   * of an AU that follow a continuation token.
+   * <br>
+   * The items are fetched from the database in batches of a configurable size
+   * and written out as each batch arrives, so the memory used does not depend
+   * on the number of items in the AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param extractionTime
+   *          A Long with the time of the current metadata extraction of the
+   *          AU, or <code>null</code> if it is not known.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the continuation token
+   *          after which to start streaming.
+   * @param resume
+   *          A boolean with the indication of whether to resume the stream
+   *          when the AU is reindexed instead of ending it.
+   * @param projection
+   *          An ItemMetadataProjection with the metadata elements to be
+   *          included in each item.
+   * @param representation
+   *          A String with the name of the representation of the metadata, for
+   *          its entity tag.
+   * @return a {@code ResponseEntity<AuMetadataPageInfo>} with the error
+   *         status, if the stream cannot be started, or <code>null</code>
+   *         after the metadata has been written to the response.
+   */
+  private ResponseEntity<AuMetadataPageInfo> streamAuMetadata(String auid,
+      Long extractionTime, ItemMetadataContinuationToken imct, boolean resume,
+      ItemMetadataProjection projection, String representation) {
+    log.debug2("auid = {}", auid);
+    log.debug2("imct = {}", imct);
+
+    int batchSize = getStreamBatchSize();
+    MetadataQueryManager mqm =
+	LockssApp.getManagerByTypeStatic(MetadataQueryManager.class);
+
+    ItemMetadataPage itemsPage = null;
+
+    // Get the first batch before committing to a successful response, so that
+    // problems can still be reported to the client with the right status.
+    try {
+      itemsPage = getStreamBatch(mqm, auid, batchSize, imct, resume);
+    } catch (ConcurrentModificationException cme) {
+      String message =
+	  "Pagination conflict for auid '" + auid + "': " + cme.getMessage();
+      log.warn(message, cme);
+      return new ResponseEntity<>(HttpStatus.CONFLICT);
+    } catch (IllegalArgumentException iae) {
+      String message = "No Archival Unit found for auid '" + auid + "'";
+      log.warn(message, iae);
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    } catch (Exception e) {
+      String message = "Cannot getMetadataAusAuid() for auid '" + auid + "'";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+    // The entity tag describes the extraction of the first batch.
+    Long streamExtractionTime =
+	getPageExtractionTime(itemsPage, imct, extractionTime);
+
+    if (streamExtractionTime != null) {
+      response.setHeader(HttpHeaders.ETAG,
+	  toEtag(streamExtractionTime.longValue(), representation));
+    }
+
+    try {
+      long itemCount = writeItems(response.getOutputStream(), mqm, auid,
+	  itemsPage, batchSize, resume, projection);
+      log.debug2("itemCount = {}", itemCount);
+    } catch (IOException ioe) {
+      // The response has already been committed: Just stop streaming.
+      log.warn("Streaming of metadata for auid '" + auid + "' aborted", ioe);
+    } catch (Exception e) {
+      // The response has already been committed: Just stop streaming.
+      log.error("Cannot stream metadata for auid '" + auid + "'", e);
+    }
+
+    return null;
+  }
+
+  /**
+   * Writes to the response, as newline-delimited JSON, all the metadata items
+   * of multiple AUs, one AU after another. Unknown AUs are skipped.
+   *
+   * @param auids
+   *          A {@code Set<String>} with the AU identifiers.
+   * @param projection
+   *          An ItemMetadataProjection with the metadata elements to be
+   *          included in each item.
+   */
+  private void streamAusMetadata(Set<String> auids,
+      ItemMetadataProjection projection) {
+    log.debug2("auids = {}", auids);
+
+    int batchSize = getStreamBatchSize();
+    MetadataQueryManager mqm =
+	LockssApp.getManagerByTypeStatic(MetadataQueryManager.class);
+    ItemMetadataContinuationToken firstImct =
+	new ItemMetadataContinuationToken((String)null);
+
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+    String auid = null;
+
+    try {
+      OutputStream os = response.getOutputStream();
+
+      for (String nextAuid : auids) {
+	auid = nextAuid;
+	ItemMetadataPage itemsPage = null;
+
+	try {
+	  itemsPage = getStreamBatch(mqm, auid, batchSize, firstImct, false);
+	} catch (IllegalArgumentException iae) {
+	  String message = "No Archival Unit found for auid '" + auid + "'";
+	  log.warn(message, iae);
+	  continue;
+	}
+
+	long itemCount = writeItems(os, mqm, auid, itemsPage, batchSize, false,
+	    projection);
+	log.trace("auid = {}, itemCount = {}", auid, itemCount);
+      }
+    } catch (IOException ioe) {
+      // The response has already been committed: Just stop streaming.
+      log.warn("Streaming of metadata aborted at auid '" + auid + "'", ioe);
+    } catch (Exception e) {
+      // The response has already been committed: Just stop streaming.
+      log.error("Cannot stream metadata for auid '" + auid + "'", e);
+    }
+  }
+
+  /**
+   * Provides the number of items to be fetched from the database at a time
+   * when streaming metadata.
+   *
+   * @return an int with the number of items per batch.
+   */
+  private int getStreamBatchSize() {
+    int batchSize = ConfigManager.getCurrentConfig()
+	.getInt(PARAM_STREAM_BATCH_SIZE, DEFAULT_STREAM_BATCH_SIZE);
+    log.trace("batchSize = {}", batchSize);
+    return batchSize;
+  }
+
+  /**
+   * Provides a batch of metadata items of an AU to be streamed.
+   *
+   * @param mqm
+   *          A MetadataQueryManager with the metadata query manager.
+   * @param auid
+   *          A String with the AU identifier.
+   * @param batchSize
+   *          An int with the maximum number of items in the batch.
+   * @param imct
+   *          An ItemMetadataContinuationToken with the continuation token
+   *          after which the batch starts.
+   * @param resume
+   *          A boolean with the indication of whether to resume when the AU
+   *          has been reindexed instead of failing.
+   * @return an ItemMetadataPage with the batch of items.
+   * @throws Exception
+   *           if there are problems getting the batch.
+   */
+  private ItemMetadataPage getStreamBatch(MetadataQueryManager mqm,
+      String auid, int batchSize, ItemMetadataContinuationToken imct,
+      boolean resume) throws Exception {
+    try {
+      return mqm.getAuMetadataDetail(auid, batchSize, imct);
+    } catch (ConcurrentModificationException cme) {
+      ItemMetadataContinuationToken resumedImct =
+	  resume ? getResumedToken(auid, imct) : null;
+
+      if (resumedImct == null) {
+	throw cme;
+      }
+
+      return mqm.getAuMetadataDetail(auid, batchSize, resumedImct);
+    }
+  }
+
+  /**
+   * Writes, as newline-delimited JSON, a batch of metadata items of an AU and
+   * all the items that follow it.
+   *
+   * @param os
+   *          An OutputStream where to write the items.
+   * @param mqm
+   *          A MetadataQueryManager with the metadata query manager.
+   * @param auid
+   *          A String with the AU identifier.
+   * @param itemsPage
+   *          An ItemMetadataPage with the first batch of items.
+   * @param batchSize
+   *          An int with the maximum number of items per batch.
+   * @param resume
+   *          A boolean with the indication of whether to resume when the AU
+   *          is reindexed instead of failing.
+   * @param projection
+   *          An ItemMetadataProjection with the metadata elements to be
+   *          included in each item.
+   * @return a long with the number of items written.
+   * @throws Exception
+   *           if there are problems getting or writing the items.
+   */
+  private long writeItems(OutputStream os, MetadataQueryManager mqm,
+      String auid, ItemMetadataPage itemsPage, int batchSize, boolean resume,
+      ItemMetadataProjection projection) throws Exception {
+    long itemCount = 0;
+
+    while (true) {
+      for (ItemMetadata item : itemsPage.getItems()) {
+	os.write(mapper.writeValueAsBytes(projection.project(item)));
+	os.write(NDJSON_LINE_SEPARATOR);
+	itemCount++;
+      }
+
+      os.flush();
+
+      ItemMetadataContinuationToken nextImct = itemsPage.getContinuationToken();
+      log.trace("nextImct = {}", nextImct);
+
+      // Check whether there are no more items.
+      if (nextImct == null) {
+	// Yes: Done.
+	return itemCount;
+      }
+
+      itemsPage = getStreamBatch(mqm, auid, batchSize, nextImct, resume);
+    }
+  }
 }
@@ -0,0 +1,906 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.lockss.app.LockssApp;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.laaws.md.model.Export;
+import org.lockss.log.L4JLogger;
+import org.lockss.metadata.ItemMetadata;
+import org.lockss.metadata.ItemMetadataContinuationToken;
+import org.lockss.metadata.ItemMetadataPage;
+import org.lockss.metadata.query.MetadataQueryManager;
+import org.lockss.util.Constants;
+import org.lockss.util.time.TimeBase;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exports the metadata items of AUs to compressed files on local disk,
+ * asynchronously, either in the columnar Arrow IPC file format or as CSV.
+ * <br>
+ * Each export writes one row per item and one column per requested metadata
+ * element, reading the items from the database in batches. An Arrow file has
+ * one record batch per batch of items, with its buffers compressed with
+ * Zstandard, and all its columns are nullable strings. A CSV file is
+ * compressed with gzip as a whole.
+ * <br>
+ * Exports run on their own bounded pool of threads, so that they never
+ * compete with the metadata extraction jobs. The job manager cannot run them,
+ * as it only runs metadata extraction and removal jobs. The file of an export
+ * is written under a temporary name and only renamed into place when the
+ * export is done.
+ * <br>
+ * Finished exports are forgotten, and their files deleted, once they are
+ * older than the configured retention. The exports are only kept in memory,
+ * so the files left behind in the export directory by a previous run of the
+ * service are deleted shortly after startup, and then periodically.
+ */
+@Component
+public class MetadataExporter {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.export.";
+
+  /**
+   * The path of the directory where the export files are written. A relative
+   * path is resolved against the daemon data directory, or the temporary
+   * directory if there is none.
+   */
+  public static final String PARAM_EXPORT_DIR = PREFIX + "exportDir";
+  public static final String DEFAULT_EXPORT_DIR = "md-exports";
+
+  /**
+   * The number of exports that run at the same time. Only read when the first
+   * export is submitted.
+   */
+  public static final String PARAM_THREADS = PREFIX + "threads";
+  public static final int DEFAULT_THREADS = 1;
+
+  /**
+   * The maximum number of exports waiting to run. Only read when the first
+   * export is submitted.
+   */
+  public static final String PARAM_MAX_QUEUED = PREFIX + "maxQueued";
+  public static final int DEFAULT_MAX_QUEUED = 10;
+
+  /**
+   * The number of items read from the database at a time.
+   */
+  public static final String PARAM_BATCH_SIZE = PREFIX + "batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * The metadata elements exported when no columns are requested.
+   */
+  public static final String PARAM_DEFAULT_COLUMNS = PREFIX + "defaultColumns";
+  public static final List<String> DEFAULT_DEFAULT_COLUMNS = List.of("id",
+      "au_id", "publisher_name", "publication_name", "issn.p_issn",
+      "issn.e_issn", "volume", "issue", "start_page", "date", "item_title",
+      "author_name", "doi", "url.Access");
+
+  /**
+   * How long a finished export and its file are kept after the export ends.
+   */
+  public static final String PARAM_RETENTION = PREFIX + "retention";
+  public static final long DEFAULT_RETENTION = Constants.DAY;
+
+  /**
+   * The interval between purges of the expired exports and of the files in
+   * the export directory that do not belong to any export.
+   */
+  public static final String PARAM_PURGE_INTERVAL = PREFIX + "purgeInterval";
+  public static final long DEFAULT_PURGE_INTERVAL = Constants.HOUR;
+
+  // The delay of the first purge after startup, which gives the daemon time to
+  // load the configuration with the export directory.
+  private static final long FIRST_PURGE_DELAY = Constants.MINUTE;
+
+  // The formats of the export files.
+  public static final String FORMAT_ARROW = "arrow";
+  public static final String FORMAT_CSV = "csv";
+
+  // The suffixes of the names of the export files, by format.
+  private static final Map<String, String> FILE_SUFFIXES =
+      Map.of(FORMAT_ARROW, ".arrow", FORMAT_CSV, ".csv.gz");
+  private static final String TMP_FILE_SUFFIX = ".tmp";
+
+  // The status values of an export.
+  public static final String STATUS_QUEUED = "queued";
+  public static final String STATUS_RUNNING = "running";
+  public static final String STATUS_DONE = "done";
+  public static final String STATUS_FAILED = "failed";
+  public static final String STATUS_CANCELLED = "cancelled";
+
+  // The separator of the values of multi-valued elements in a cell.
+  static final String VALUE_SEPARATOR = "; ";
+
+  // The exports, in the order in which they were submitted.
+  private final Map<String, ExportTask> exports = new LinkedHashMap<>();
+
+  private ThreadPoolExecutor executor = null;
+
+  private final ScheduledExecutorService purgeExecutor =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+	Thread thread = new Thread(r, "MetadataExporterPurge");
+	thread.setDaemon(true);
+	return thread;
+      });
+
+  /**
+   * Constructor.
+   */
+  public MetadataExporter() {
+    schedulePurge(FIRST_PURGE_DELAY);
+  }
+
+  /**
+   * Submits an export.
+   *
+   * @param auids
+   *          A {@code List<String>} with the identifiers of the AUs to be
+   *          exported.
+   * @param columns
+   *          A {@code List<String>} with the metadata elements to be exported,
+   *          or <code>null</code> for the default ones.
+   * @param format
+   *          A String with the format of the export file, or
+   *          <code>null</code> for Arrow.
+   * @return an Export with the submitted export.
+   * @throws IllegalArgumentException
+   *           if the format is not supported.
+   * @throws RejectedExecutionException
+   *           if too many exports are already waiting to run.
+   */
+  public Export submit(List<String> auids, List<String> columns,
+      String format) {
+    log.debug2("auids = {}", auids);
+    log.debug2("columns = {}", columns);
+    log.debug2("format = {}", format);
+
+    if (format == null) {
+      format = FORMAT_ARROW;
+    } else if (!isSupportedFormat(format)) {
+      throw new IllegalArgumentException("Unsupported format '" + format
+	  + "'");
+    }
+
+    if (columns == null || columns.isEmpty()) {
+      columns = ConfigManager.getCurrentConfig()
+	  .getList(PARAM_DEFAULT_COLUMNS, DEFAULT_DEFAULT_COLUMNS);
+    }
+
+    ExportTask task = new ExportTask(UUID.randomUUID().toString(),
+	new ArrayList<>(auids), new ArrayList<>(columns), format);
+
+    synchronized (this) {
+      exports.put(task.id, task);
+
+      try {
+	task.future = getExecutor().submit(() -> run(task));
+      } catch (RejectedExecutionException ree) {
+	exports.remove(task.id);
+	throw ree;
+      }
+    }
+
+    Export result = task.toExport();
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Provides an indication of whether a format of the export files is
+   * supported.
+   *
+   * @param format
+   *          A String with the format.
+   * @return a boolean with <code>true</code> if the format is supported,
+   *         <code>false</code> otherwise.
+   */
+  public static boolean isSupportedFormat(String format) {
+    return FILE_SUFFIXES.containsKey(format);
+  }
+
+  /**
+   * Provides all the exports.
+   *
+   * @return a {@code List<Export>} with the exports, in the order in which
+   *         they were submitted.
+   */
+  public List<Export> getExports() {
+    Collection<ExportTask> tasks;
+
+    synchronized (this) {
+      tasks = new ArrayList<>(exports.values());
+    }
+
+    List<Export> result = new ArrayList<>(tasks.size());
+
+    for (ExportTask task : tasks) {
+      result.add(task.toExport());
+    }
+
+    return result;
+  }
+
+  /**
+   * Provides an export.
+   *
+   * @param id
+   *          A String with the export identifier.
+   * @return an Export with the export.
+   * @throws IllegalArgumentException
+   *           if there is no export with the passed identifier.
+   */
+  public Export getExport(String id) {
+    return getTask(id).toExport();
+  }
+
+  /**
+   * Provides the file written by a finished export.
+   *
+   * @param id
+   *          A String with the export identifier.
+   * @return a File with the export file.
+   * @throws IllegalArgumentException
+   *           if there is no export with the passed identifier.
+   * @throws IllegalStateException
+   *           if the export is not done.
+   */
+  public File getExportFile(String id) {
+    ExportTask task = getTask(id);
+
+    if (!STATUS_DONE.equals(task.status)) {
+      throw new IllegalStateException("Export '" + id + "' is " + task.status);
+    }
+
+    return getFile(task);
+  }
+
+  /**
+   * Deletes an export, stopping it if it is running and deleting its file.
+   *
+   * @param id
+   *          A String with the export identifier.
+   * @return an Export with the deleted export.
+   * @throws IllegalArgumentException
+   *           if there is no export with the passed identifier.
+   */
+  public Export delete(String id) {
+    log.debug2("id = {}", id);
+
+    ExportTask task;
+
+    synchronized (this) {
+      task = exports.remove(id);
+    }
+
+    if (task == null) {
+      throw new IllegalArgumentException("No export '" + id + "'");
+    }
+
+    synchronized (task) {
+      if (STATUS_QUEUED.equals(task.status)
+	  || STATUS_RUNNING.equals(task.status)) {
+	task.status = STATUS_CANCELLED;
+	task.endTime = TimeBase.nowMs();
+      }
+    }
+
+    task.future.cancel(true);
+    getFile(task).delete();
+
+    Export result = task.toExport();
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Stops all the exports.
+   */
+  @PreDestroy
+  public synchronized void stop() {
+    purgeExecutor.shutdownNow();
+
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Forgets the finished exports older than the configured retention, deleting
+   * their files, and deletes the files in the export directory that do not
+   * belong to any export.
+   */
+  void purge() {
+    long expiration = TimeBase.nowMs() - ConfigManager.getCurrentConfig()
+	.getTimeInterval(PARAM_RETENTION, DEFAULT_RETENTION);
+    List<ExportTask> expiredTasks = new ArrayList<>();
+
+    synchronized (this) {
+      Iterator<ExportTask> iterator = exports.values().iterator();
+
+      while (iterator.hasNext()) {
+	ExportTask task = iterator.next();
+	Long endTime = task.endTime;
+
+	// Check whether the export is finished and has expired.
+	if (endTime != null && endTime <= expiration) {
+	  // Yes: Forget it.
+	  iterator.remove();
+	  expiredTasks.add(task);
+	}
+      }
+    }
+
+    for (ExportTask task : expiredTasks) {
+      log.debug("Export '{}' has expired", task.id);
+      getFile(task).delete();
+    }
+
+    File[] files = getExportDir().listFiles();
+
+    if (files == null) {
+      return;
+    }
+
+    for (File file : files) {
+      String id = getExportId(file.getName());
+
+      if (id == null) {
+	continue;
+      }
+
+      synchronized (this) {
+	// Check whether the file belongs to an export.
+	if (exports.containsKey(id)) {
+	  // Yes: Keep it.
+	  continue;
+	}
+      }
+
+      log.debug("Deleting orphaned export file {}", file);
+      file.delete();
+    }
+  }
+
+  /**
+   * Schedules the next purge.
+   *
+   * @param delay
+   *          A long with the delay of the purge, in milliseconds.
+   */
+  private void schedulePurge(long delay) {
+    try {
+      purgeExecutor.schedule(() -> {
+	try {
+	  purge();
+	} catch (Exception e) {
+	  log.error("Cannot purge the exports", e);
+	}
+
+	schedulePurge(Math.max(Constants.MINUTE, ConfigManager
+	    .getCurrentConfig().getTimeInterval(PARAM_PURGE_INTERVAL,
+		DEFAULT_PURGE_INTERVAL)));
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ree) {
+      log.debug("Not scheduling a purge after stopping");
+    }
+  }
+
+  /**
+   * Runs an export.
+   *
+   * @param task
+   *          An ExportTask with the export to be run.
+   */
+  private void run(ExportTask task) {
+    log.debug2("id = {}", task.id);
+
+    synchronized (task) {
+      // Check whether the export has been cancelled while queued.
+      if (!STATUS_QUEUED.equals(task.status)) {
+	// Yes: Nothing to do.
+	return;
+      }
+
+      task.status = STATUS_RUNNING;
+      task.startTime = TimeBase.nowMs();
+    }
+
+    Configuration config = ConfigManager.getCurrentConfig();
+    int batchSize =
+	Math.max(1, config.getInt(PARAM_BATCH_SIZE, DEFAULT_BATCH_SIZE));
+
+    File file = getFile(task);
+    File tmpFile = new File(file.getPath() + TMP_FILE_SUFFIX);
+    String status = STATUS_DONE;
+    String errorMessage = null;
+
+    try {
+      file.getParentFile().mkdirs();
+
+      if (FORMAT_CSV.equals(task.format)) {
+	writeCsvFile(task, tmpFile, batchSize);
+      } else {
+	writeArrowFile(task, tmpFile, batchSize);
+      }
+
+      Files.move(tmpFile.toPath(), file.toPath(),
+	  StandardCopyOption.REPLACE_EXISTING);
+    } catch (InterruptedException ie) {
+      status = STATUS_CANCELLED;
+    } catch (Exception e) {
+      log.error("Cannot run export '" + task.id + "'", e);
+      status = STATUS_FAILED;
+      errorMessage = e.getMessage();
+    } finally {
+      tmpFile.delete();
+    }
+
+    synchronized (task) {
+      // Check whether the export has been deleted while running.
+      if (STATUS_CANCELLED.equals(task.status)) {
+	// Yes: Do not leave its file behind.
+	file.delete();
+	return;
+      }
+
+      task.status = status;
+      task.errorMessage = errorMessage;
+      task.endTime = TimeBase.nowMs();
+    }
+
+    log.debug("Export '{}' {} with {} items", task.id, status, task.itemCount);
+  }
+
+  /**
+   * Writes the gzip-compressed CSV file of an export.
+   *
+   * @param task
+   *          An ExportTask with the export.
+   * @param file
+   *          A File with the file to be written.
+   * @param batchSize
+   *          An int with the number of items read at a time.
+   * @throws InterruptedException
+   *           if the export is cancelled.
+   * @throws IOException
+   *           if there are problems writing the file.
+   */
+  private void writeCsvFile(ExportTask task, File file, int batchSize)
+      throws InterruptedException, IOException {
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+	new GZIPOutputStream(new FileOutputStream(file), 64 * 1024),
+	StandardCharsets.UTF_8))) {
+      writeRow(writer, task.columns);
+      List<String> values = new ArrayList<>(task.columns.size());
+
+      exportItems(task, batchSize, items -> {
+	for (ItemMetadata item : items) {
+	  values.clear();
+
+	  for (String column : task.columns) {
+	    values.add(getValue(item, column));
+	  }
+
+	  writeRow(writer, values);
+	}
+      });
+    }
+  }
+
+  /**
+   * Writes the Arrow IPC file of an export, with one record batch per batch
+   * of items.
+   *
+   * @param task
+   *          An ExportTask with the export.
+   * @param file
+   *          A File with the file to be written.
+   * @param batchSize
+   *          An int with the number of items read at a time.
+   * @throws InterruptedException
+   *           if the export is cancelled.
+   * @throws IOException
+   *           if there are problems writing the file.
+   */
+  private void writeArrowFile(ExportTask task, File file, int batchSize)
+      throws InterruptedException, IOException {
+    List<Field> fields = new ArrayList<>(task.columns.size());
+
+    for (String column : task.columns) {
+      fields.add(Field.nullable(column, ArrowType.Utf8.INSTANCE));
+    }
+
+    try (BufferAllocator allocator = new RootAllocator();
+	VectorSchemaRoot root =
+	    VectorSchemaRoot.create(new Schema(fields), allocator);
+	FileOutputStream out = new FileOutputStream(file);
+	ArrowFileWriter writer = new ArrowFileWriter(root, null,
+	    out.getChannel(), null, IpcOption.DEFAULT,
+	    CommonsCompressionFactory.INSTANCE,
+	    CompressionUtil.CodecType.ZSTD)) {
+      writer.start();
+
+      exportItems(task, batchSize, items -> {
+	if (items.isEmpty()) {
+	  return;
+	}
+
+	root.allocateNew();
+
+	for (int i = 0; i < task.columns.size(); i++) {
+	  VarCharVector vector = (VarCharVector)root.getVector(i);
+	  String column = task.columns.get(i);
+
+	  for (int row = 0; row < items.size(); row++) {
+	    String value = getValue(items.get(row), column);
+
+	    if (value == null) {
+	      vector.setNull(row);
+	    } else {
+	      vector.setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+	    }
+	  }
+	}
+
+	root.setRowCount(items.size());
+	writer.writeBatch();
+      });
+
+      writer.end();
+    }
+  }
+
+  /**
+   * Reads in batches the metadata items of the AUs of an export, passing
+   * each batch to a writer.
+   *
+   * @param task
+   *          An ExportTask with the export.
+   * @param batchSize
+   *          An int with the number of items read at a time.
+   * @param batchWriter
+   *          A BatchWriter with the writer of the batches.
+   * @throws InterruptedException
+   *           if the export is cancelled.
+   * @throws IOException
+   *           if there are problems writing a batch.
+   */
+  private void exportItems(ExportTask task, int batchSize,
+      BatchWriter batchWriter) throws InterruptedException, IOException {
+    MetadataQueryManager mqm =
+	LockssApp.getManagerByTypeStatic(MetadataQueryManager.class);
+
+    for (String auid : task.auids) {
+      ItemMetadataContinuationToken imct =
+	  new ItemMetadataContinuationToken((String)null);
+
+      try {
+	while (imct != null) {
+	  if (Thread.interrupted()) {
+	    throw new InterruptedException();
+	  }
+
+	  ItemMetadataPage page =
+	      mqm.getAuMetadataDetail(auid, batchSize, imct);
+
+	  batchWriter.write(page.getItems());
+	  task.itemCount += page.getItems().size();
+
+	  imct = page.getContinuationToken();
+	}
+      } catch (IllegalArgumentException iae) {
+	log.debug("No metadata to export for auid '{}'", auid);
+	task.notFound.add(auid);
+      } catch (ConcurrentModificationException cme) {
+	throw new IOException("Archival Unit '" + auid
+	    + "' was reindexed during the export", cme);
+      }
+    }
+  }
+
+  /**
+   * Provides the value of a metadata element of an item, as a cell of the
+   * export.
+   * <br>
+   * A column of the form <code>name.key</code> selects a single entry of a map
+   * element. The values of multi-valued elements are separated by
+   * <code>"; "</code>, and the entries of a whole map element are written as
+   * <code>key=value</code>.
+   *
+   * @param item
+   *          An ItemMetadata with the item.
+   * @param column
+   *          A String with the name of the metadata element.
+   * @return a String with the value, or <code>null</code> if the item does not
+   *         have the element.
+   */
+  static String getValue(ItemMetadata item, String column) {
+    if ("id".equals(column)) {
+      return item.getId() == null ? null : String.valueOf(item.getId());
+    }
+
+    if (item.getScalarMap() != null
+	&& item.getScalarMap().containsKey(column)) {
+      return item.getScalarMap().get(column);
+    }
+
+    if (item.getListMap() != null && item.getListMap().containsKey(column)) {
+      return String.join(VALUE_SEPARATOR, item.getListMap().get(column));
+    }
+
+    if (item.getSetMap() != null && item.getSetMap().containsKey(column)) {
+      return String.join(VALUE_SEPARATOR, item.getSetMap().get(column));
+    }
+
+    if (item.getMapMap() == null) {
+      return null;
+    }
+
+    Map<String, String> map = item.getMapMap().get(column);
+
+    if (map != null) {
+      List<String> entries = new ArrayList<>(map.size());
+
+      for (Map.Entry<String, String> entry : map.entrySet()) {
+	entries.add(entry.getKey() + "=" + entry.getValue());
+      }
+
+      return String.join(VALUE_SEPARATOR, entries);
+    }
+
+    int dotLoc = column.indexOf('.');
+
+    if (dotLoc > 0 && dotLoc < column.length() - 1) {
+      map = item.getMapMap().get(column.substring(0, dotLoc));
+
+      if (map != null) {
+	return map.get(column.substring(dotLoc + 1));
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Writes a CSV row, quoting the values that need it.
+   *
+   * @param writer
+   *          A Writer where to write the row.
+   * @param values
+   *          A {@code List<String>} with the values of the row.
+   * @throws IOException
+   *           if there are problems writing the row.
+   */
+  static void writeRow(Writer writer, List<String> values) throws IOException {
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+	writer.write(',');
+      }
+
+      String value = values.get(i);
+
+      if (value == null) {
+	continue;
+      }
+
+      if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+	  || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+	writer.write('"');
+	writer.write(value.replace("\"", "\"\""));
+	writer.write('"');
+      } else {
+	writer.write(value);
+      }
+    }
+
+    writer.write("\r\n");
+  }
+
+  /**
+   * Provides the export with a given identifier.
+   *
+   * @param id
+   *          A String with the export identifier.
+   * @return an ExportTask with the export.
+   * @throws IllegalArgumentException
+   *           if there is no export with the passed identifier.
+   */
+  private synchronized ExportTask getTask(String id) {
+    ExportTask task = exports.get(id);
+
+    if (task == null) {
+      throw new IllegalArgumentException("No export '" + id + "'");
+    }
+
+    return task;
+  }
+
+  /**
+   * Provides the file of an export.
+   *
+   * @param task
+   *          An ExportTask with the export.
+   * @return a File with the export file.
+   */
+  private File getFile(ExportTask task) {
+    return new File(getExportDir(), task.id + FILE_SUFFIXES.get(task.format));
+  }
+
+  /**
+   * Provides the identifier of the export of a file in the export directory.
+   *
+   * @param name
+   *          A String with the name of the file.
+   * @return a String with the export identifier, or <code>null</code> if the
+   *         file is not an export file.
+   */
+  private static String getExportId(String name) {
+    if (name.endsWith(TMP_FILE_SUFFIX)) {
+      name = name.substring(0, name.length() - TMP_FILE_SUFFIX.length());
+    }
+
+    for (String suffix : FILE_SUFFIXES.values()) {
+      if (name.endsWith(suffix)) {
+	return name.substring(0, name.length() - suffix.length());
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Provides the directory where the export files are written.
+   *
+   * @return a File with the export directory.
+   */
+  private File getExportDir() {
+    return ConfigManager.getConfigManager()
+	.findConfiguredDataDir(PARAM_EXPORT_DIR, DEFAULT_EXPORT_DIR, false);
+  }
+
+  /**
+   * Provides the executor of the exports, creating it if necessary.
+   *
+   * @return a ThreadPoolExecutor with the executor.
+   */
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      Configuration config = ConfigManager.getCurrentConfig();
+      int threads = Math.max(1, config.getInt(PARAM_THREADS, DEFAULT_THREADS));
+      int maxQueued =
+	  Math.max(1, config.getInt(PARAM_MAX_QUEUED, DEFAULT_MAX_QUEUED));
+
+      executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+	  new ArrayBlockingQueue<Runnable>(maxQueued), r -> {
+	    Thread thread = new Thread(r, "MetadataExporter");
+	    thread.setDaemon(true);
+	    return thread;
+	  });
+      executor.allowCoreThreadTimeOut(true);
+    }
+
+    return executor;
+  }
+
+  /**
+   * A writer of the batches of items of an export.
+   */
+  private interface BatchWriter {
+    void write(List<ItemMetadata> items) throws IOException;
+  }
+
+  /**
+   * An export and its progress.
+   */
+  private static class ExportTask {
+    final String id;
+    final List<String> auids;
+    final List<String> columns;
+    final String format;
+    final long creationTime = TimeBase.nowMs();
+    final List<String> notFound = new CopyOnWriteArrayList<>();
+    volatile String status = STATUS_QUEUED;
+    volatile Long startTime = null;
+    volatile Long endTime = null;
+    volatile long itemCount = 0;
+    volatile String errorMessage = null;
+    Future<?> future;
+
+    ExportTask(String id, List<String> auids, List<String> columns,
+	String format) {
+      this.id = id;
+      this.auids = auids;
+      this.columns = columns;
+      this.format = format;
+    }
+
+    synchronized Export toExport() {
+      Export export = new Export();
+      export.setId(id);
+      export.setAuids(new ArrayList<>(auids));
+      export.setColumns(new ArrayList<>(columns));
+      export.setFormat(format);
+      export.setStatus(status);
+      export.setCreationTime(creationTime);
+      export.setStartTime(startTime);
+      export.setEndTime(endTime);
+      export.setItemCount(itemCount);
+      export.setNotFound(new ArrayList<>(notFound));
+      export.setErrorMessage(errorMessage);
+      return export;
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.lockss.app.LockssApp;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.log.L4JLogger;
+import org.lockss.metadata.extractor.job.Job;
+import org.lockss.metadata.extractor.job.JobContinuationToken;
+import org.lockss.metadata.extractor.job.JobManager;
+import org.lockss.metadata.extractor.job.JobPage;
+import org.lockss.util.Constants;
+import org.springframework.stereotype.Component;
+
+/**
+ * Watches the jobs of the job manager and notifies the registered listeners
+ * when a job for an AU finishes, so that any information derived from the
+ * metadata of that AU can be discarded.
+ * <br>
+ * A job is considered finished when it is listed with an end date or when it
+ * stops being listed altogether. A finished job is reported only if it was
+ * unfinished in the previous poll or if it is newer than any job listed then,
+ * so no job is reported twice, however many finished jobs are listed. The
+ * first poll only records the current jobs, as the metadata of the jobs that
+ * finished before the service started is already in use.
+ * <br>
+ * Changes are pending, so that the listeners may not have been told yet about
+ * some new metadata, until a poll finds no unfinished jobs and no job has been
+ * scheduled through this service since the poll started. Jobs scheduled by
+ * other means are only noticed when a poll lists them.
+ */
+@Component
+public class MetadataJobMonitor {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.jobMonitor.";
+
+  /**
+   * The interval between consecutive polls of the job manager.
+   */
+  public static final String PARAM_POLL_INTERVAL = PREFIX + "pollInterval";
+  public static final long DEFAULT_POLL_INTERVAL = 30 * Constants.SECOND;
+
+  /**
+   * The number of jobs requested from the job manager at a time.
+   */
+  public static final String PARAM_PAGE_SIZE = PREFIX + "pageSize";
+  public static final int DEFAULT_PAGE_SIZE = 100;
+
+  /**
+   * The interface to be implemented by the objects that need to know when the
+   * metadata of an AU may have changed.
+   */
+  public interface Listener {
+    /**
+     * Called when a job for an AU has finished.
+     *
+     * @param auid
+     *          A String with the AU identifier.
+     */
+    void auMetadataChanged(String auid);
+  }
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  // The unfinished jobs found in the last poll, mapped to their AU identifier.
+  private Map<String, String> activeJobs = new HashMap<>();
+
+  // The highest job sequence number listed so far. Job identifiers are
+  // assigned in increasing order, so the jobs above it are new.
+  private long lastJobSeq = -1;
+
+  // Whether the jobs listed at startup have been recorded.
+  private boolean seeded = false;
+
+  // Serializes the polls of the job manager.
+  private final Object pollLock = new Object();
+
+  // The number of jobs scheduled through this service.
+  private final AtomicLong scheduledJobCount = new AtomicLong();
+
+  // Whether some job may have changed metadata without the listeners having
+  // been notified yet.
+  private volatile boolean changesPending = true;
+
+  private ScheduledExecutorService executor = null;
+
+  /**
+   * Registers a listener to be notified of finished jobs, starting the polling
+   * of the job manager, if necessary.
+   *
+   * @param listener
+   *          A Listener with the listener to be registered.
+   */
+  public synchronized void addListener(Listener listener) {
+    listeners.add(listener);
+
+    if (executor == null) {
+      long interval = ConfigManager.getCurrentConfig()
+	  .getTimeInterval(PARAM_POLL_INTERVAL, DEFAULT_POLL_INTERVAL);
+      log.debug("Polling the job manager every {} ms", interval);
+
+      executor = Executors.newSingleThreadScheduledExecutor(r -> {
+	Thread thread = new Thread(r, "MetadataJobMonitor");
+	thread.setDaemon(true);
+	return thread;
+      });
+
+      executor.scheduleWithFixedDelay(this::poll, interval, interval,
+	  TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Unregisters a listener.
+   *
+   * @param listener
+   *          A Listener with the listener to be unregistered.
+   */
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Notifies all the registered listeners that the metadata of an AU may have
+   * changed.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   */
+  public void notifyAuMetadataChanged(String auid) {
+    log.debug2("auid = {}", auid);
+
+    for (Listener listener : listeners) {
+      try {
+	listener.auMetadataChanged(auid);
+      } catch (RuntimeException re) {
+	log.warn("Listener " + listener + " failed for auid '" + auid + "'",
+	    re);
+      }
+    }
+  }
+
+  /**
+   * Records that a job has been scheduled, so that changes are pending until
+   * a poll finds it finished.
+   */
+  public void jobScheduled() {
+    scheduledJobCount.incrementAndGet();
+    changesPending = true;
+  }
+
+  /**
+   * Provides an indication of whether some job may have changed metadata
+   * without the listeners having been notified yet.
+   *
+   * @return a boolean with <code>true</code> if there are unfinished jobs, a
+   *         job has been scheduled since the last poll or the job manager has
+   *         not been polled successfully yet, <code>false</code> otherwise.
+   */
+  public boolean hasPendingChanges() {
+    return changesPending;
+  }
+
+  /**
+   * Stops the polling of the job manager.
+   */
+  @PreDestroy
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Polls the job manager for finished jobs.
+   */
+  void poll() {
+    log.debug2("Invoked");
+
+    synchronized (pollLock) {
+      pollJobManager();
+    }
+
+    log.debug2("changesPending = {}", changesPending);
+  }
+
+  /**
+   * Polls the job manager for finished jobs, notifying the listeners.
+   */
+  private void pollJobManager() {
+    long startScheduledJobCount = scheduledJobCount.get();
+    JobManager jobManager = null;
+
+    try {
+      jobManager = LockssApp.getManagerByTypeStatic(JobManager.class);
+    } catch (RuntimeException re) {
+      // The service has not been fully initialized yet.
+      log.debug("Job manager not available yet", re);
+      return;
+    }
+
+    int pageSize = ConfigManager.getCurrentConfig()
+	.getInt(PARAM_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+
+    Map<String, String> stillActiveJobs = new HashMap<>();
+
+    // The finished jobs to be reported, mapped to their AU identifier.
+    Map<String, String> finishedJobs = new LinkedHashMap<>();
+    long maxJobSeq = lastJobSeq;
+
+    try {
+      JobContinuationToken jct = new JobContinuationToken((String)null);
+
+      do {
+	JobPage jobPage = jobManager.getJobs(pageSize, jct);
+
+	for (Job job : jobPage.getJobs()) {
+	  String auid = job.getAu() == null ? null : job.getAu().getId();
+	  long jobSeq = getJobSeq(job.getId());
+	  maxJobSeq = Math.max(maxJobSeq, jobSeq);
+
+	  if (job.getEndDate() == null) {
+	    stillActiveJobs.put(job.getId(), auid);
+	  } else if (activeJobs.containsKey(job.getId())
+	      || (seeded && jobSeq > lastJobSeq)) {
+	    // The job has finished since the previous poll.
+	    finishedJobs.put(job.getId(), auid);
+	  }
+	}
+
+	jct = jobPage.getContinuationToken();
+      } while (jct != null);
+    } catch (ConcurrentModificationException cme) {
+      // The list of jobs changed while it was being read: Try again later.
+      log.debug("Job list changed while polling", cme);
+      return;
+    } catch (Exception e) {
+      log.warn("Cannot poll the job manager", e);
+      return;
+    }
+
+    // The jobs that are not listed anymore have finished.
+    for (Map.Entry<String, String> entry : activeJobs.entrySet()) {
+      if (!stillActiveJobs.containsKey(entry.getKey())) {
+	finishedJobs.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    activeJobs = stillActiveJobs;
+    lastJobSeq = maxJobSeq;
+
+    // Check whether this is the first poll.
+    if (!seeded) {
+      // Yes: The jobs finished so far are not reported.
+      seeded = true;
+      log.debug("Recorded {} active jobs, last job = {}", activeJobs.size(),
+	  lastJobSeq);
+    } else {
+      // No: Report the jobs finished since the previous poll.
+      for (Map.Entry<String, String> entry : finishedJobs.entrySet()) {
+	jobFinished(entry.getKey(), entry.getValue());
+      }
+    }
+
+    // The listeners are up to date unless some job has not finished yet.
+    changesPending = !activeJobs.isEmpty()
+	|| scheduledJobCount.get() != startScheduledJobCount;
+  }
+
+  /**
+   * Provides the sequence number of a job.
+   *
+   * @param jobId
+   *          A String with the job identifier.
+   * @return a long with the sequence number of the job, or -1 if the
+   *         identifier is not a sequence number.
+   */
+  private static long getJobSeq(String jobId) {
+    try {
+      return Long.parseLong(jobId);
+    } catch (NumberFormatException nfe) {
+      log.debug("Job identifier is not a sequence number: '{}'", jobId);
+      return -1;
+    }
+  }
+
+  /**
+   * Handles a finished job, notifying the listeners.
+   *
+   * @param jobId
+   *          A String with the job identifier.
+   * @param auid
+   *          A String with the identifier of the AU of the job.
+   */
+  private void jobFinished(String jobId, String auid) {
+    if (auid != null) {
+      log.debug("Job '{}' for auid '{}' has finished", jobId, auid);
+      notifyAuMetadataChanged(auid);
+    }
+  }
+}
@@ -0,0 +1,638 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.lockss.app.LockssApp;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.laaws.md.model.ItemInfo;
+import org.lockss.log.L4JLogger;
+import org.lockss.metadata.ItemMetadata;
+import org.lockss.metadata.ItemMetadataContinuationToken;
+import org.lockss.metadata.ItemMetadataPage;
+import org.lockss.metadata.query.MetadataQueryManager;
+import org.lockss.util.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * An optional embedded full-text index of the titles, authors and publication
+ * names of the metadata items of all AUs, kept in a local Lucene directory.
+ * <br>
+ * The documents of an AU are replaced whenever a job for that AU finishes.
+ * When the index is first opened empty, all the AUs with metadata are indexed
+ * in the background.
+ * <br>
+ * The replacement of the documents of an AU is committed only when all its
+ * items have been indexed. Otherwise, it is rolled back and tried again later,
+ * so that searches never see a partially indexed AU.
+ */
+@Component
+public class MetadataSearchIndex implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.search.";
+
+  /**
+   * Whether the search index is maintained and can be queried.
+   */
+  public static final String PARAM_ENABLED = PREFIX + "enabled";
+  public static final boolean DEFAULT_ENABLED = false;
+
+  /**
+   * The path of the directory of the search index. A relative path is
+   * resolved against the daemon data directory, or the temporary directory if
+   * there is none. Only read when the index is first opened.
+   */
+  public static final String PARAM_INDEX_DIR = PREFIX + "indexDir";
+  public static final String DEFAULT_INDEX_DIR = "md-search-index";
+
+  /**
+   * The number of items read from the database at a time when indexing an AU.
+   */
+  public static final String PARAM_BATCH_SIZE = PREFIX + "batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /**
+   * The maximum number of times the indexing of an AU is retried after a
+   * failure.
+   */
+  public static final String PARAM_MAX_RETRIES = PREFIX + "maxRetries";
+  public static final int DEFAULT_MAX_RETRIES = 3;
+
+  /**
+   * The delay before the indexing of an AU is retried after a failure.
+   */
+  public static final String PARAM_RETRY_DELAY = PREFIX + "retryDelay";
+  public static final long DEFAULT_RETRY_DELAY = Constants.MINUTE;
+
+  // The names of the fields of the indexed documents.
+  static final String AUID_FIELD = "auid";
+  static final String ID_FIELD = "id";
+  static final String DOI_FIELD = "doi";
+  static final String ACCESS_URL_FIELD = "accessUrl";
+  static final String TITLE_FIELD = "item_title";
+  static final String AUTHOR_FIELD = "author_name";
+  static final String PUBLICATION_FIELD = "publication_name";
+
+  // The fields searched by default.
+  private static final String[] SEARCHED_FIELDS =
+      {TITLE_FIELD, AUTHOR_FIELD, PUBLICATION_FIELD};
+
+  private final MetadataServiceSql mdSql;
+  private final Analyzer analyzer = new StandardAnalyzer();
+
+  // Serializes the replacement of the documents of AUs, so that concurrent
+  // reindexings of the same AU do not leave duplicate documents.
+  private final Object indexLock = new Object();
+
+  private IndexWriter writer = null;
+  private SearcherManager searcherManager = null;
+  private ScheduledExecutorService executor = null;
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   * @param mdSql
+   *          A MetadataServiceSql with the metadata database queries.
+   */
+  @Autowired
+  public MetadataSearchIndex(MetadataJobMonitor jobMonitor,
+      MetadataServiceSql mdSql) {
+    this.mdSql = mdSql;
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides an indication of whether the search index is enabled.
+   *
+   * @return a boolean with <code>true</code> if the search index is enabled,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEnabled() {
+    return ConfigManager.getCurrentConfig()
+	.getBoolean(PARAM_ENABLED, DEFAULT_ENABLED);
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    try {
+      open();
+      executor.execute(() -> reindexAu(auid));
+    } catch (Exception e) {
+      log.error("Cannot schedule the indexing of auid '" + auid + "'", e);
+    }
+  }
+
+  /**
+   * Replaces the indexed documents of an AU with its current metadata.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   */
+  public void reindexAu(String auid) {
+    reindexAu(auid, 0);
+  }
+
+  /**
+   * Replaces the indexed documents of an AU with its current metadata,
+   * scheduling a retry if it fails.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param retryCount
+   *          An int with the number of previous failed attempts.
+   */
+  private void reindexAu(String auid, int retryCount) {
+    log.debug2("auid = {}", auid);
+    log.debug2("retryCount = {}", retryCount);
+
+    Configuration config = ConfigManager.getCurrentConfig();
+    int batchSize = config.getInt(PARAM_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+
+    try {
+      long itemCount;
+      SearcherManager manager;
+
+      synchronized (indexLock) {
+	open();
+
+	try {
+	  itemCount = replaceAuDocuments(auid, batchSize);
+	} catch (Exception e) {
+	  // Discard the partial replacement of the documents of the AU.
+	  rollback();
+	  throw e;
+	}
+
+	manager = getSearcherManager();
+      }
+
+      manager.maybeRefresh();
+      log.debug("Indexed {} items of auid '{}'", itemCount, auid);
+    } catch (Exception e) {
+      // Check whether the indexing can be retried.
+      if (retryCount < config.getInt(PARAM_MAX_RETRIES, DEFAULT_MAX_RETRIES)) {
+	// Yes.
+	long delay =
+	    config.getTimeInterval(PARAM_RETRY_DELAY, DEFAULT_RETRY_DELAY);
+	log.warn("Cannot index auid '" + auid + "'; retrying in " + delay
+	    + " ms", e);
+	scheduleReindex(auid, retryCount + 1, delay);
+      } else {
+	// No: The AU will be indexed again when its next job finishes.
+	log.error("Cannot index auid '" + auid + "'", e);
+      }
+    }
+  }
+
+  /**
+   * Schedules the indexing of an AU to be retried.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param retryCount
+   *          An int with the number of previous failed attempts.
+   * @param delay
+   *          A long with the delay before the retry, in milliseconds.
+   */
+  private synchronized void scheduleReindex(String auid, int retryCount,
+      long delay) {
+    // Nothing to do if the index has been closed.
+    if (executor != null) {
+      executor.schedule(() -> reindexAu(auid, retryCount), delay,
+	  TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Discards all the uncommitted changes to the index, closing the writer,
+   * so that the index is reopened from its last commit when next used.
+   */
+  private synchronized void rollback() {
+    if (writer == null) {
+      return;
+    }
+
+    log.debug("Rolling back the metadata search index");
+
+    try {
+      searcherManager.close();
+    } catch (IOException ioe) {
+      log.warn("Cannot close the search index searcher manager", ioe);
+    }
+
+    try {
+      writer.rollback();
+    } catch (IOException ioe) {
+      log.warn("Cannot roll back the search index", ioe);
+    } finally {
+      searcherManager = null;
+      writer = null;
+    }
+  }
+
+  /**
+   * Replaces the indexed documents of an AU with its current metadata and
+   * commits the change.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param batchSize
+   *          An int with the number of items read at a time.
+   * @return a long with the number of items indexed.
+   * @throws Exception
+   *           if there are problems reading the metadata or writing the index.
+   */
+  private long replaceAuDocuments(String auid, int batchSize)
+      throws Exception {
+    long itemCount = 0;
+    writer.deleteDocuments(new Term(AUID_FIELD, auid));
+
+    MetadataQueryManager mqm =
+	LockssApp.getManagerByTypeStatic(MetadataQueryManager.class);
+    ItemMetadataContinuationToken imct =
+	new ItemMetadataContinuationToken((String)null);
+
+    try {
+      while (imct != null) {
+	ItemMetadataPage page = mqm.getAuMetadataDetail(auid, batchSize, imct);
+
+	for (ItemMetadata item : page.getItems()) {
+	  writer.addDocument(toDocument(auid, item));
+	  itemCount++;
+	}
+
+	imct = page.getContinuationToken();
+      }
+    } catch (IllegalArgumentException iae) {
+      // The AU no longer has metadata.
+      log.debug("No metadata to index for auid '{}'", auid);
+    }
+
+    writer.commit();
+    return itemCount;
+  }
+
+  /**
+   * Finds a pageful of the items that match a query, in order of relevance.
+   * <br>
+   * Pages are found with the position of the last item of the previous page,
+   * not with the number of items to be skipped, so the cost of a page does
+   * not grow with its position.
+   *
+   * @param queryString
+   *          A String with the query, in the Lucene classic query syntax, over
+   *          the item_title, author_name and publication_name fields.
+   * @param continuationToken
+   *          A String with the continuation token of the previous page, or
+   *          <code>null</code> for the first page.
+   * @param count
+   *          An int with the maximum number of items to be returned.
+   * @return a SearchPage with the matching items.
+   * @throws IllegalArgumentException
+   *           if the query or the continuation token are not valid.
+   * @throws IOException
+   *           if there are problems reading the index.
+   */
+  public SearchPage search(String queryString, String continuationToken,
+      int count) throws IOException {
+    log.debug2("queryString = {}", queryString);
+    log.debug2("continuationToken = {}", continuationToken);
+    log.debug2("count = {}", count);
+
+    ScoreDoc after = parseContinuationToken(continuationToken);
+    SearchPage result = new SearchPage();
+
+    if (count <= 0) {
+      return result;
+    }
+
+    Query query = null;
+
+    try {
+      // The query parser is not thread-safe.
+      query = new MultiFieldQueryParser(SEARCHED_FIELDS, analyzer)
+	  .parse(queryString);
+      log.trace("query = {}", query);
+    } catch (ParseException pe) {
+      throw new IllegalArgumentException("Invalid query '" + queryString
+	  + "': " + pe.getMessage(), pe);
+    }
+
+    open();
+    SearcherManager manager = getSearcherManager();
+    IndexSearcher searcher = manager.acquire();
+
+    try {
+      // Check whether the token refers to a document that no longer exists,
+      // as the index has been compacted since.
+      if (after != null && after.doc >= searcher.getIndexReader().maxDoc()) {
+	// Yes: The page cannot be found.
+	throw new IllegalArgumentException("Stale continuation token '"
+	    + continuationToken + "'");
+      }
+
+      // Get one more item than requested to know whether there are more.
+      TopDocs topDocs = searcher.searchAfter(after, query, count + 1);
+      ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+      int itemCount = Math.min(count, scoreDocs.length);
+
+      for (int i = 0; i < itemCount; i++) {
+	Document doc = searcher.storedFields().document(scoreDocs[i].doc);
+
+	ItemInfo itemInfo = new ItemInfo();
+	itemInfo.setId(doc.getField(ID_FIELD).numericValue().longValue());
+	itemInfo.setAuid(doc.get(AUID_FIELD));
+	itemInfo.setDoi(doc.get(DOI_FIELD));
+	itemInfo.setAccessUrl(doc.get(ACCESS_URL_FIELD));
+	itemInfo.setTitle(doc.get(TITLE_FIELD));
+	result.items.add(itemInfo);
+      }
+
+      // Check whether there are more items.
+      if (scoreDocs.length > count) {
+	// Yes.
+	ScoreDoc last = scoreDocs[count - 1];
+	result.continuationToken = last.doc + ":" + last.score;
+      }
+    } finally {
+      manager.release(searcher);
+    }
+
+    log.debug2("result.items.size() = {}", result.items.size());
+    return result;
+  }
+
+  /**
+   * Provides the position of the last item of the previous page encoded in a
+   * continuation token.
+   *
+   * @param continuationToken
+   *          A String with the continuation token, or <code>null</code>.
+   * @return a ScoreDoc with the position, or <code>null</code> if there is no
+   *         continuation token.
+   * @throws IllegalArgumentException
+   *           if the continuation token is not valid.
+   */
+  static ScoreDoc parseContinuationToken(String continuationToken) {
+    if (continuationToken == null) {
+      return null;
+    }
+
+    String[] parts = continuationToken.trim().split(":", -1);
+
+    try {
+      if (parts.length == 2) {
+	int doc = Integer.parseInt(parts[0]);
+	float score = Float.parseFloat(parts[1]);
+
+	if (doc >= 0 && !Float.isNaN(score)) {
+	  return new ScoreDoc(doc, score);
+	}
+      }
+    } catch (NumberFormatException nfe) {
+      // Reported below.
+    }
+
+    throw new IllegalArgumentException("Invalid continuation token '"
+	+ continuationToken + "'");
+  }
+
+  /**
+   * A pageful of the items that match a query.
+   */
+  public static class SearchPage {
+    private final List<ItemInfo> items = new ArrayList<>();
+    private String continuationToken;
+
+    /**
+     * Provides the items of the page.
+     *
+     * @return a {@code List<ItemInfo>} with the items.
+     */
+    public List<ItemInfo> getItems() {
+      return items;
+    }
+
+    /**
+     * Provides the continuation token of the next page.
+     *
+     * @return a String with the continuation token, or <code>null</code> if
+     *         this is the last page.
+     */
+    public String getContinuationToken() {
+      return continuationToken;
+    }
+  }
+
+  /**
+   * Closes the search index.
+   */
+  @PreDestroy
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+
+    try {
+      if (searcherManager != null) {
+	searcherManager.close();
+      }
+
+      if (writer != null) {
+	writer.close();
+      }
+    } catch (IOException ioe) {
+      log.warn("Cannot close the search index", ioe);
+    } finally {
+      searcherManager = null;
+      writer = null;
+    }
+  }
+
+  /**
+   * Provides the manager of the searchers of the open index.
+   *
+   * @return a SearcherManager with the manager of the searchers.
+   * @throws IOException
+   *           if the index has been closed.
+   */
+  private synchronized SearcherManager getSearcherManager()
+      throws IOException {
+    if (searcherManager == null) {
+      throw new IOException("The metadata search index is closed");
+    }
+
+    return searcherManager;
+  }
+
+  /**
+   * Opens the search index, if necessary, scheduling the indexing of all the
+   * AUs with metadata if it is empty.
+   *
+   * @throws IOException
+   *           if there are problems opening the index.
+   */
+  private synchronized void open() throws IOException {
+    if (writer != null) {
+      return;
+    }
+
+    File indexDir = ConfigManager.getConfigManager()
+	.findConfiguredDataDir(PARAM_INDEX_DIR, DEFAULT_INDEX_DIR, false);
+    log.info("Opening the metadata search index in {}", indexDir);
+
+    writer = new IndexWriter(FSDirectory.open(indexDir.toPath()),
+	new IndexWriterConfig(analyzer)
+	.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+    searcherManager = new SearcherManager(writer, null);
+
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(r -> {
+	Thread thread = new Thread(r, "MetadataSearchIndex");
+	thread.setDaemon(true);
+	return thread;
+      });
+    }
+
+    // Check whether the index has never been filled.
+    if (writer.getDocStats().numDocs == 0) {
+      // Yes: Fill it.
+      executor.execute(this::indexAllAus);
+    }
+  }
+
+  /**
+   * Indexes the metadata of all the AUs that have metadata.
+   */
+  private void indexAllAus() {
+    try {
+      List<String> auids = mdSql.getAuidsWithMetadata();
+      log.info("Indexing the metadata of {} AUs", auids.size());
+
+      for (String auid : auids) {
+	if (Thread.currentThread().isInterrupted()) {
+	  return;
+	}
+
+	reindexAu(auid);
+      }
+    } catch (Exception e) {
+      log.error("Cannot index the metadata of all the AUs", e);
+    }
+  }
+
+  /**
+   * Provides the document to be indexed for an item.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param item
+   *          An ItemMetadata with the metadata of the item.
+   * @return a Document with the document to be indexed.
+   */
+  private Document toDocument(String auid, ItemMetadata item) {
+    Document doc = new Document();
+    doc.add(new StringField(AUID_FIELD, auid, Field.Store.YES));
+    doc.add(new StoredField(ID_FIELD, item.getId().longValue()));
+
+    Map<String, String> scalarMap = item.getScalarMap();
+
+    if (scalarMap != null) {
+      addStored(doc, DOI_FIELD, scalarMap.get("doi"));
+      addText(doc, TITLE_FIELD, scalarMap.get("item_title"));
+      addText(doc, PUBLICATION_FIELD, scalarMap.get("publication_name"));
+    }
+
+    if (item.getListMap() != null
+	&& item.getListMap().get(AUTHOR_FIELD) != null) {
+      for (String author : item.getListMap().get(AUTHOR_FIELD)) {
+	addText(doc, AUTHOR_FIELD, author);
+      }
+    }
+
+    if (item.getMapMap() != null && item.getMapMap().get("url") != null) {
+      addStored(doc, ACCESS_URL_FIELD, item.getMapMap().get("url")
+	  .get("Access"));
+    }
+
+    return doc;
+  }
+
+  private static void addText(Document doc, String name, String value) {
+    if (value != null) {
+      doc.add(new TextField(name, value, Field.Store.YES));
+    }
+  }
+
+  private static void addStored(Document doc, String name, String value) {
+    if (value != null) {
+      doc.add(new StoredField(name, value));
+    }
+  }
+}
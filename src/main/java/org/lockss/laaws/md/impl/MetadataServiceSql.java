@@ -0,0 +1,837 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import static org.lockss.metadata.SqlConstants.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import org.lockss.app.LockssApp;
+import org.lockss.db.DbException;
+import org.lockss.db.DbManager;
+import org.lockss.laaws.md.model.ItemInfo;
+import org.lockss.log.L4JLogger;
+import org.lockss.metadata.MetadataDbManager;
+import org.lockss.plugin.PluginManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * The SQL code used by the metadata service to query the metadata database
+ * directly.
+ */
+@Component
+public class MetadataServiceSql {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  // Query to get the time of the last metadata extraction of an AU.
+  private static final String GET_AU_EXTRACTION_TIME_QUERY = "select "
+      + "am." + EXTRACT_TIME_COLUMN
+      + " from " + AU_MD_TABLE + " am"
+      + "," + AU_TABLE + " a"
+      + "," + PLUGIN_TABLE + " p"
+      + " where am." + AU_SEQ_COLUMN + " = a." + AU_SEQ_COLUMN
+      + " and a." + PLUGIN_SEQ_COLUMN + " = p." + PLUGIN_SEQ_COLUMN
+      + " and p." + PLUGIN_ID_COLUMN + " = ?"
+      + " and a." + AU_KEY_COLUMN + " = ?";
+
+  // Query to get the number of metadata items of an AU.
+  private static final String GET_AU_ITEM_COUNT_QUERY = "select "
+      + "count(mi." + MD_ITEM_SEQ_COLUMN + ")"
+      + " from " + MD_ITEM_TABLE + " mi"
+      + "," + AU_MD_TABLE + " am"
+      + "," + AU_TABLE + " a"
+      + "," + PLUGIN_TABLE + " p"
+      + " where mi." + AU_MD_SEQ_COLUMN + " = am." + AU_MD_SEQ_COLUMN
+      + " and am." + AU_SEQ_COLUMN + " = a." + AU_SEQ_COLUMN
+      + " and a." + PLUGIN_SEQ_COLUMN + " = p." + PLUGIN_SEQ_COLUMN
+      + " and p." + PLUGIN_ID_COLUMN + " = ?"
+      + " and a." + AU_KEY_COLUMN + " = ?";
+
+  // Query to get the number of metadata items of an AU up to a given item.
+  private static final String GET_AU_ITEM_COUNT_UP_TO_QUERY =
+      GET_AU_ITEM_COUNT_QUERY
+      + " and mi." + MD_ITEM_SEQ_COLUMN + " <= ?";
+
+  // Query to get the identifiers of the AUs that have metadata.
+  private static final String GET_AUIDS_WITH_METADATA_QUERY = "select "
+      + "p." + PLUGIN_ID_COLUMN
+      + ", a." + AU_KEY_COLUMN
+      + " from " + AU_MD_TABLE + " am"
+      + "," + AU_TABLE + " a"
+      + "," + PLUGIN_TABLE + " p"
+      + " where am." + AU_SEQ_COLUMN + " = a." + AU_SEQ_COLUMN
+      + " and a." + PLUGIN_SEQ_COLUMN + " = p." + PLUGIN_SEQ_COLUMN;
+
+  // Query to get the number of metadata items and their largest database key.
+  private static final String GET_MD_ITEM_COUNT_AND_MAX_SEQ_QUERY = "select "
+      + "count(" + MD_ITEM_SEQ_COLUMN + ")"
+      + ", max(" + MD_ITEM_SEQ_COLUMN + ")"
+      + " from " + MD_ITEM_TABLE;
+
+  // The number of rows fetched at a time when scanning a whole table.
+  private static final int SCAN_FETCH_SIZE = 10000;
+
+  // The feature of the access URL of an item.
+  private static final String ACCESS_URL_FEATURE = "Access";
+
+  // The query to get the details of items, to be followed by a condition.
+  private static final String ITEM_DETAILS_QUERY = "select "
+      + "mi." + MD_ITEM_SEQ_COLUMN
+      + ", p." + PLUGIN_ID_COLUMN
+      + ", a." + AU_KEY_COLUMN
+      + ", d." + DOI_COLUMN
+      + ", u." + URL_COLUMN
+      + " from " + MD_ITEM_TABLE + " mi"
+      + " inner join " + AU_MD_TABLE + " am"
+      + " on mi." + AU_MD_SEQ_COLUMN + " = am." + AU_MD_SEQ_COLUMN
+      + " inner join " + AU_TABLE + " a"
+      + " on am." + AU_SEQ_COLUMN + " = a." + AU_SEQ_COLUMN
+      + " inner join " + PLUGIN_TABLE + " p"
+      + " on a." + PLUGIN_SEQ_COLUMN + " = p." + PLUGIN_SEQ_COLUMN
+      + " left outer join " + DOI_TABLE + " d"
+      + " on mi." + MD_ITEM_SEQ_COLUMN + " = d." + MD_ITEM_SEQ_COLUMN
+      + " left outer join " + URL_TABLE + " u"
+      + " on mi." + MD_ITEM_SEQ_COLUMN + " = u." + MD_ITEM_SEQ_COLUMN
+      + " and u." + FEATURE_COLUMN + " = '" + ACCESS_URL_FEATURE + "'";
+
+  // The beginning of the query to find items across all AUs.
+  private static final String FIND_ITEMS_QUERY_PREFIX = ITEM_DETAILS_QUERY
+      + " where mi." + MD_ITEM_SEQ_COLUMN + " > ?";
+
+  // The beginning of the query to find the database keys of items across all
+  // AUs.
+  private static final String FIND_ITEM_KEYS_QUERY_PREFIX = "select "
+      + "mi." + MD_ITEM_SEQ_COLUMN
+      + " from " + MD_ITEM_TABLE + " mi"
+      + " where mi." + MD_ITEM_SEQ_COLUMN + " > ?";
+
+  // The beginning of the query to find items across all AUs within a range of
+  // database keys.
+  private static final String FIND_ITEMS_IN_RANGE_QUERY_PREFIX =
+      FIND_ITEMS_QUERY_PREFIX
+      + " and mi." + MD_ITEM_SEQ_COLUMN + " <= ?";
+
+  // The end of the query to find items across all AUs.
+  private static final String FIND_ITEMS_QUERY_SUFFIX =
+      " order by mi." + MD_ITEM_SEQ_COLUMN;
+
+  // The condition to find the items of a publication with an ISSN.
+  private static final String ISSN_CONDITION =
+      " and mi." + PARENT_SEQ_COLUMN + " in (select "
+      + MD_ITEM_SEQ_COLUMN + " from " + ISSN_TABLE
+      + " where " + ISSN_COLUMN + " = ?)";
+
+  // The condition to find the items of a publication with an ISBN.
+  private static final String ISBN_CONDITION =
+      " and mi." + PARENT_SEQ_COLUMN + " in (select "
+      + MD_ITEM_SEQ_COLUMN + " from " + ISBN_TABLE
+      + " where " + ISBN_COLUMN + " = ?)";
+
+  // The condition to find the items with a DOI that starts with a prefix,
+  // regardless of case. The first comparison, with the leading part of the
+  // prefix that has no letters, can use the index of the DOI column, while
+  // the second one only filters the DOIs found by the first one.
+  private static final String DOI_PREFIX_CONDITION =
+      " and mi." + MD_ITEM_SEQ_COLUMN + " in (select "
+      + MD_ITEM_SEQ_COLUMN + " from " + DOI_TABLE
+      + " where " + DOI_COLUMN + " like ? escape '\\'"
+      + " and upper(" + DOI_COLUMN + ") like ? escape '\\')";
+
+  // The condition to find the items of a publication with a name.
+  private static final String PUBLICATION_CONDITION =
+      " and mi." + PARENT_SEQ_COLUMN + " in (select "
+      + MD_ITEM_SEQ_COLUMN + " from " + MD_ITEM_NAME_TABLE
+      + " where " + NAME_COLUMN + " = ?"
+      + " and " + NAME_TYPE_COLUMN + " = '" + PRIMARY_NAME_TYPE + "')";
+
+  // The condition to find the items with both a DOI and an access URL.
+  private static final String DOI_AND_ACCESS_URL_CONDITION =
+      " and d." + DOI_COLUMN + " is not null"
+      + " and u." + URL_COLUMN + " is not null";
+
+  // The condition to restrict a query to the items of an AU.
+  private static final String AU_ITEMS_CONDITION = " mi." + AU_MD_SEQ_COLUMN
+      + " = am." + AU_MD_SEQ_COLUMN
+      + " and am." + AU_SEQ_COLUMN + " = a." + AU_SEQ_COLUMN
+      + " and a." + PLUGIN_SEQ_COLUMN + " = p." + PLUGIN_SEQ_COLUMN
+      + " and p." + PLUGIN_ID_COLUMN + " = ?"
+      + " and a." + AU_KEY_COLUMN + " = ?";
+
+  // Query to get the DOIs of all the items.
+  private static final String GET_ALL_DOIS_QUERY = "select "
+      + DOI_COLUMN
+      + " from " + DOI_TABLE;
+
+  // Query to get the DOIs of the items of an AU.
+  private static final String GET_AU_DOIS_QUERY = "select "
+      + "d." + DOI_COLUMN
+      + " from " + DOI_TABLE + " d"
+      + "," + MD_ITEM_TABLE + " mi"
+      + "," + AU_MD_TABLE + " am"
+      + "," + AU_TABLE + " a"
+      + "," + PLUGIN_TABLE + " p"
+      + " where d." + MD_ITEM_SEQ_COLUMN + " = mi." + MD_ITEM_SEQ_COLUMN
+      + " and" + AU_ITEMS_CONDITION;
+
+  // Query to get the ISSNs of all the publications.
+  private static final String GET_ALL_ISSNS_QUERY = "select "
+      + ISSN_COLUMN
+      + " from " + ISSN_TABLE;
+
+  // Query to get the ISSNs of the publications of the items of an AU.
+  private static final String GET_AU_ISSNS_QUERY = "select distinct "
+      + "i." + ISSN_COLUMN
+      + " from " + ISSN_TABLE + " i"
+      + "," + MD_ITEM_TABLE + " mi"
+      + "," + AU_MD_TABLE + " am"
+      + "," + AU_TABLE + " a"
+      + "," + PLUGIN_TABLE + " p"
+      + " where i." + MD_ITEM_SEQ_COLUMN + " = mi." + PARENT_SEQ_COLUMN
+      + " and" + AU_ITEMS_CONDITION;
+
+  /**
+   * The criteria that can be used to find items across all AUs.
+   */
+  public enum ItemCriterion {
+    ISSN(ISSN_CONDITION),
+    ISBN(ISBN_CONDITION),
+    DOI_PREFIX(DOI_PREFIX_CONDITION),
+    PUBLICATION(PUBLICATION_CONDITION);
+
+    private final String condition;
+
+    ItemCriterion(String condition) {
+      this.condition = condition;
+    }
+  }
+
+  /**
+   * Provides the time of the last metadata extraction of an AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @return a Long with the time of the last metadata extraction of the AU, or
+   *         <code>null</code> if the AU has no metadata.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public Long getAuExtractionTime(String auid) throws DbException {
+    log.debug2("auid = {}", auid);
+
+    Long result = null;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
+
+    try {
+      conn = getDbManager().getConnection();
+
+      stmt = getDbManager().prepareStatement(conn,
+	  GET_AU_EXTRACTION_TIME_QUERY);
+      stmt.setString(1, PluginManager.pluginIdFromAuId(auid));
+      stmt.setString(2, PluginManager.auKeyFromAuId(auid));
+
+      resultSet = getDbManager().executeQuery(stmt);
+
+      if (resultSet.next()) {
+	long extractTime = resultSet.getLong(EXTRACT_TIME_COLUMN);
+
+	if (!resultSet.wasNull()) {
+	  result = extractTime;
+	}
+      }
+    } catch (SQLException sqle) {
+      String message = "Cannot get the metadata extraction time";
+      log.error(message, sqle);
+      log.error("auid = {}", auid);
+      log.error("SQL = '{}'", GET_AU_EXTRACTION_TIME_QUERY);
+      throw new DbException(message, sqle);
+    } finally {
+      DbManager.safeCloseResultSet(resultSet);
+      DbManager.safeCloseStatement(stmt);
+      DbManager.safeRollbackAndClose(conn);
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Provides the number of metadata items of an AU.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @return a long with the number of metadata items of the AU.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public long getAuItemCount(String auid) throws DbException {
+    return getAuItemCount(auid, null);
+  }
+
+  /**
+   * Provides the number of metadata items of an AU with a database key not
+   * greater than a given one.
+   *
+   * @param auid
+   *          A String with the AU identifier.
+   * @param maxMdItemSeq
+   *          A Long with the maximum database key of the items to be counted,
+   *          or <code>null</code> to count all the items.
+   * @return a long with the number of metadata items of the AU.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public long getAuItemCount(String auid, Long maxMdItemSeq)
+      throws DbException {
+    log.debug2("auid = {}", auid);
+    log.debug2("maxMdItemSeq = {}", maxMdItemSeq);
+
+    String sql = maxMdItemSeq == null
+	? GET_AU_ITEM_COUNT_QUERY : GET_AU_ITEM_COUNT_UP_TO_QUERY;
+
+    long result = 0;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
+
+    try {
+      conn = getDbManager().getConnection();
+
+      stmt = getDbManager().prepareStatement(conn, sql);
+      stmt.setString(1, PluginManager.pluginIdFromAuId(auid));
+      stmt.setString(2, PluginManager.auKeyFromAuId(auid));
+
+      if (maxMdItemSeq != null) {
+	stmt.setLong(3, maxMdItemSeq.longValue());
+      }
+
+      resultSet = getDbManager().executeQuery(stmt);
+
+      if (resultSet.next()) {
+	result = resultSet.getLong(1);
+      }
+    } catch (SQLException sqle) {
+      String message = "Cannot get the metadata item count";
+      log.error(message, sqle);
+      log.error("auid = {}", auid);
+      log.error("maxMdItemSeq = {}", maxMdItemSeq);
+      log.error("SQL = '{}'", sql);
+      throw new DbException(message, sqle);
+    } finally {
+      DbManager.safeCloseResultSet(resultSet);
+      DbManager.safeCloseStatement(stmt);
+      DbManager.safeRollbackAndClose(conn);
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Provides the identifiers of the AUs that have metadata.
+   *
+   * @return a {@code List<String>} with the AU identifiers.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public List<String> getAuidsWithMetadata() throws DbException {
+    log.debug2("Invoked");
+
+    List<String> result = new ArrayList<>();
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
+
+    try {
+      conn = getDbManager().getConnection();
+
+      stmt = getDbManager().prepareStatement(conn,
+	  GET_AUIDS_WITH_METADATA_QUERY);
+
+      resultSet = getDbManager().executeQuery(stmt);
+
+      while (resultSet.next()) {
+	result.add(PluginManager.generateAuId(
+	    resultSet.getString(PLUGIN_ID_COLUMN),
+	    resultSet.getString(AU_KEY_COLUMN)));
+      }
+    } catch (SQLException sqle) {
+      String message = "Cannot get the AUs with metadata";
+      log.error(message, sqle);
+      log.error("SQL = '{}'", GET_AUIDS_WITH_METADATA_QUERY);
+      throw new DbException(message, sqle);
+    } finally {
+      DbManager.safeCloseResultSet(resultSet);
+      DbManager.safeCloseStatement(stmt);
+      DbManager.safeRollbackAndClose(conn);
+    }
+
+    log.debug2("result.size() = {}", result.size());
+    return result;
+  }
+
+  /**
+   * Provides the number of metadata items of all the AUs and the largest of
+   * their database keys, which together change whenever items are added or
+   * deleted.
+   *
+   * @return a long[] with the number of items followed by the largest
+   *         database key, or 0 if there are no items.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public long[] getMdItemCountAndMaxSeq() throws DbException {
+    log.debug2("Invoked");
+
+    long[] result = new long[2];
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
+
+    try {
+      conn = getDbManager().getConnection();
+
+      stmt = getDbManager().prepareStatement(conn,
+	  GET_MD_ITEM_COUNT_AND_MAX_SEQ_QUERY);
+
+      resultSet = getDbManager().executeQuery(stmt);
+
+      if (resultSet.next()) {
+	result[0] = resultSet.getLong(1);
+	result[1] = resultSet.getLong(2);
+      }
+    } catch (SQLException sqle) {
+      String message = "Cannot get the metadata item count and maximum key";
+      log.error(message, sqle);
+      log.error("SQL = '{}'", GET_MD_ITEM_COUNT_AND_MAX_SEQ_QUERY);
+      throw new DbException(message, sqle);
+    } finally {
+      DbManager.safeCloseResultSet(resultSet);
+      DbManager.safeCloseStatement(stmt);
+      DbManager.safeRollbackAndClose(conn);
+    }
+
+    log.debug2("result = {}, {}", result[0], result[1]);
+    return result;
+  }
+
+  /**
+   * Provides, across all AUs, the items that meet a criterion, in the order
+   * of their database keys.
+   * <br>
+   * The database keys of the items of the page are found first, without the
+   * joins that produce several rows per item, and then the details of the
+   * items in the range of those keys are fetched. The pagination is done by
+   * database key, so the cost of a page does not depend on its position.
+   * <br>
+   * DOI prefixes are matched regardless of case, as DOIs are
+   * case-insensitive.
+   *
+   * @param criterion
+   *          An ItemCriterion with the criterion to be met.
+   * @param value
+   *          A String with the value of the criterion.
+   * @param lastMdItemSeq
+   *          A long with the database key after which to start.
+   * @param limit
+   *          An int with the maximum number of items to be returned.
+   * @return a {@code List<ItemInfo>} with the items found.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public List<ItemInfo> findItems(ItemCriterion criterion, String value,
+      long lastMdItemSeq, int limit) throws DbException {
+    log.debug2("criterion = {}", criterion);
+    log.debug2("value = {}", value);
+    log.debug2("lastMdItemSeq = {}", lastMdItemSeq);
+    log.debug2("limit = {}", limit);
+
+    List<ItemInfo> result = new ArrayList<>();
+
+    if (limit <= 0) {
+      return result;
+    }
+
+    List<String> criterionValues = getCriterionValues(criterion, value);
+    String sql = FIND_ITEM_KEYS_QUERY_PREFIX + criterion.condition
+	+ FIND_ITEMS_QUERY_SUFFIX;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
+
+    try {
+      conn = getDbManager().getConnection();
+
+      // Find the database keys of the items of the page.
+      stmt = getDbManager().prepareStatement(conn, sql);
+      stmt.setLong(1, lastMdItemSeq);
+      setCriterionValues(stmt, 2, criterionValues);
+      stmt.setMaxRows(limit);
+
+      resultSet = getDbManager().executeQuery(stmt);
+      long lastPageMdItemSeq = -1;
+
+      while (resultSet.next()) {
+	lastPageMdItemSeq = resultSet.getLong(MD_ITEM_SEQ_COLUMN);
+      }
+
+      DbManager.safeCloseResultSet(resultSet);
+      resultSet = null;
+      DbManager.safeCloseStatement(stmt);
+      stmt = null;
+      log.trace("lastPageMdItemSeq = {}", lastPageMdItemSeq);
+
+      // Check whether no item was found.
+      if (lastPageMdItemSeq < 0) {
+	// Yes: Done.
+	log.debug2("result.size() = {}", result.size());
+	return result;
+      }
+
+      // Get the details of the items of the page.
+      sql = FIND_ITEMS_IN_RANGE_QUERY_PREFIX + criterion.condition
+	  + FIND_ITEMS_QUERY_SUFFIX;
+
+      stmt = getDbManager().prepareStatement(conn, sql);
+      stmt.setLong(1, lastMdItemSeq);
+      stmt.setLong(2, lastPageMdItemSeq);
+      setCriterionValues(stmt, 3, criterionValues);
+
+      resultSet = getDbManager().executeQuery(stmt);
+
+      while (resultSet.next()) {
+	long mdItemSeq = resultSet.getLong(MD_ITEM_SEQ_COLUMN);
+
+	// Skip additional rows for the same item.
+	if (!result.isEmpty()
+	    && result.get(result.size() - 1).getId().longValue() == mdItemSeq) {
+	  continue;
+	}
+
+	// Items stored since the keys were found are left for the next page.
+	if (result.size() == limit) {
+	  break;
+	}
+
+	ItemInfo itemInfo = new ItemInfo();
+	itemInfo.setId(mdItemSeq);
+	itemInfo.setAuid(PluginManager.generateAuId(
+	    resultSet.getString(PLUGIN_ID_COLUMN),
+	    resultSet.getString(AU_KEY_COLUMN)));
+	itemInfo.setDoi(resultSet.getString(DOI_COLUMN));
+	itemInfo.setAccessUrl(resultSet.getString(URL_COLUMN));
+
+	result.add(itemInfo);
+      }
+    } catch (SQLException sqle) {
+      String message = "Cannot find items";
+      log.error(message, sqle);
+      log.error("criterion = {}", criterion);
+      log.error("value = {}", value);
+      log.error("lastMdItemSeq = {}", lastMdItemSeq);
+      log.error("SQL = '{}'", sql);
+      throw new DbException(message, sqle);
+    } finally {
+      DbManager.safeCloseResultSet(resultSet);
+      DbManager.safeCloseStatement(stmt);
+      DbManager.safeRollbackAndClose(conn);
+    }
+
+    log.debug2("result.size() = {}", result.size());
+    return result;
+  }
+
+  /**
+   * Provides, across all AUs, the DOIs and access URLs of the items that have
+   * both, in the order of the database keys of the items.
+   * <br>
+   * An item with several DOIs or access URLs has one entry for each
+   * combination, and the entries of an item are never split across calls.
+   *
+   * @param lastMdItemSeq
+   *          A long with the database key after which to start.
+   * @param limit
+   *          An int with the maximum number of items to be returned.
+   * @return a {@code List<ItemInfo>} with one entry for each combination of
+   *         DOI and access URL of the items found.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public List<ItemInfo> getDoiAccessUrls(long lastMdItemSeq, int limit)
+      throws DbException {
+    log.debug2("lastMdItemSeq = {}", lastMdItemSeq);
+    log.debug2("limit = {}", limit);
+
+    List<ItemInfo> result = new ArrayList<>();
+
+    if (limit <= 0) {
+      return result;
+    }
+
+    String sql = FIND_ITEMS_QUERY_PREFIX + DOI_AND_ACCESS_URL_CONDITION
+	+ FIND_ITEMS_QUERY_SUFFIX;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
+
+    try {
+      conn = getDbManager().getConnection();
+
+      stmt = getDbManager().prepareStatement(conn, sql);
+      stmt.setLong(1, lastMdItemSeq);
+      stmt.setFetchSize(limit);
+
+      resultSet = getDbManager().executeQuery(stmt);
+
+      long previousMdItemSeq = -1;
+      int itemCount = 0;
+
+      while (resultSet.next()) {
+	long mdItemSeq = resultSet.getLong(MD_ITEM_SEQ_COLUMN);
+
+	// Check whether this row belongs to a new item.
+	if (mdItemSeq != previousMdItemSeq) {
+	  // Yes: Stop if the limit of items has been reached.
+	  if (itemCount == limit) {
+	    break;
+	  }
+
+	  previousMdItemSeq = mdItemSeq;
+	  itemCount++;
+	}
+
+	ItemInfo itemInfo = new ItemInfo();
+	itemInfo.setId(mdItemSeq);
+	itemInfo.setAuid(PluginManager.generateAuId(
+	    resultSet.getString(PLUGIN_ID_COLUMN),
+	    resultSet.getString(AU_KEY_COLUMN)));
+	itemInfo.setDoi(resultSet.getString(DOI_COLUMN));
+	itemInfo.setAccessUrl(resultSet.getString(URL_COLUMN));
+
+	result.add(itemInfo);
+      }
+    } catch (SQLException sqle) {
+      String message = "Cannot get the DOIs and access URLs of items";
+      log.error(message, sqle);
+      log.error("lastMdItemSeq = {}", lastMdItemSeq);
+      log.error("SQL = '{}'", sql);
+      throw new DbException(message, sqle);
+    } finally {
+      DbManager.safeCloseResultSet(resultSet);
+      DbManager.safeCloseStatement(stmt);
+      DbManager.safeRollbackAndClose(conn);
+    }
+
+    log.debug2("result.size() = {}", result.size());
+    return result;
+  }
+
+  /**
+   * Passes the DOIs of the items of one or all AUs to a consumer, without
+   * holding them all in memory.
+   *
+   * @param auid
+   *          A String with the AU identifier, or <code>null</code> for all the
+   *          AUs.
+   * @param consumer
+   *          A {@code Consumer<String>} to which each DOI is passed.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public void scanDois(String auid, Consumer<String> consumer)
+      throws DbException {
+    scanValues(auid == null ? GET_ALL_DOIS_QUERY : GET_AU_DOIS_QUERY, auid,
+	consumer);
+  }
+
+  /**
+   * Passes the ISSNs of the publications of the items of one or all AUs to a
+   * consumer, without holding them all in memory.
+   *
+   * @param auid
+   *          A String with the AU identifier, or <code>null</code> for all the
+   *          AUs.
+   * @param consumer
+   *          A {@code Consumer<String>} to which each ISSN is passed.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  public void scanIssns(String auid, Consumer<String> consumer)
+      throws DbException {
+    scanValues(auid == null ? GET_ALL_ISSNS_QUERY : GET_AU_ISSNS_QUERY, auid,
+	consumer);
+  }
+
+  /**
+   * Passes the values of the single column of a query to a consumer.
+   *
+   * @param sql
+   *          A String with the query.
+   * @param auid
+   *          A String with the AU identifier used by the query, or
+   *          <code>null</code> if the query has no parameters.
+   * @param consumer
+   *          A {@code Consumer<String>} to which each value is passed.
+   * @throws DbException
+   *           if any problem occurred accessing the database.
+   */
+  private void scanValues(String sql, String auid, Consumer<String> consumer)
+      throws DbException {
+    log.debug2("sql = {}", sql);
+    log.debug2("auid = {}", auid);
+
+    long count = 0;
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
+
+    try {
+      conn = getDbManager().getConnection();
+
+      stmt = getDbManager().prepareStatement(conn, sql);
+
+      if (auid != null) {
+	stmt.setString(1, PluginManager.pluginIdFromAuId(auid));
+	stmt.setString(2, PluginManager.auKeyFromAuId(auid));
+      }
+
+      stmt.setFetchSize(SCAN_FETCH_SIZE);
+      resultSet = getDbManager().executeQuery(stmt);
+
+      while (resultSet.next()) {
+	String value = resultSet.getString(1);
+
+	if (value != null) {
+	  consumer.accept(value);
+	  count++;
+	}
+      }
+    } catch (SQLException sqle) {
+      String message = "Cannot scan the metadata database";
+      log.error(message, sqle);
+      log.error("auid = {}", auid);
+      log.error("SQL = '{}'", sql);
+      throw new DbException(message, sqle);
+    } finally {
+      DbManager.safeCloseResultSet(resultSet);
+      DbManager.safeCloseStatement(stmt);
+      DbManager.safeRollbackAndClose(conn);
+    }
+
+    log.debug2("count = {}", count);
+  }
+
+  /**
+   * Provides the values of the parameters of the condition of a criterion.
+   *
+   * @param criterion
+   *          An ItemCriterion with the criterion.
+   * @param value
+   *          A String with the value of the criterion.
+   * @return a {@code List<String>} with the values of the parameters.
+   */
+  private static List<String> getCriterionValues(ItemCriterion criterion,
+      String value) {
+    List<String> result = new ArrayList<>(2);
+
+    // Check whether the criterion is not a DOI prefix.
+    if (criterion != ItemCriterion.DOI_PREFIX) {
+      // Yes: The value is used as it is.
+      result.add(value);
+      return result;
+    }
+
+    // Find the leading part of the prefix that is the same in any case, as
+    // DOIs are stored with the case in which they were extracted.
+    int caselessLength = 0;
+
+    while (caselessLength < value.length()) {
+      char c = value.charAt(caselessLength);
+
+      if (Character.toUpperCase(c) != Character.toLowerCase(c)) {
+	break;
+      }
+
+      caselessLength++;
+    }
+
+    result.add(escapeLike(value.substring(0, caselessLength)) + "%");
+    result.add(escapeLike(value.toUpperCase(Locale.ROOT)) + "%");
+    return result;
+  }
+
+  /**
+   * Sets the values of the parameters of the condition of a criterion.
+   *
+   * @param stmt
+   *          A PreparedStatement with the statement.
+   * @param index
+   *          An int with the index of the first parameter of the condition.
+   * @param values
+   *          A {@code List<String>} with the values of the parameters.
+   * @throws SQLException
+   *           if any problem occurred setting the parameters.
+   */
+  private static void setCriterionValues(PreparedStatement stmt, int index,
+      List<String> values) throws SQLException {
+    for (String value : values) {
+      stmt.setString(index++, value);
+    }
+  }
+
+  /**
+   * Escapes the wildcard characters of a value used in a LIKE condition.
+   *
+   * @param value
+   *          A String with the value to be escaped.
+   * @return a String with the escaped value.
+   */
+  private static String escapeLike(String value) {
+    return value.replace("\\", "\\\\").replace("%", "\\%")
+	.replace("_", "\\_");
+  }
+
+  /**
+   * Provides the metadata database manager.
+   *
+   * @return a MetadataDbManager with the metadata database manager.
+   */
+  private MetadataDbManager getDbManager() {
+    return LockssApp.getManagerByTypeStatic(MetadataDbManager.class);
+  }
+}
@@ -0,0 +1,226 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The canonical form of the parameters of an OpenURL query, so that
+ * equivalent queries can be recognized as the same by the caches and the
+ * coalescing of queries. It is only a key: queries are performed with their
+ * original parameters.
+ * <br>
+ * Parameter names are lower-cased, the OpenURL 0.1 names of identifiers and
+ * locators are replaced by their OpenURL 1.0 equivalents, DOIs in any of
+ * their forms become a lower-cased <code>rft_id=info:doi/...</code>, ISSNs
+ * and ISBNs lose their hyphens, and the parameters that do not affect the
+ * results, such as timestamps, are dropped.
+ * <br>
+ * No identifier is lost when several parameters would map to the same name.
+ * An <code>rft_id</code> that is not a DOI, such as a URL, becomes
+ * <code>rft_id.other</code>. Distinct DOIs are kept in their sorted order, the
+ * first one as <code>rft_id</code> and the others as <code>rft_id.2</code>,
+ * <code>rft_id.3</code> and so on.
+ */
+public final class OpenUrlKey {
+  // The canonical parameter with a DOI, and the prefix of the DOI in it.
+  static final String DOI_PARAM = "rft_id";
+  static final String DOI_PREFIX = "info:doi/";
+
+  // The canonical parameter with an rft_id that is not a DOI.
+  static final String OTHER_ID_PARAM = DOI_PARAM + ".other";
+
+  // The prefix of a DOI in the OpenURL 0.1 id parameter.
+  private static final String ID_PARAM = "id";
+  private static final String ID_DOI_PREFIX = "doi:";
+
+  // The parameters with a bare DOI.
+  private static final Set<String> BARE_DOI_PARAMS =
+      new HashSet<>(Arrays.asList("rft.doi", "doi"));
+
+  // The canonical parameters with ISSNs or ISBNs.
+  private static final Set<String> ISSN_ISBN_PARAMS =
+      new HashSet<>(Arrays.asList("rft.issn", "rft.eissn", "rft.isbn"));
+
+  // The parameters that do not affect the results of a query.
+  private static final Set<String> IGNORED_PARAMS =
+      new HashSet<>(Arrays.asList("url_ver", "url_ctx_fmt", "ctx_ver",
+	  "ctx_enc", "ctx_tim", "rfr_id"));
+
+  // The OpenURL 1.0 names of OpenURL 0.1 parameters.
+  private static final Map<String, String> PARAM_ALIASES = new HashMap<>();
+
+  static {
+    for (String name : Arrays.asList("issn", "eissn", "isbn", "volume",
+	"issue", "spage", "epage", "pages", "artnum", "date")) {
+      PARAM_ALIASES.put(name, "rft." + name);
+    }
+  }
+
+  private final SortedMap<String, String> params;
+  private final String canonical;
+
+  /**
+   * Constructor.
+   *
+   * @param params
+   *          A {@code Map<String, String>} with the OpenURL query parameters.
+   */
+  public OpenUrlKey(Map<String, String> params) {
+    SortedMap<String, String> canonicalParams = new TreeMap<>();
+    SortedSet<String> dois = new TreeSet<>();
+
+    if (params != null) {
+      for (Map.Entry<String, String> param : params.entrySet()) {
+	if (param.getKey() == null || param.getValue() == null) {
+	  continue;
+	}
+
+	String name = param.getKey().trim().toLowerCase(Locale.ROOT);
+	String value = param.getValue().trim();
+
+	if (name.isEmpty() || value.isEmpty()
+	    || IGNORED_PARAMS.contains(name)) {
+	  continue;
+	}
+
+	name = PARAM_ALIASES.getOrDefault(name, name);
+	String doi = getDoi(name, value);
+
+	if (doi != null) {
+	  // DOIs are case-insensitive.
+	  dois.add(doi.toLowerCase(Locale.ROOT));
+	  continue;
+	}
+
+	if (DOI_PARAM.equals(name)) {
+	  name = OTHER_ID_PARAM;
+	} else if (ISSN_ISBN_PARAMS.contains(name)) {
+	  value = value.replace("-", "").replace(" ", "")
+	      .toUpperCase(Locale.ROOT);
+	}
+
+	canonicalParams.put(name, value);
+      }
+    }
+
+    int doiCount = 0;
+
+    for (String doi : dois) {
+      doiCount++;
+      String name = doiCount == 1 ? DOI_PARAM : DOI_PARAM + "." + doiCount;
+      canonicalParams.put(name, DOI_PREFIX + doi);
+    }
+
+    this.params = Collections.unmodifiableSortedMap(canonicalParams);
+
+    StringBuilder sb = new StringBuilder();
+
+    for (Map.Entry<String, String> param : canonicalParams.entrySet()) {
+      if (sb.length() > 0) {
+	sb.append('&');
+      }
+
+      sb.append(param.getKey()).append('=').append(param.getValue());
+    }
+
+    canonical = sb.toString();
+  }
+
+  /**
+   * Provides the canonical query parameters.
+   *
+   * @return a {@code SortedMap<String, String>} with the canonical query
+   *         parameters.
+   */
+  public SortedMap<String, String> getParams() {
+    return params;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    return o instanceof OpenUrlKey
+	&& canonical.equals(((OpenUrlKey)o).canonical);
+  }
+
+  @Override
+  public int hashCode() {
+    return canonical.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return canonical;
+  }
+
+  /**
+   * Provides the DOI in a query parameter.
+   *
+   * @param name
+   *          A String with the name of the parameter.
+   * @param value
+   *          A String with the value of the parameter.
+   * @return a String with the DOI, or <code>null</code> if the parameter has
+   *         no DOI.
+   */
+  private static String getDoi(String name, String value) {
+    if (BARE_DOI_PARAMS.contains(name)) {
+      return value;
+    }
+
+    if (DOI_PARAM.equals(name) && value.regionMatches(true, 0, DOI_PREFIX, 0,
+	DOI_PREFIX.length())) {
+      return value.substring(DOI_PREFIX.length());
+    }
+
+    if (ID_PARAM.equals(name) && value.regionMatches(true, 0, ID_DOI_PREFIX,
+	0, ID_DOI_PREFIX.length())) {
+      return value.substring(ID_DOI_PREFIX.length());
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,217 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
+import org.lockss.log.L4JLogger;
+import org.lockss.util.Constants;
+import org.lockss.util.time.TimeBase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * A bounded in-memory cache of the URLs that result from OpenURL queries,
+ * including DOI lookups, keyed by the canonical form of the query parameters.
+ * <br>
+ * Queries that resolve to no URL are cached too, for a shorter time. The
+ * least recently used entries are evicted when the number of entries exceeds
+ * its configured maximum, and entries expire after their time to live.
+ * <br>
+ * The result of a query does not identify the AUs that took part in it, and a
+ * query that resolved to nothing may resolve once any AU gets new metadata,
+ * so all the entries are discarded when a job for any AU finishes.
+ */
+@Component
+public class OpenUrlResolutionCache implements MetadataJobMonitor.Listener {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.openUrlCache.";
+
+  /**
+   * Whether the results of OpenURL queries are cached.
+   */
+  public static final String PARAM_ENABLED = PREFIX + "enabled";
+  public static final boolean DEFAULT_ENABLED = true;
+
+  /**
+   * The maximum number of cached queries.
+   */
+  public static final String PARAM_MAX_ENTRIES = PREFIX + "maxEntries";
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  /**
+   * The time the result of a query that resolved to some URL is cached.
+   */
+  public static final String PARAM_TTL = PREFIX + "ttl";
+  public static final long DEFAULT_TTL = 10 * Constants.MINUTE;
+
+  /**
+   * The time the result of a query that resolved to no URL is cached.
+   */
+  public static final String PARAM_NEGATIVE_TTL = PREFIX + "negativeTtl";
+  public static final long DEFAULT_NEGATIVE_TTL = 1 * Constants.MINUTE;
+
+  // The cached entries, in access order.
+  private final LinkedHashMap<OpenUrlKey, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  // The number of invalidations, used to avoid caching results obtained
+  // before an invalidation.
+  private long generation = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param jobMonitor
+   *          A MetadataJobMonitor with the monitor of finished jobs.
+   */
+  @Autowired
+  public OpenUrlResolutionCache(MetadataJobMonitor jobMonitor) {
+    jobMonitor.addListener(this);
+  }
+
+  /**
+   * Provides an indication of whether the cache is enabled.
+   *
+   * @return a boolean with <code>true</code> if the cache is enabled,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isEnabled() {
+    return ConfigManager.getCurrentConfig()
+	.getBoolean(PARAM_ENABLED, DEFAULT_ENABLED);
+  }
+
+  /**
+   * Provides the current generation of the cache, to be passed to
+   * {@link #put(OpenUrlKey, List, long)} after resolving a query.
+   *
+   * @return a long with the current generation of the cache.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Provides the cached URLs of a query.
+   *
+   * @param key
+   *          An OpenUrlKey with the canonical OpenURL query parameters.
+   * @return a {@code List<String>} with the cached URLs, empty if the query
+   *         resolved to no URL, or <code>null</code> if the query is not
+   *         cached.
+   */
+  public synchronized List<String> get(OpenUrlKey key) {
+    Entry entry = entries.get(key);
+
+    if (entry != null && entry.expiration <= TimeBase.nowMs()) {
+      entries.remove(key);
+      entry = null;
+    }
+
+    log.trace("Cache {} for key = {}", entry == null ? "miss" : "hit", key);
+    return entry == null ? null : entry.urls;
+  }
+
+  /**
+   * Caches the URLs of a query, unless the cache has been invalidated since
+   * the query was resolved.
+   *
+   * @param key
+   *          An OpenUrlKey with the canonical OpenURL query parameters.
+   * @param urls
+   *          A {@code List<String>} with the resulting URLs.
+   * @param resolveGeneration
+   *          A long with the generation of the cache when the query was
+   *          resolved.
+   */
+  public synchronized void put(OpenUrlKey key, List<String> urls,
+      long resolveGeneration) {
+    if (resolveGeneration != generation) {
+      log.trace("Not caching stale result for key = {}", key);
+      return;
+    }
+
+    Configuration config = ConfigManager.getCurrentConfig();
+    int maxEntries = config.getInt(PARAM_MAX_ENTRIES, DEFAULT_MAX_ENTRIES);
+    long ttl = urls.isEmpty()
+	? config.getTimeInterval(PARAM_NEGATIVE_TTL, DEFAULT_NEGATIVE_TTL)
+	: config.getTimeInterval(PARAM_TTL, DEFAULT_TTL);
+
+    if (maxEntries <= 0 || ttl <= 0) {
+      return;
+    }
+
+    entries.put(key, new Entry(List.copyOf(urls), TimeBase.nowMs() + ttl));
+
+    // Evict the least recently used entries, if necessary.
+    Iterator<Entry> iterator = entries.values().iterator();
+
+    while (entries.size() > maxEntries && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+
+    log.trace("entries.size() = {}", entries.size());
+  }
+
+  /**
+   * Discards all the cached entries.
+   */
+  public synchronized void invalidateAll() {
+    log.debug2("Invoked");
+    generation++;
+    entries.clear();
+  }
+
+  @Override
+  public void auMetadataChanged(String auid) {
+    invalidateAll();
+  }
+
+  /**
+   * A cached result.
+   */
+  private static final class Entry {
+    private final List<String> urls;
+    private final long expiration;
+
+    Entry(List<String> urls, long expiration) {
+      this.urls = urls;
+      this.expiration = expiration;
+    }
+  }
+}
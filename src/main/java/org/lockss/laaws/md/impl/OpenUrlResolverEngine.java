@@ -0,0 +1,82 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.Map;
+import org.lockss.app.LockssDaemon;
+import org.lockss.daemon.OpenUrlResolver;
+import org.lockss.daemon.OpenUrlResolver.OpenUrlInfo;
+import org.lockss.log.L4JLogger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the OpenURL resolver shared by all the URL requests, instead of
+ * building one per request.
+ * <br>
+ * An OpenUrlResolver only holds a reference to the daemon, and each query
+ * reads the title database and the metadata database as it runs. A single
+ * resolver can therefore serve concurrent requests, and it never needs to be
+ * rebuilt when the titles or the metadata change.
+ */
+@Component
+public class OpenUrlResolverEngine {
+  private static final L4JLogger log = L4JLogger.getLogger();
+
+  // The shared resolver, built on first use, as the daemon is not running
+  // when this bean is created.
+  private OpenUrlResolver resolver = null;
+
+  /**
+   * Performs an OpenURL query with the shared resolver.
+   *
+   * @param params
+   *          A {@code Map<String, String>} with the OpenURL query parameters.
+   * @return an OpenUrlInfo with the results of the query.
+   */
+  public OpenUrlInfo resolveOpenUrl(Map<String, String> params) {
+    return getResolver().resolveOpenUrl(params);
+  }
+
+  /**
+   * Provides the shared resolver, building it if necessary.
+   *
+   * @return an OpenUrlResolver with the shared resolver.
+   */
+  synchronized OpenUrlResolver getResolver() {
+    if (resolver == null) {
+      resolver = new OpenUrlResolver(LockssDaemon.getLockssDaemon());
+      log.debug("Built the shared OpenURL resolver");
+    }
+
+    return resolver;
+  }
+}
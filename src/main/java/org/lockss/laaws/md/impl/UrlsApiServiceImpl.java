@@ -31,6 +31,7 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package org.lockss.laaws.md.impl;
 
+import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,8 +39,20 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.lockss.app.LockssDaemon;
-import org.lockss.daemon.OpenUrlResolver;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.lockss.config.ConfigManager;
+import org.lockss.config.Configuration;
 import org.lockss.daemon.OpenUrlResolver.OpenUrlInfo;
 import org.lockss.laaws.md.api.UrlsApiDelegate;
 import org.lockss.laaws.md.model.ErrorResult;
@@ -47,7 +60,9 @@ import org.lockss.laaws.md.model.UrlInfo;
 import org.lockss.log.L4JLogger;
 import org.lockss.spring.auth.AuthUtil;
 import org.lockss.spring.auth.Roles;
-import org.lockss.spring.base.BaseSpringApiServiceImpl;
+import org.lockss.util.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -56,10 +71,67 @@ import org.springframework.stereotype.Service;
  * Service for access to URLs.
  */
 @Service
-public class UrlsApiServiceImpl extends BaseSpringApiServiceImpl
+public class UrlsApiServiceImpl extends BaseMdApiServiceImpl
     implements UrlsApiDelegate {
   private static final L4JLogger log = L4JLogger.getLogger();
 
+  public static final String PREFIX =
+      Configuration.PREFIX + "metadataService.urls.";
+
+  /**
+   * The maximum number of DOIs or OpenURL queries in a batch request.
+   */
+  public static final String PARAM_MAX_BATCH_SIZE = PREFIX + "maxBatchSize";
+  public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+
+  /**
+   * The maximum number of lookups of batch requests performed at the same
+   * time, across all batch requests. Only read when the first batch request
+   * is received.
+   */
+  public static final String PARAM_BATCH_THREADS = PREFIX + "batchThreads";
+  public static final int DEFAULT_BATCH_THREADS = 4;
+
+  /**
+   * The maximum number of lookups of batch requests waiting to be performed,
+   * across all batch requests. A batch request that does not fit is rejected
+   * as a whole. Only read when the first batch request is received.
+   */
+  public static final String PARAM_BATCH_MAX_QUEUED = PREFIX + "batchMaxQueued";
+  public static final int DEFAULT_BATCH_MAX_QUEUED = DEFAULT_MAX_BATCH_SIZE;
+
+  @Autowired
+  private OpenUrlResolutionCache resolutionCache;
+
+  @Autowired
+  private OpenUrlResolverEngine resolverEngine;
+
+  @Autowired
+  private DoiIndex doiIndex;
+
+  @Autowired
+  private IdentifierFilter identifierFilter;
+
+  @Autowired
+  private CitationIndex citationIndex;
+
+  private ThreadPoolExecutor batchExecutor = null;
+
+  // The OpenURL queries being performed, by their canonical parameters, so
+  // that equivalent concurrent queries are performed only once.
+  private final Map<OpenUrlKey, CompletableFuture<List<String>>>
+      inFlightQueries = new ConcurrentHashMap<>();
+
+  // The number of OpenURL queries performed, and of those that used instead
+  // the results of an equivalent query in progress.
+  private final AtomicLong performedQueryCount = new AtomicLong();
+  private final AtomicLong coalescedQueryCount = new AtomicLong();
+
+  // Invoked with the key and the parameters of each OpenURL query right
+  // before it is performed.
+  private volatile BiConsumer<OpenUrlKey, Map<String, String>> queryHook =
+      null;
+
   /**
    * Provides the URL for a DOI given the DOI.
    * 
@@ -72,7 +144,7 @@ public class UrlsApiServiceImpl extends BaseSpringApiServiceImpl
     log.debug2("doi = {}", doi);
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
@@ -80,11 +152,7 @@ public class UrlsApiServiceImpl extends BaseSpringApiServiceImpl
     AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
 
     try {
-      // Build an OpenURL query.
-      Map<String, String> params = new HashMap<String,String>();
-      params.put("rft_id", "info:doi/" + doi);
-
-      return new ResponseEntity<UrlInfo>(resolveOpenUrl(params), HttpStatus.OK);
+      return new ResponseEntity<UrlInfo>(resolveDoi(doi), HttpStatus.OK);
     } catch (Exception e) {
       String message = "Cannot getUrlsDoi() for doi = '" + doi + "'";
       log.error(message, e);
@@ -107,7 +175,7 @@ public class UrlsApiServiceImpl extends BaseSpringApiServiceImpl
     log.debug2("params = {}", params);
 
     // Check whether the service has not been fully initialized.
-    if (!waitReady()) {
+    if (!checkReady()) {
       // Yes: Notify the client.
       return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
     }
@@ -139,7 +207,324 @@ public class UrlsApiServiceImpl extends BaseSpringApiServiceImpl
   }
 
   /**
-   * Provides the results of an OpenUrl query.
+   * Provides the URLs for multiple DOIs.
+   * 
+   * @param dois
+   *          A {@code List<String>} with the DOIs for which the URLs are
+   *          requested.
+   * @return a {@code ResponseEntity<List<UrlInfo>>} with the URL information
+   *         of each DOI, in the order of the DOIs.
+   */
+  @Override
+  public ResponseEntity<List<UrlInfo>> postUrlsDoi(List<String> dois) {
+    log.debug2("dois = {}", dois);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    if (!isValidBatch(dois)) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    try {
+      List<Callable<UrlInfo>> lookups =
+	  new ArrayList<Callable<UrlInfo>>(dois.size());
+
+      for (String doi : dois) {
+	lookups.add(() -> resolveDoi(doi));
+      }
+
+      return new ResponseEntity<List<UrlInfo>>(performLookups(lookups),
+	  HttpStatus.OK);
+    } catch (RejectedExecutionException ree) {
+      log.warn("Too many lookups waiting for postUrlsDoi() of {} DOIs",
+	  dois.size());
+      return rejectBatch();
+    } catch (Exception e) {
+      String message = "Cannot postUrlsDoi() for " + dois.size() + " DOIs";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Provides the URLs that result from performing multiple OpenURL queries.
+   * 
+   * @param paramSets
+   *          A {@code List<Map<String, String>>} with the parameters of each
+   *          OpenURL query.
+   * @return a {@code ResponseEntity<List<UrlInfo>>} with the URL information
+   *         of each query, in the order of the queries.
+   */
+  @Override
+  public ResponseEntity<List<UrlInfo>> postUrlsOpenUrl(
+      List<Map<String, String>> paramSets) {
+    log.debug2("paramSets = {}", paramSets);
+
+    // Check whether the service has not been fully initialized.
+    if (!checkReady()) {
+      // Yes: Notify the client.
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    AuthUtil.checkHasRole(Roles.ROLE_CONTENT_ACCESS, Roles.ROLE_AU_ADMIN);
+
+    if (!isValidBatch(paramSets)) {
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    try {
+      return new ResponseEntity<List<UrlInfo>>(resolveOpenUrls(paramSets),
+	  HttpStatus.OK);
+    } catch (RejectedExecutionException ree) {
+      log.warn("Too many lookups waiting for postUrlsOpenUrl() of {} queries",
+	  paramSets.size());
+      return rejectBatch();
+    } catch (Exception e) {
+      String message = "Cannot postUrlsOpenUrl() for " + paramSets.size()
+	  + " queries";
+      log.error(message, e);
+      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Stops the executor of the lookups of batch requests.
+   */
+  @PreDestroy
+  public synchronized void stopBatchExecutor() {
+    if (batchExecutor != null) {
+      batchExecutor.shutdownNow();
+      batchExecutor = null;
+    }
+  }
+
+  /**
+   * Provides the number of OpenURL queries performed.
+   *
+   * @return a long with the number of OpenURL queries performed.
+   */
+  long getPerformedQueryCount() {
+    return performedQueryCount.get();
+  }
+
+  /**
+   * Provides the number of OpenURL queries that used the results of an
+   * equivalent query in progress instead of being performed.
+   *
+   * @return a long with the number of coalesced OpenURL queries.
+   */
+  long getCoalescedQueryCount() {
+    return coalescedQueryCount.get();
+  }
+
+  /**
+   * Provides the number of OpenURL queries in progress.
+   *
+   * @return an int with the number of OpenURL queries in progress.
+   */
+  int getInFlightQueryCount() {
+    return inFlightQueries.size();
+  }
+
+  /**
+   * Sets the code invoked with the key and the parameters of each OpenURL
+   * query right before it is performed.
+   *
+   * @param hook
+   *          A {@code BiConsumer<OpenUrlKey, Map<String, String>>} with the
+   *          code to be invoked, or <code>null</code> for none.
+   */
+  void setQueryHook(BiConsumer<OpenUrlKey, Map<String, String>> hook) {
+    queryHook = hook;
+  }
+
+  /**
+   * Provides the response to a batch request that cannot be performed because
+   * too many lookups are already waiting.
+   *
+   * @return a {@code ResponseEntity<List<UrlInfo>>} with a 503 status and a
+   *         Retry-After header.
+   */
+  private ResponseEntity<List<UrlInfo>> rejectBatch() {
+    long retryAfter = ConfigManager.getCurrentConfig()
+	.getTimeInterval(PARAM_MIN_RETRY_AFTER, DEFAULT_MIN_RETRY_AFTER);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER,
+	String.valueOf(retryAfter / Constants.SECOND));
+    return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  /**
+   * Provides the OpenURL query parameters of a DOI lookup.
+   * 
+   * @param doi
+   *          A String with the DOI.
+   * @return a {@code Map<String, String>} with the OpenURL query parameters.
+   */
+  private Map<String, String> getDoiParams(String doi) {
+    Map<String, String> params = new HashMap<String,String>();
+    params.put("rft_id", "info:doi/" + doi);
+    return params;
+  }
+
+  /**
+   * Provides an indication of whether the inputs of a batch request are
+   * acceptable.
+   * 
+   * @param inputs
+   *          A {@code List<?>} with the inputs of the batch request.
+   * @return a boolean with <code>true</code> if the inputs are acceptable,
+   *         <code>false</code> otherwise.
+   */
+  private boolean isValidBatch(List<?> inputs) {
+    if (inputs == null) {
+      log.warn("Invalid null batch");
+      return false;
+    }
+
+    int maxBatchSize = ConfigManager.getCurrentConfig()
+	.getInt(PARAM_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+
+    if (inputs.size() > maxBatchSize) {
+      log.warn("Batch of {} inputs exceeds the maximum of {}", inputs.size(),
+	  maxBatchSize);
+      return false;
+    }
+
+    if (inputs.contains(null)) {
+      log.warn("Invalid null input in batch");
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Provides the results of multiple OpenUrl queries, performed in parallel.
+   * 
+   * @param paramSets
+   *          A {@code List<Map<String, String>>} with the parameters of each
+   *          OpenURL query.
+   * @return a {@code List<UrlInfo>} with the results, in the order of the
+   *         queries.
+   * @throws Exception
+   *           if there are problems performing the queries.
+   */
+  private List<UrlInfo> resolveOpenUrls(List<Map<String, String>> paramSets)
+      throws Exception {
+    List<Callable<UrlInfo>> lookups =
+	new ArrayList<Callable<UrlInfo>>(paramSets.size());
+
+    for (Map<String, String> params : paramSets) {
+      lookups.add(() -> resolveOpenUrl(params));
+    }
+
+    return performLookups(lookups);
+  }
+
+  /**
+   * Performs multiple lookups in parallel.
+   * 
+   * @param lookups
+   *          A {@code List<Callable<UrlInfo>>} with the lookups.
+   * @return a {@code List<UrlInfo>} with the results, in the order of the
+   *         lookups.
+   * @throws RejectedExecutionException
+   *           if too many lookups are already waiting to be performed.
+   * @throws Exception
+   *           if there are problems performing the lookups.
+   */
+  private List<UrlInfo> performLookups(List<Callable<UrlInfo>> lookups)
+      throws Exception {
+    List<UrlInfo> result = new ArrayList<UrlInfo>(lookups.size());
+    ThreadPoolExecutor executor = getBatchExecutor();
+    List<Future<UrlInfo>> futures;
+
+    try {
+      futures = executor.invokeAll(lookups);
+    } catch (RejectedExecutionException ree) {
+      // The lookups already queued have been cancelled: Free their places.
+      executor.purge();
+      throw ree;
+    }
+
+    for (Future<UrlInfo> future : futures) {
+      try {
+	result.add(future.get());
+      } catch (ExecutionException ee) {
+	throw ee.getCause() instanceof Exception
+	    ? (Exception)ee.getCause() : ee;
+      }
+    }
+
+    log.debug2("result.size() = {}", result.size());
+    return result;
+  }
+
+  /**
+   * Provides the executor of the lookups of batch requests, creating it if
+   * necessary.
+   *
+   * @return a ThreadPoolExecutor with the executor.
+   */
+  private synchronized ThreadPoolExecutor getBatchExecutor() {
+    if (batchExecutor == null) {
+      Configuration config = ConfigManager.getCurrentConfig();
+      int threads = Math.max(1,
+	  config.getInt(PARAM_BATCH_THREADS, DEFAULT_BATCH_THREADS));
+      int maxQueued = Math.max(1,
+	  config.getInt(PARAM_BATCH_MAX_QUEUED, DEFAULT_BATCH_MAX_QUEUED));
+
+      batchExecutor = new ThreadPoolExecutor(threads, threads, 60,
+	  TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(maxQueued), r -> {
+	    Thread thread = new Thread(r, "UrlsBatchLookup");
+	    thread.setDaemon(true);
+	    return thread;
+	  });
+      batchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    return batchExecutor;
+  }
+
+  /**
+   * Provides the URLs for a DOI, from the DOI index if possible.
+   * 
+   * @param doi
+   *          A String with the DOI.
+   * @return a UrlInfo with the results.
+   */
+  private UrlInfo resolveDoi(String doi) {
+    log.debug2("doi = {}", doi);
+
+    Map<String, String> params = getDoiParams(doi);
+
+    if (doiIndex.isEnabled()) {
+      List<String> urls = doiIndex.lookup(doi);
+
+      // Check whether the DOI is in the index.
+      if (!urls.isEmpty()) {
+	// Yes: Use the indexed URLs.
+	UrlInfo result = new UrlInfo();
+	result.setParams(params);
+	result.setUrls(urls);
+	log.debug2("result = {}", result);
+	return result;
+      }
+    }
+
+    return resolveOpenUrl(params);
+  }
+
+  /**
+   * Provides the results of an OpenUrl query, from the cache if possible.
    * 
    * @param params
    *          A {@code Map<String, String>} with the OpenURL query parameters.
@@ -148,13 +533,113 @@ public class UrlsApiServiceImpl extends BaseSpringApiServiceImpl
   private UrlInfo resolveOpenUrl(Map<String, String> params) {
     log.debug2("params = {}", params);
 
+    OpenUrlKey key = new OpenUrlKey(params);
+    log.trace("key = {}", key);
+
+    List<String> urls = null;
+
+    // Check whether the query certainly has no results, with the original
+    // parameters, as the title database is searched with them.
+    if (identifierFilter.isEnabled() && identifierFilter.excludes(params)) {
+      // Yes: Skip it.
+      urls = new ArrayList<String>();
+    } else {
+      if (citationIndex.isEnabled()) {
+	urls = citationIndex.lookup(key);
+      }
+
+      if (urls == null && resolutionCache.isEnabled()) {
+	urls = resolutionCache.get(key);
+      }
+
+      // Check whether the query results are not cached.
+      if (urls == null) {
+	// Yes: Perform the query, or wait for an identical one in progress.
+	urls = resolveOpenUrlOnce(key, params);
+      }
+    }
+
+    UrlInfo result = new UrlInfo();
+    result.setParams(params);
+    result.setUrls(new ArrayList<String>(urls));
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Performs an OpenUrl query and caches its results, unless an equivalent
+   * query is already being performed, in which case its results are used.
+   * 
+   * @param key
+   *          An OpenUrlKey with the canonical OpenURL query parameters, used to
+   *          cache the results and to recognize equivalent queries.
+   * @param params
+   *          A {@code Map<String, String>} with the OpenURL query parameters
+   *          with which the query is performed.
+   * @return a {@code List<String>} with the unique URLs that result from the
+   *         query.
+   */
+  private List<String> resolveOpenUrlOnce(OpenUrlKey key,
+      Map<String, String> params) {
+    CompletableFuture<List<String>> future =
+	new CompletableFuture<List<String>>();
+    CompletableFuture<List<String>> inFlight =
+	inFlightQueries.putIfAbsent(key, future);
+
+    // Check whether an equivalent query is already being performed.
+    if (inFlight != null) {
+      // Yes: Wait for its results, which are cached by its performer.
+      log.trace("Waiting for in-flight query {}", key);
+      coalescedQueryCount.incrementAndGet();
+
+      try {
+	return inFlight.join();
+      } catch (CompletionException ce) {
+	throw ce.getCause() instanceof RuntimeException
+	    ? (RuntimeException)ce.getCause() : ce;
+      }
+    }
+
+    try {
+      performedQueryCount.incrementAndGet();
+      BiConsumer<OpenUrlKey, Map<String, String>> hook = queryHook;
+
+      if (hook != null) {
+	hook.accept(key, params);
+      }
+
+      long generation = resolutionCache.getGeneration();
+      List<String> urls =
+	  resolveOpenUrlUrls(new HashMap<String, String>(params));
+
+      if (resolutionCache.isEnabled()) {
+	resolutionCache.put(key, urls, generation);
+      }
+
+      future.complete(urls);
+      return urls;
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightQueries.remove(key, future);
+    }
+  }
+
+  /**
+   * Performs an OpenUrl query.
+   * 
+   * @param params
+   *          A {@code Map<String, String>} with the OpenURL query parameters.
+   * @return a {@code List<String>} with the unique URLs that result from the
+   *         query.
+   */
+  private List<String> resolveOpenUrlUrls(Map<String, String> params) {
     // The unique URLs that result from performing the query.
     Set<String> urls = new HashSet<String>();
 
     // Make the query.
-    OpenUrlInfo openUrlInfo =
-	new OpenUrlResolver(LockssDaemon.getLockssDaemon())
-	.resolveOpenUrl(params);
+    OpenUrlInfo openUrlInfo = resolverEngine.resolveOpenUrl(params);
     log.trace("openUrlInfo = {}", openUrlInfo);
 
     // Loop through all the results.
@@ -174,11 +659,6 @@ public class UrlsApiServiceImpl extends BaseSpringApiServiceImpl
     }
 
     log.trace("urls = {}", urls);
-
-    UrlInfo result = new UrlInfo();
-    result.setParams(params);
-    result.setUrls(new ArrayList<String>(urls));
-    log.debug2("result = {}", result);
-    return result;
+    return new ArrayList<String>(urls);
   }
 }
@@ -31,31 +31,66 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package org.lockss.laaws.md.impl;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.util.ByteArrayReadableSeekableByteChannel;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.lockss.app.LockssApp;
 import org.lockss.app.LockssDaemon;
 import org.lockss.config.Configuration;
+import org.lockss.config.Tdb;
+import org.lockss.daemon.OpenUrlResolver;
 import org.lockss.laaws.md.MdApplication;
+import org.lockss.laaws.md.model.AuMetadataChanges;
 import org.lockss.laaws.md.model.AuMetadataPageInfo;
+import org.lockss.laaws.md.model.AusMetadataPageInfo;
+import org.lockss.laaws.md.model.Export;
+import org.lockss.laaws.md.model.ExportSpec;
+import org.lockss.laaws.md.model.ItemInfo;
+import org.lockss.laaws.md.model.ItemInfoPageInfo;
 import org.lockss.laaws.md.model.UrlInfo;
 import org.lockss.log.L4JLogger;
 import org.lockss.metadata.ItemMetadata;
 import org.lockss.metadata.ItemMetadataContinuationToken;
+import org.lockss.metadata.ItemMetadataPage;
 import org.lockss.metadata.MetadataDbManager;
+import org.lockss.metadata.extractor.MetadataExtractorManager;
 import org.lockss.metadata.query.MetadataQueryManager;
 import org.lockss.plugin.Plugin;
 import org.lockss.plugin.definable.DefinablePlugin;
+import org.lockss.test.ConfigurationUtil;
 import org.lockss.test.MockArchivalUnit;
 import org.lockss.spring.test.SpringLockssTestCase4;
 import org.lockss.util.ListUtil;
@@ -149,6 +184,50 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
   @Autowired
   ApplicationContext appCtx;
 
+  // The monitor of finished metadata jobs.
+  @Autowired
+  MetadataJobMonitor jobMonitor;
+
+  // The cache of pages of AU metadata.
+  @Autowired
+  AuMetadataPageCache pageCache;
+
+  // The prefetcher of pages of AU metadata.
+  @Autowired
+  AuMetadataPrefetcher prefetcher;
+
+  // The full-text search index of metadata items.
+  @Autowired
+  MetadataSearchIndex searchIndex;
+
+  // The cache of the results of OpenURL queries.
+  @Autowired
+  OpenUrlResolutionCache resolutionCache;
+
+  // The holder of the shared OpenURL resolver.
+  @Autowired
+  OpenUrlResolverEngine resolverEngine;
+
+  // The memory-mapped index of DOIs.
+  @Autowired
+  DoiIndex doiIndex;
+
+  // The exporter of AU metadata.
+  @Autowired
+  MetadataExporter exporter;
+
+  // The service for access to URLs.
+  @Autowired
+  UrlsApiServiceImpl urlsService;
+
+  // The filter of the known DOIs and ISSNs.
+  @Autowired
+  IdentifierFilter identifierFilter;
+
+  // The index of the access URLs of items by citation.
+  @Autowired
+  CitationIndex citationIndex;
+
   /**
    * Set up code to be run before all tests.
    *
@@ -268,6 +347,7 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
     getMetadataAusAuidAuthenticatedTest();
     getUrlsDoiAuthenticatedTest();
     getUrlsOpenUrlAuthenticatedTest();
+    postMdupdatesBatchAuthenticatedTest();
 
     log.debug2("Done");
   }
@@ -363,17 +443,1195 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
     runTestGetMetadataAusAuid(UNKNOWN_AUID, null, null, ACCESS_CONTENT,
 	HttpStatus.NOT_FOUND);
 
-    // Success.
-    verifyMetadata(AU_1_MD, null, runTestGetMetadataAusAuid(AUID_1, null, null,
-	USER_ADMIN, HttpStatus.OK));
-    runTestGetMetadataAusAuid(AUID_2, null, null, CONTENT_ADMIN, HttpStatus.FORBIDDEN);
-    verifyMetadata(AU_2_MD, null, runTestGetMetadataAusAuid(AUID_2, null, null,
-        AU_ADMIN, HttpStatus.OK));
+    // Success.
+    verifyMetadata(AU_1_MD, null, runTestGetMetadataAusAuid(AUID_1, null, null,
+	USER_ADMIN, HttpStatus.OK));
+    runTestGetMetadataAusAuid(AUID_2, null, null, CONTENT_ADMIN, HttpStatus.FORBIDDEN);
+    verifyMetadata(AU_2_MD, null, runTestGetMetadataAusAuid(AUID_2, null, null,
+        AU_ADMIN, HttpStatus.OK));
+
+    // Pagination.
+    runTestGetMetadataAusAuidPagination(USER_ADMIN);
+    runTestGetMetadataAusAuidPagination(AU_ADMIN);
+    runTestGetMetadataAusAuidPagination(ACCESS_CONTENT);
+
+    // Pagination with the next page prefetched and without the page cache.
+    ConfigurationUtil.addFromArgs(AuMetadataPrefetcher.PARAM_ENABLED, "true",
+	AuMetadataPageCache.PARAM_ENABLED, "false");
+    runTestGetMetadataAusAuidPagination(AU_ADMIN);
+    runTestGetMetadataAusAuidPagination(AU_ADMIN);
+    ConfigurationUtil.addFromArgs(AuMetadataPrefetcher.PARAM_ENABLED, "false",
+	AuMetadataPageCache.PARAM_ENABLED, "true");
+
+    // Page cache.
+    runTestAuMetadataPageCache();
+
+    // Prefetching with the page cache.
+    runTestAuMetadataPrefetch(AU_ADMIN);
+
+    // Streaming.
+    runTestGetMetadataAusAuidStreaming(USER_ADMIN);
+    runTestGetMetadataAusAuidStreaming(ACCESS_CONTENT);
+
+    // Conditional requests.
+    runTestGetMetadataAusAuidConditional(AU_ADMIN);
+
+    // Field projection.
+    runTestGetMetadataAusAuidProjection(ACCESS_CONTENT);
+
+    // Compacted pages.
+    runTestGetMetadataAusAuidCompact(ACCESS_CONTENT);
+
+    // Binary representations.
+    runTestGetMetadataAusAuidBinary(AU_ADMIN);
+
+    // Item counts.
+    runTestGetMetadataAusAuidCount(ACCESS_CONTENT);
+
+    // Change feed.
+    runTestGetMetadataAusAuidChanges(AU_ADMIN);
+
+    // Cross-AU lookup.
+    runTestGetMetadataItems(ACCESS_CONTENT);
+
+    // Full-text search.
+    runTestGetMetadataSearch(ACCESS_CONTENT);
+
+    // Multiple AUs.
+    runTestPostMetadataAus(USER_ADMIN);
+    runTestPostMetadataAus(ACCESS_CONTENT);
+
+    // Exports.
+    runTestExports(AU_ADMIN);
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Runs the postMdupdatesBatch()-related authenticated-specific tests.
+   * 
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void postMdupdatesBatchAuthenticatedTest() throws Exception {
+    log.debug2("Invoked");
+
+    Map<String, String> spec = new HashMap<>();
+    spec.put("auid", AUID_1);
+    spec.put("updateType", "delete");
+
+    // No credentials.
+    runTestPostMdupdatesBatch(ListUtil.list(spec), false, null,
+	HttpStatus.UNAUTHORIZED);
+
+    // Bad credentials.
+    runTestPostMdupdatesBatch(ListUtil.list(spec), false, ANYBODY,
+	HttpStatus.UNAUTHORIZED);
+
+    postMdupdatesBatchCommonTest();
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Runs the postMdupdatesBatch()-related authentication-independent tests.
+   * 
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void postMdupdatesBatchCommonTest() throws Exception {
+    log.debug2("Invoked");
+
+    runTestPostMdupdatesBatch(AU_ADMIN);
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs compacted page tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataAusAuidCompact(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+
+    URI uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", AUID_1)))
+	.queryParam("compact", true).build().encode().toUri();
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.GET, new HttpEntity<String>(null, headers),
+	    String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    AuMetadataPageInfo aumpi = new ObjectMapper().readValue(response.getBody(),
+	AuMetadataPageInfo.class);
+    assertTrue(aumpi.getPageInfo().getCurLink().contains("compact=true"));
+
+    ItemMetadata auConstants = aumpi.getAuConstants();
+    assertNotNull(auConstants);
+    assertEquals(AUID_1, auConstants.getScalarMap().get("au_id"));
+    assertEquals(AU_1_MD.get(0).getScalarMap().get("publisher_name"),
+	auConstants.getScalarMap().get("publisher_name"));
+
+    // Adding the constants back to each item gives the full item.
+    List<ItemMetadata> items = new ArrayList<>();
+
+    for (ItemMetadata item : aumpi.getItems()) {
+      assertFalse(item.getScalarMap().containsKey("au_id"));
+      item.getScalarMap().putAll(auConstants.getScalarMap());
+
+      if (auConstants.getMapMap() != null) {
+	item.getMapMap().putAll(auConstants.getMapMap());
+      }
+
+      items.add(item);
+    }
+
+    verifyStreamedMetadata(AU_1_MD, items);
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs tests of the binary representations of the metadata.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataAusAuidBinary(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+
+    URI uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", AUID_1))).build().encode()
+	.toUri();
+
+    TestRestTemplate template =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0));
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<byte[]> response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), byte[].class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    String jsonEtag = response.getHeaders().getETag();
+    byte[] jsonBody = response.getBody();
+
+    // CBOR.
+    headers.setAccept(ListUtil.list(MediaType.APPLICATION_CBOR));
+    response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), byte[].class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertTrue(MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(
+	response.getHeaders().getContentType()));
+    assertFalse(jsonEtag.equals(response.getHeaders().getETag()));
+
+    verifyMetadata(AU_1_MD, null, new ObjectMapper(new CBORFactory())
+	.readValue(response.getBody(), AuMetadataPageInfo.class));
+
+    // The CBOR body has the same contents as the JSON body.
+    ObjectMapper jsonMapper = new ObjectMapper();
+    assertEquals(
+	jsonMapper.writeValueAsString(jsonMapper.readTree(jsonBody)),
+	jsonMapper.writeValueAsString(new ObjectMapper(new CBORFactory())
+	    .readTree(response.getBody())));
+
+    // Smile.
+    MediaType smile = MediaType.valueOf("application/x-jackson-smile");
+    headers.setAccept(ListUtil.list(smile));
+    response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), byte[].class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertTrue(smile.equalsTypeAndSubtype(
+	response.getHeaders().getContentType()));
+
+    verifyMetadata(AU_1_MD, null, new ObjectMapper(new SmileFactory())
+	.readValue(response.getBody(), AuMetadataPageInfo.class));
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs item count tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataAusAuidCount(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+
+    TestRestTemplate template =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0));
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    // The count resource.
+    URI uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}/count")).build()
+	.expand(Collections.singletonMap("auid", AUID_1))).build().encode()
+	.toUri();
+
+    ResponseEntity<String> response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertEquals(AU_1_MD.size(), Long.parseLong(response.getBody()));
+    assertEquals(String.valueOf(AU_1_MD.size()),
+	response.getHeaders().getFirst("X-Total-Count"));
+
+    // Again, from the cache.
+    response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(AU_1_MD.size(), Long.parseLong(response.getBody()));
+
+    // A HEAD request for the metadata.
+    uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", AUID_1))).build().encode()
+	.toUri();
+
+    ResponseEntity<Void> headResponse = template.exchange(uri,
+	HttpMethod.HEAD, new HttpEntity<String>(null, headers), Void.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(headResponse
+	.getStatusCode().value()));
+    assertEquals(String.valueOf(AU_1_MD.size()),
+	headResponse.getHeaders().getFirst("X-Total-Count"));
+    assertNotNull(headResponse.getHeaders().getETag());
+
+    // Unknown AU.
+    uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}/count")).build()
+	.expand(Collections.singletonMap("auid", UNKNOWN_AUID))).build()
+	.encode().toUri();
+
+    response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.NOT_FOUND, HttpStatus.valueOf(response
+	.getStatusCode().value()));
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs change feed tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataAusAuidChanges(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    // Bad token.
+    assertNull(runTestGetMetadataAusAuidChanges(AUID_1, "abc", 2, credentials,
+	HttpStatus.BAD_REQUEST));
+
+    // Unknown AU.
+    assertNull(runTestGetMetadataAusAuidChanges(UNKNOWN_AUID, null, 2,
+	credentials, HttpStatus.NOT_FOUND));
+
+    // All the items, from the start.
+    List<ItemMetadata> items = new ArrayList<>();
+    String since = null;
+    AuMetadataChanges changes = null;
+
+    do {
+      changes = runTestGetMetadataAusAuidChanges(AUID_1, since, 2, credentials,
+	  HttpStatus.OK);
+      assertFalse(changes.getResyncRequired());
+      assertTrue(changes.getItems().size() <= 2);
+      items.addAll(changes.getItems());
+      since = changes.getSince();
+    } while (changes.getMore());
+
+    verifyStreamedMetadata(AU_1_MD, items);
+
+    // No changes since.
+    changes = runTestGetMetadataAusAuidChanges(AUID_1, since, 2, credentials,
+	HttpStatus.OK);
+    assertEquals(0, changes.getItems().size());
+    assertFalse(changes.getMore());
+    assertFalse(changes.getResyncRequired());
+    assertEquals(since, changes.getSince());
+
+    // Items seen by the client have disappeared.
+    AuMetadataChangesToken token = new AuMetadataChangesToken(since);
+    changes = runTestGetMetadataAusAuidChanges(AUID_1,
+	new AuMetadataChangesToken(token.getLastMdItemSeq(),
+	    token.getItemCount() + 1).toWebResponseToken(), 2, credentials,
+	HttpStatus.OK);
+    assertEquals(0, changes.getItems().size());
+    assertTrue(changes.getResyncRequired());
+    assertEquals(new AuMetadataChangesToken(null).toWebResponseToken(),
+	changes.getSince());
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs a GET operation for the changes to the metadata of an Archival
+   * Unit.
+   * 
+   * @param auId
+   *          A String with the identifier of the Archival Unit.
+   * @param since
+   *          A String with the token of the position in the change feed.
+   * @param limit
+   *          An Integer with the maximum number of items to be returned.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return an AuMetadataChanges with the changes.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private AuMetadataChanges runTestGetMetadataAusAuidChanges(String auId,
+      String since, Integer limit, Credentials credentials,
+      HttpStatus expectedStatus) throws Exception {
+    startAuIfNecessary(auId);
+
+    UriComponentsBuilder ucb = UriComponentsBuilder.newInstance()
+	.uriComponents(UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}/changes")).build()
+	    .expand(Collections.singletonMap("auid", auId)))
+	.queryParam("limit", limit);
+
+    if (since != null) {
+      ucb.queryParam("since", since);
+    }
+
+    URI uri = ucb.build().encode().toUri();
+    log.trace("uri = {}", () -> uri);
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.GET, new HttpEntity<String>(null, headers),
+	    String.class);
+    assertEquals(expectedStatus, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    AuMetadataChanges result = null;
+
+    if (isSuccess(expectedStatus)) {
+      result = new ObjectMapper().readValue(response.getBody(),
+	  AuMetadataChanges.class);
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Performs cross-AU lookup tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataItems(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+    startAuIfNecessary(AUID_2);
+
+    // No criterion.
+    assertNull(runTestGetMetadataItems(null, null, 10, null, credentials,
+	HttpStatus.BAD_REQUEST));
+
+    // Too many criteria.
+    assertNull(runTestGetMetadataItems("issn", "13132652&isbn=123", 10, null,
+	credentials, HttpStatus.BAD_REQUEST));
+
+    // By ISSN, in pages.
+    List<String> dois = new ArrayList<>();
+    String continuationToken = null;
+    ItemInfoPageInfo page = null;
+
+    do {
+      page = runTestGetMetadataItems("issn", "1313-2652", 2,
+	  continuationToken, credentials, HttpStatus.OK);
+      assertTrue(page.getItems().size() <= 2);
+
+      for (ItemInfo itemInfo : page.getItems()) {
+	assertEquals(AUID_1, itemInfo.getAuid());
+	dois.add(itemInfo.getDoi());
+      }
+
+      continuationToken = page.getPageInfo().getContinuationToken();
+    } while (continuationToken != null);
+
+    assertEquals(AU_1_MD.size(), dois.size());
+
+    for (ItemMetadata item : AU_1_MD) {
+      assertTrue(dois.contains(item.getScalarMap().get("doi")));
+    }
+
+    // By DOI prefix.
+    page = runTestGetMetadataItems("doiPrefix", "10.3897/biorisk.8.3", 10,
+	null, credentials, HttpStatus.OK);
+    assertEquals(3, page.getItems().size());
+    assertNull(page.getPageInfo().getContinuationToken());
+
+    // By DOI prefix, regardless of case.
+    page = runTestGetMetadataItems("doiPrefix", "10.3897/BioRisk.8.3", 10,
+	null, credentials, HttpStatus.OK);
+    assertEquals(3, page.getItems().size());
+
+    // By DOI prefix, in pages of exactly the requested number of items.
+    page = runTestGetMetadataItems("doiPrefix", "10.3897/biorisk.8.3", 2,
+	null, credentials, HttpStatus.OK);
+    assertEquals(2, page.getItems().size());
+    assertNotNull(page.getPageInfo().getContinuationToken());
+
+    page = runTestGetMetadataItems("doiPrefix", "10.3897/biorisk.8.3", 2,
+	page.getPageInfo().getContinuationToken(), credentials, HttpStatus.OK);
+    assertEquals(1, page.getItems().size());
+    assertNull(page.getPageInfo().getContinuationToken());
+
+    // By publication name.
+    page = runTestGetMetadataItems("publication", "Genealogy", 10, null,
+	credentials, HttpStatus.OK);
+    assertEquals(1, page.getItems().size());
+    assertEquals(AUID_2, page.getItems().get(0).getAuid());
+
+    // Nothing found.
+    page = runTestGetMetadataItems("isbn", "9780000000000", 10, null,
+	credentials, HttpStatus.OK);
+    assertEquals(0, page.getItems().size());
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs a GET operation to find items across all Archival Units.
+   * 
+   * @param criterion
+   *          A String with the name of the criterion query parameter.
+   * @param value
+   *          A String with the value of the criterion.
+   * @param limit
+   *          An Integer with the maximum number of items to be returned.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return an ItemInfoPageInfo with the items found.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private ItemInfoPageInfo runTestGetMetadataItems(String criterion,
+      String value, Integer limit, String continuationToken,
+      Credentials credentials, HttpStatus expectedStatus) throws Exception {
+    UriComponentsBuilder ucb = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/metadata/items")).queryParam("limit", limit);
+
+    if (criterion != null) {
+      ucb.query(criterion + "=" + value);
+    }
+
+    if (continuationToken != null) {
+      ucb.queryParam("continuationToken", continuationToken);
+    }
+
+    URI uri = ucb.build().encode().toUri();
+    log.trace("uri = {}", () -> uri);
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.GET, new HttpEntity<String>(null, headers),
+	    String.class);
+    assertEquals(expectedStatus, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    ItemInfoPageInfo result = null;
+
+    if (isSuccess(expectedStatus)) {
+      result = new ObjectMapper().readValue(response.getBody(),
+	  ItemInfoPageInfo.class);
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Performs full-text search tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataSearch(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+    startAuIfNecessary(AUID_2);
+
+    // Search index not enabled.
+    assertNull(runTestGetMetadataSearch("GMO", 10, null, credentials,
+	HttpStatus.NOT_IMPLEMENTED));
+
+    ConfigurationUtil.addFromArgs(MetadataSearchIndex.PARAM_ENABLED, "true",
+	MetadataSearchIndex.PARAM_INDEX_DIR, getTempDirPath() + "/search");
+    searchIndex.reindexAu(AUID_1);
+    searchIndex.reindexAu(AUID_2);
+
+    // Indexing an AU again does not duplicate its items.
+    searchIndex.reindexAu(AUID_1);
+
+    // Missing and invalid queries.
+    assertNull(runTestGetMetadataSearch("", 10, null, credentials,
+	HttpStatus.BAD_REQUEST));
+    assertNull(runTestGetMetadataSearch("item_title:(", 10, null, credentials,
+	HttpStatus.BAD_REQUEST));
+
+    // Invalid and stale continuation tokens.
+    assertNull(runTestGetMetadataSearch("GMO", 10, "2", credentials,
+	HttpStatus.BAD_REQUEST));
+    assertNull(runTestGetMetadataSearch("GMO", 10, "-1:1.0", credentials,
+	HttpStatus.BAD_REQUEST));
+    assertNull(runTestGetMetadataSearch("GMO", 10,
+	Integer.MAX_VALUE + ":1.0", credentials, HttpStatus.BAD_REQUEST));
+
+    // By title, in pages.
+    List<String> dois = new ArrayList<>();
+    String continuationToken = null;
+    ItemInfoPageInfo page = null;
+
+    do {
+      page = runTestGetMetadataSearch("GMO", 2, continuationToken,
+	  credentials, HttpStatus.OK);
+      assertTrue(page.getItems().size() <= 2);
+
+      for (ItemInfo itemInfo : page.getItems()) {
+	assertEquals(AUID_1, itemInfo.getAuid());
+	assertNotNull(itemInfo.getTitle());
+	dois.add(itemInfo.getDoi());
+      }
+
+      continuationToken = page.getPageInfo().getContinuationToken();
+    } while (continuationToken != null);
+
+    assertEquals(3, dois.size());
+    assertTrue(dois.contains(ITEM_METADATA_1_1.getScalarMap().get("doi")));
+
+    // By author.
+    page = runTestGetMetadataSearch("author_name:Zueghart", 10, null,
+	credentials, HttpStatus.OK);
+    assertEquals(2, page.getItems().size());
+
+    // By publication name.
+    page = runTestGetMetadataSearch("Genealogy", 10, null, credentials,
+	HttpStatus.OK);
+    assertEquals(1, page.getItems().size());
+    assertEquals(AUID_2, page.getItems().get(0).getAuid());
+
+    // Nothing found.
+    page = runTestGetMetadataSearch("nonexistent", 10, null, credentials,
+	HttpStatus.OK);
+    assertEquals(0, page.getItems().size());
+
+    ConfigurationUtil.addFromArgs(MetadataSearchIndex.PARAM_ENABLED, "false");
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs a GET operation to search items across all Archival Units.
+   * 
+   * @param query
+   *          A String with the full-text query.
+   * @param limit
+   *          An Integer with the maximum number of items to be returned.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return an ItemInfoPageInfo with the items found.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private ItemInfoPageInfo runTestGetMetadataSearch(String query,
+      Integer limit, String continuationToken, Credentials credentials,
+      HttpStatus expectedStatus) throws Exception {
+    UriComponentsBuilder ucb = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/metadata/search")).queryParam("q", query)
+	.queryParam("limit", limit);
+
+    if (continuationToken != null) {
+      ucb.queryParam("continuationToken", continuationToken);
+    }
+
+    URI uri = ucb.build().encode().toUri();
+    log.trace("uri = {}", () -> uri);
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.GET, new HttpEntity<String>(null, headers),
+	    String.class);
+    assertEquals(expectedStatus, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    ItemInfoPageInfo result = null;
+
+    if (isSuccess(expectedStatus)) {
+      result = new ObjectMapper().readValue(response.getBody(),
+	  ItemInfoPageInfo.class);
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Performs export tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestExports(Credentials credentials) throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+    startAuIfNecessary(AUID_2);
+
+    ConfigurationUtil.addFromArgs(MetadataExporter.PARAM_EXPORT_DIR,
+	getTempDirPath() + "/exports");
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    credentials.setUpBasicAuthentication(headers);
+
+    TestRestTemplate template =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0));
+
+    URI uri = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/exports")).build().encode().toUri();
+
+    // No AUs.
+    ResponseEntity<String> response = template.exchange(uri, HttpMethod.POST,
+	new HttpEntity<ExportSpec>(new ExportSpec(), headers), String.class);
+    assertEquals(HttpStatus.BAD_REQUEST, HttpStatus.valueOf(response
+	.getStatusCode().value()));
+
+    // Unknown export.
+    assertNull(getExport("unknown", credentials, HttpStatus.NOT_FOUND));
+
+    // Unsupported format.
+    ExportSpec spec = new ExportSpec();
+    spec.setAuids(ListUtil.list(AUID_1));
+    spec.setFormat("parquet");
+
+    response = template.exchange(uri, HttpMethod.POST,
+	new HttpEntity<ExportSpec>(spec, headers), String.class);
+    assertEquals(HttpStatus.BAD_REQUEST, HttpStatus.valueOf(response
+	.getStatusCode().value()));
+
+    // Export as CSV some columns of all the items of two AUs and an unknown
+    // one.
+    spec = new ExportSpec();
+    spec.setAuids(ListUtil.list(AUID_1, UNKNOWN_AUID, AUID_2));
+    spec.setColumns(ListUtil.list("au_id", "doi", "item_title",
+	"author_name", "issn.p_issn"));
+    spec.setFormat(MetadataExporter.FORMAT_CSV);
+
+    response = template.exchange(uri, HttpMethod.POST,
+	new HttpEntity<ExportSpec>(spec, headers), String.class);
+    assertEquals(HttpStatus.ACCEPTED, HttpStatus.valueOf(response
+	.getStatusCode().value()));
+
+    Export export =
+	new ObjectMapper().readValue(response.getBody(), Export.class);
+    assertEquals(spec.getAuids(), export.getAuids());
+    assertEquals(spec.getColumns(), export.getColumns());
+    assertEquals(MetadataExporter.FORMAT_CSV, export.getFormat());
+
+    // Wait for the export to finish.
+    for (int i = 0; i < 100; i++) {
+      export = getExport(export.getId(), credentials, HttpStatus.OK);
+
+      if (!MetadataExporter.STATUS_QUEUED.equals(export.getStatus())
+	  && !MetadataExporter.STATUS_RUNNING.equals(export.getStatus())) {
+	break;
+      }
+
+      Thread.sleep(100);
+    }
+
+    assertEquals(MetadataExporter.STATUS_DONE, export.getStatus());
+    assertEquals(AU_1_MD.size() + AU_2_MD.size(),
+	export.getItemCount().intValue());
+    assertEquals(ListUtil.list(UNKNOWN_AUID), export.getNotFound());
+
+    // The export is listed.
+    response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertTrue(response.getBody().contains(export.getId()));
+
+    // The file.
+    URI fileUri = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/exports/{exportid}/file"))
+	.build().expand(export.getId()).encode().toUri();
+
+    ResponseEntity<byte[]> fileResponse = template.exchange(fileUri,
+	HttpMethod.GET, new HttpEntity<String>(null, headers), byte[].class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(fileResponse
+	.getStatusCode().value()));
+    assertTrue(ExportsApiServiceImpl.APPLICATION_GZIP.equalsTypeAndSubtype(
+	fileResponse.getHeaders().getContentType()));
+
+    List<String> lines = new ArrayList<>();
+
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+	new GZIPInputStream(new ByteArrayInputStream(fileResponse.getBody())),
+	StandardCharsets.UTF_8))) {
+      String line;
+
+      while ((line = reader.readLine()) != null) {
+	lines.add(line);
+      }
+    }
+
+    assertEquals(1 + AU_1_MD.size() + AU_2_MD.size(), lines.size());
+    assertEquals("au_id,doi,item_title,author_name,issn.p_issn", lines.get(0));
+    assertTrue(lines.get(1).contains(
+	ITEM_METADATA_1_1.getScalarMap().get("doi")));
+    assertTrue(lines.get(1).contains("Josef Settele; Wiebke Zueghart"));
+    assertTrue(lines.get(1).endsWith(",13132652"));
+
+    // A purge keeps the unexpired export but deletes an orphaned file.
+    File orphan = new File(getTempDirPath() + "/exports/orphan.csv.gz.tmp");
+    assertTrue(orphan.createNewFile());
+    exporter.purge();
+    assertFalse(orphan.exists());
+    assertEquals(MetadataExporter.STATUS_DONE,
+	getExport(export.getId(), credentials, HttpStatus.OK).getStatus());
+
+    // Delete the export.
+    URI exportUri = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/exports/{exportid}"))
+	.build().expand(export.getId()).encode().toUri();
+
+    response = template.exchange(exportUri, HttpMethod.DELETE,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertNull(getExport(export.getId(), credentials, HttpStatus.NOT_FOUND));
+
+    fileResponse = template.exchange(fileUri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), byte[].class);
+    assertEquals(HttpStatus.NOT_FOUND, HttpStatus.valueOf(fileResponse
+	.getStatusCode().value()));
+
+    // Export in the default Arrow format.
+    String id = exporter.submit(ListUtil.list(AUID_1, AUID_2),
+	ListUtil.list("doi", "author_name", "issn.e_issn"), null).getId();
+
+    for (int i = 0; i < 100; i++) {
+      if (MetadataExporter.STATUS_DONE.equals(exporter.getExport(id)
+	  .getStatus())) {
+	break;
+      }
+
+      Thread.sleep(100);
+    }
+
+    assertEquals(MetadataExporter.FORMAT_ARROW,
+	exporter.getExport(id).getFormat());
+
+    fileUri = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/exports/{exportid}/file"))
+	.build().expand(id).encode().toUri();
+
+    fileResponse = template.exchange(fileUri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), byte[].class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(fileResponse
+	.getStatusCode().value()));
+    assertTrue(ExportsApiServiceImpl.APPLICATION_ARROW_FILE
+	.equalsTypeAndSubtype(fileResponse.getHeaders().getContentType()));
+
+    List<String> dois = new ArrayList<>();
+    List<String> eIssns = new ArrayList<>();
+
+    try (BufferAllocator allocator = new RootAllocator();
+	ArrowFileReader reader = new ArrowFileReader(
+	    new ByteArrayReadableSeekableByteChannel(fileResponse.getBody()),
+	    allocator, CommonsCompressionFactory.INSTANCE)) {
+      VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      assertEquals(ListUtil.list("doi", "author_name", "issn.e_issn"),
+	  ListUtil.list(root.getSchema().getFields().get(0).getName(),
+	      root.getSchema().getFields().get(1).getName(),
+	      root.getSchema().getFields().get(2).getName()));
+
+      while (reader.loadNextBatch()) {
+	VarCharVector doiVector = (VarCharVector)root.getVector("doi");
+	VarCharVector eIssnVector =
+	    (VarCharVector)root.getVector("issn.e_issn");
+
+	for (int row = 0; row < root.getRowCount(); row++) {
+	  dois.add(doiVector.isNull(row) ? null
+	      : doiVector.getObject(row).toString());
+	  eIssns.add(eIssnVector.isNull(row) ? null
+	      : eIssnVector.getObject(row).toString());
+	}
+      }
+    }
+
+    assertEquals(AU_1_MD.size() + AU_2_MD.size(), dois.size());
+    assertEquals(ITEM_METADATA_1_1.getScalarMap().get("doi"), dois.get(0));
+    assertEquals(ITEM_METADATA_1_1.getMapMap().get("issn").get("e_issn"),
+	eIssns.get(0));
+    assertEquals(ITEM_METADATA_2_1.getMapMap().get("issn").get("e_issn"),
+	eIssns.get(AU_1_MD.size()));
+
+    // A finished export expires with its file.
+    File file = exporter.getExportFile(id);
+    assertTrue(file.exists());
+
+    ConfigurationUtil.addFromArgs(MetadataExporter.PARAM_RETENTION, "0");
+    exporter.purge();
+    assertNull(getExport(id, credentials, HttpStatus.NOT_FOUND));
+    assertFalse(file.exists());
+
+    ConfigurationUtil.addFromArgs(MetadataExporter.PARAM_RETENTION,
+	String.valueOf(MetadataExporter.DEFAULT_RETENTION));
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs a GET operation for an export.
+   * 
+   * @param exportid
+   *          A String with the export identifier.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return an Export with the export.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private Export getExport(String exportid, Credentials credentials,
+      HttpStatus expectedStatus) throws Exception {
+    URI uri = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/exports/{exportid}"))
+	.build().expand(exportid).encode().toUri();
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.GET, new HttpEntity<String>(null, headers),
+	    String.class);
+    assertEquals(expectedStatus, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    Export result = null;
+
+    if (isSuccess(expectedStatus)) {
+      result = new ObjectMapper().readValue(response.getBody(), Export.class);
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Performs batch metadata update tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestPostMdupdatesBatch(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    Map<String, String> unknownAuSpec = new HashMap<>();
+    unknownAuSpec.put("auid", UNKNOWN_AUID);
+    unknownAuSpec.put("updateType", "delete");
+
+    Map<String, String> noUpdateTypeSpec = new HashMap<>();
+    noUpdateTypeSpec.put("auid", AUID_2);
+    noUpdateTypeSpec.put("updateType", "");
+
+    // Not allowed.
+    runTestPostMdupdatesBatch(ListUtil.list(unknownAuSpec), false,
+	ACCESS_CONTENT, HttpStatus.FORBIDDEN);
+
+    // No specifications.
+    assertEquals(0, runTestPostMdupdatesBatch(new ArrayList<Object>(), false,
+	credentials, HttpStatus.OK).size());
+
+    // Null specification.
+    runTestPostMdupdatesBatch(ListUtil.list(unknownAuSpec, null), false,
+	credentials, HttpStatus.BAD_REQUEST);
+
+    // Too many specifications.
+    ConfigurationUtil.addFromArgs(MdupdatesApiServiceImpl.PARAM_MAX_BATCH_SIZE,
+	"1");
+    runTestPostMdupdatesBatch(ListUtil.list(unknownAuSpec, noUpdateTypeSpec),
+	false, credentials, HttpStatus.BAD_REQUEST);
+    ConfigurationUtil.addFromArgs(MdupdatesApiServiceImpl.PARAM_MAX_BATCH_SIZE,
+	"10000");
+
+    List<?> specs =
+	ListUtil.list(unknownAuSpec, unknownAuSpec, noUpdateTypeSpec);
+
+    // Check whether metadata extraction is not enabled.
+    if (!LockssApp.getManagerByTypeStatic(MetadataExtractorManager.class)
+	.isIndexingEnabled()) {
+      // Yes: The whole batch is rejected.
+      runTestPostMdupdatesBatch(specs, false, credentials,
+	  HttpStatus.CONFLICT);
+
+      // With or without the force indication.
+      runTestPostMdupdatesBatch(specs, null, credentials,
+	  HttpStatus.CONFLICT);
+    } else {
+      // No: Each specification has its own result.
+      List<Map<String, Object>> results =
+	  runTestPostMdupdatesBatch(specs, false, credentials, HttpStatus.OK);
+      assertEquals(3, results.size());
+
+      assertEquals(UNKNOWN_AUID, results.get(0).get("auid"));
+      assertEquals(HttpStatus.NOT_FOUND.value(), results.get(0).get("status"));
+      assertNull(results.get(0).get("job"));
+
+      // Duplicate AU.
+      assertEquals(UNKNOWN_AUID, results.get(1).get("auid"));
+      assertEquals(HttpStatus.BAD_REQUEST.value(),
+	  results.get(1).get("status"));
+
+      assertEquals(AUID_2, results.get(2).get("auid"));
+      assertEquals(HttpStatus.BAD_REQUEST.value(),
+	  results.get(2).get("status"));
+      assertNotNull(results.get(2).get("message"));
+    }
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs a POST operation for multiple metadata updates.
+   *
+   * @param specs
+   *          A {@code List<?>} with the metadata update specifications.
+   * @param force
+   *          A Boolean with the indication of whether to force the operations,
+   *          or null to leave it out of the request.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return a {@code List<Map<String, Object>>} with the results of the
+   *         operations.
+   */
+  private List<Map<String, Object>> runTestPostMdupdatesBatch(List<?> specs,
+      Boolean force, Credentials credentials, HttpStatus expectedStatus) {
+    log.debug2("specs = {}", () -> specs);
+    log.debug2("force = {}", () -> force);
+
+    UriComponentsBuilder ucb = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/mdupdates/batch"));
+
+    if (force != null) {
+      ucb.queryParam("force", force);
+    }
+
+    URI uri = ucb.build().encode().toUri();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+
+    if (credentials != null) {
+      credentials.setUpBasicAuthentication(headers);
+    }
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.POST, new HttpEntity<List<?>>(specs, headers),
+	    String.class);
+    assertEquals(expectedStatus, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    List<Map<String, Object>> result = null;
+
+    if (isSuccess(expectedStatus)) {
+      try {
+	result = new ObjectMapper().readValue(response.getBody(),
+	    new TypeReference<List<Map<String, Object>>>() {});
+      } catch (IOException ioe) {
+	fail("Cannot parse response: " + ioe);
+      }
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
+  /**
+   * Performs tests of requests for the metadata of multiple AUs.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestPostMetadataAus(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+    startAuIfNecessary(AUID_2);
+
+    URI uri = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/metadata/aus")).build().encode().toUri();
+
+    List<String> auids =
+	ListUtil.list(AUID_1, UNKNOWN_AUID, AUID_2, AUID_1);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    credentials.setUpBasicAuthentication(headers);
+
+    TestRestTemplate template =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0));
+
+    // No AUs.
+    ResponseEntity<String> response = template.exchange(uri, HttpMethod.POST,
+	new HttpEntity<List<String>>(new ArrayList<String>(), headers),
+	String.class);
+    assertEquals(HttpStatus.BAD_REQUEST, HttpStatus.valueOf(response
+	.getStatusCode().value()));
+
+    // The first page of each AU.
+    response = template.exchange(uri, HttpMethod.POST,
+	new HttpEntity<List<String>>(auids, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    AusMetadataPageInfo ausmpi = new ObjectMapper()
+	.readValue(response.getBody(), AusMetadataPageInfo.class);
+    assertEquals(2, ausmpi.getAus().size());
+    verifyMetadata(AU_1_MD, null, ausmpi.getAus().get(AUID_1));
+    verifyMetadata(AU_2_MD, null, ausmpi.getAus().get(AUID_2));
+    assertEquals(ListUtil.list(UNKNOWN_AUID), ausmpi.getNotFound());
+
+    // All the items of all the AUs, streamed.
+    headers.setAccept(ListUtil.list(MediaType.APPLICATION_NDJSON));
+    response = template.exchange(uri, HttpMethod.POST,
+	new HttpEntity<List<String>>(auids, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertTrue(MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(
+	response.getHeaders().getContentType()));
+
+    List<ItemMetadata> items = new ArrayList<>();
+
+    for (String line : response.getBody().split("\n")) {
+      if (!line.isEmpty()) {
+	items.add(new ObjectMapper().readValue(line, ItemMetadata.class));
+      }
+    }
+
+    List<ItemMetadata> expectedItems = new ArrayList<>(AU_1_MD);
+    expectedItems.addAll(AU_2_MD);
+    verifyStreamedMetadata(expectedItems, items);
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs streaming tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataAusAuidStreaming(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    // Not found.
+    runTestGetMetadataAusAuidStream(UNKNOWN_AUID, null, credentials,
+	HttpStatus.NOT_FOUND);
+
+    // All the items.
+    verifyStreamedMetadata(AU_1_MD, runTestGetMetadataAusAuidStream(AUID_1,
+	null, credentials, HttpStatus.OK));
+    verifyStreamedMetadata(AU_2_MD, runTestGetMetadataAusAuidStream(AUID_2,
+	null, credentials, HttpStatus.OK));
+
+    // The items after the first two.
+    AuMetadataPageInfo aumpi = runTestGetMetadataAusAuid(AUID_1, 2, null,
+	credentials, HttpStatus.OK);
 
-    // Pagination.
-    runTestGetMetadataAusAuidPagination(USER_ADMIN);
-    runTestGetMetadataAusAuidPagination(AU_ADMIN);
-    runTestGetMetadataAusAuidPagination(ACCESS_CONTENT);
+    verifyStreamedMetadata(ListUtil.list(ITEM_METADATA_1_3, ITEM_METADATA_1_4,
+	ITEM_METADATA_1_5), runTestGetMetadataAusAuidStream(AUID_1,
+	    aumpi.getPageInfo().getContinuationToken(), credentials,
+	    HttpStatus.OK));
 
     log.debug2("Done");
   }
@@ -529,6 +1787,16 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
     runTestGetMetadataAusAuid(AUID_1, requestCount, continuationToken,
 	credentials, HttpStatus.CONFLICT);
 
+    // Resume the pagination after the first item with an incorrect Archival
+    // Unit metadata extraction timestamp, as if the Archival Unit had been
+    // reindexed since the pagination started.
+    continuationToken = new ItemMetadataContinuationToken(
+	auExtractionTimestamp - 1000000L, 2L).toWebResponseContinuationToken();
+    expectedImct = new ItemMetadataContinuationToken(auExtractionTimestamp, 3L);
+    verifyMetadata(ListUtil.list(ITEM_METADATA_1_2), expectedImct,
+	runTestGetMetadataAusAuid(AUID_1, requestCount, continuationToken,
+	    Boolean.TRUE, credentials, HttpStatus.OK));
+
     log.debug2("Done");
   }
 
@@ -554,9 +1822,39 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
   private AuMetadataPageInfo runTestGetMetadataAusAuid(String auId,
       Integer limit, String continuationToken, Credentials credentials,
       HttpStatus expectedStatus) throws Exception {
+    return runTestGetMetadataAusAuid(auId, limit, continuationToken, null,
+	credentials, expectedStatus);
+  }
+
+  /**
+   * Performs a GET operation for the metadata of an Archival Unit.
+   * 
+   * @param auId
+   *          A String with the identifier of the Archival Unit.
+   * @param limit
+   *          An Integer with the maximum number of AU metadata items to be
+   *          returned.
+   * @param continuationToken
+   *          An ItemMetadataContinuationToken with the continuation token of
+   *          the next page of metadata to be returned.
+   * @param resumeOnReindex
+   *          A Boolean with the indication of whether to resume a pagination
+   *          interrupted by the reindexing of the Archival Unit.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return an AuMetadataPageInfo with the Archival Unit metadata.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private AuMetadataPageInfo runTestGetMetadataAusAuid(String auId,
+      Integer limit, String continuationToken, Boolean resumeOnReindex,
+      Credentials credentials, HttpStatus expectedStatus) throws Exception {
     log.debug2("auId = {}", () -> auId);
     log.debug2("limit = {}", () -> limit);
     log.debug2("continuationToken = {}", () -> continuationToken);
+    log.debug2("resumeOnReindex = {}", () -> resumeOnReindex);
     log.debug2("credentials = {}", () -> credentials);
     log.debug2("expectedStatus = {}", () -> expectedStatus);
 
@@ -580,6 +1878,10 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
       ucb.queryParam("continuationToken", continuationToken);
     }
 
+    if (resumeOnReindex != null) {
+      ucb.queryParam("resumeOnReindex", resumeOnReindex);
+    }
+
     URI uri = ucb.build().encode().toUri();
     log.trace("uri = {}", () -> uri);
 
@@ -636,6 +1938,479 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
     return result;
   }
 
+  /**
+   * Performs conditional request tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataAusAuidConditional(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+
+    // Get the entity tag of the first page.
+    URI uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", AUID_1)))
+	.queryParam("limit", 2).build().encode().toUri();
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    TestRestTemplate template =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0));
+
+    ResponseEntity<String> response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    String etag = response.getHeaders().getETag();
+    assertNotNull(etag);
+
+    // The metadata has not changed.
+    headers.setIfNoneMatch(etag);
+    response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.NOT_MODIFIED, HttpStatus.valueOf(response
+	.getStatusCode().value()));
+    assertEquals(etag, response.getHeaders().getETag());
+    assertNull(response.getBody());
+
+    // A different entity tag.
+    headers.setIfNoneMatch("\"0-json\"");
+    response = template.exchange(uri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertEquals(etag, response.getHeaders().getETag());
+
+    // The entity tag of a later page is that of the same extraction.
+    AuMetadataPageInfo firstPage = new ObjectMapper().readValue(
+	response.getBody(), AuMetadataPageInfo.class);
+    String token = firstPage.getPageInfo().getContinuationToken();
+    assertNotNull(token);
+    assertTrue(etag.startsWith("\"" + Long.toHexString(
+	new ItemMetadataContinuationToken(token).getAuExtractionTimestamp())
+	+ "-"));
+
+    URI nextUri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", AUID_1)))
+	.queryParam("limit", 2).queryParam("continuationToken", token).build()
+	.encode().toUri();
+
+    headers.setIfNoneMatch("\"0-json\"");
+    response = template.exchange(nextUri, HttpMethod.GET,
+	new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+    assertEquals(etag, response.getHeaders().getETag());
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs page cache tests.
+   * 
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestAuMetadataPageCache() throws Exception {
+    log.debug2("Invoked");
+
+    startAuIfNecessary(AUID_1);
+
+    MetadataQueryManager mqm =
+	LockssApp.getManagerByTypeStatic(MetadataQueryManager.class);
+
+    // Get the three pages of the first AU.
+    ItemMetadataPage page1 = mqm.getAuMetadataDetail(AUID_1, 2,
+	new ItemMetadataContinuationToken((String)null));
+    String token2 = page1.getContinuationToken()
+	.toWebResponseContinuationToken();
+    ItemMetadataPage page2 =
+	mqm.getAuMetadataDetail(AUID_1, 2, page1.getContinuationToken());
+    String token3 = page2.getContinuationToken()
+	.toWebResponseContinuationToken();
+    ItemMetadataPage page3 =
+	mqm.getAuMetadataDetail(AUID_1, 2, page2.getContinuationToken());
+    assertNull(page3.getContinuationToken());
+
+    long extractionTime =
+	page1.getContinuationToken().getAuExtractionTimestamp().longValue();
+
+    pageCache.invalidate(AUID_1);
+
+    // Hit.
+    pageCache.put(AUID_1, extractionTime, 2, null, page1,
+	pageCache.getGeneration());
+    assertSame(page1, pageCache.get(AUID_1, extractionTime, 2, null));
+
+    // Miss for another page size or another extraction of the AU.
+    assertNull(pageCache.get(AUID_1, extractionTime, 3, null));
+    assertNull(pageCache.get(AUID_1, extractionTime + 1, 2, null));
+
+    // Miss after a job for the AU finishes.
+    jobMonitor.notifyAuMetadataChanged(AUID_1);
+    assertNull(pageCache.get(AUID_1, extractionTime, 2, null));
+
+    // A page fetched before the job finished is not cached.
+    long generation = pageCache.getGeneration();
+    jobMonitor.notifyAuMetadataChanged(AUID_1);
+    pageCache.put(AUID_1, extractionTime, 2, null, page1, generation);
+    assertNull(pageCache.get(AUID_1, extractionTime, 2, null));
+
+    // The extraction time of the AU is cached by a request, and discarded
+    // when a job for the AU finishes.
+    assertNull(pageCache.getExtractionTime(AUID_1));
+    runTestGetMetadataAusAuid(AUID_1, 2, null, ACCESS_CONTENT, HttpStatus.OK);
+    assertEquals(Long.valueOf(extractionTime),
+	pageCache.getExtractionTime(AUID_1));
+
+    generation = pageCache.getGeneration();
+    jobMonitor.notifyAuMetadataChanged(AUID_1);
+    assertNull(pageCache.getExtractionTime(AUID_1));
+
+    // An extraction time read before the job finished is not cached.
+    pageCache.putExtractionTime(AUID_1, extractionTime, generation);
+    assertNull(pageCache.getExtractionTime(AUID_1));
+
+    // The least recently used page is evicted when the number of pages
+    // exceeds the maximum.
+    ConfigurationUtil.addFromArgs(AuMetadataPageCache.PARAM_MAX_PAGES, "2",
+	AuMetadataPageCache.PARAM_MAX_ITEMS, "100");
+    pageCache.put(AUID_1, extractionTime, 2, null, page1,
+	pageCache.getGeneration());
+    pageCache.put(AUID_1, extractionTime, 2, token2, page2,
+	pageCache.getGeneration());
+    assertSame(page1, pageCache.get(AUID_1, extractionTime, 2, null));
+    pageCache.put(AUID_1, extractionTime, 2, token3, page3,
+	pageCache.getGeneration());
+    assertSame(page1, pageCache.get(AUID_1, extractionTime, 2, null));
+    assertNull(pageCache.get(AUID_1, extractionTime, 2, token2));
+    assertSame(page3, pageCache.get(AUID_1, extractionTime, 2, token3));
+
+    // The least recently used pages are evicted when the number of items
+    // exceeds the maximum.
+    pageCache.invalidate(AUID_1);
+    ConfigurationUtil.addFromArgs(AuMetadataPageCache.PARAM_MAX_PAGES, "100",
+	AuMetadataPageCache.PARAM_MAX_ITEMS, "4");
+    pageCache.put(AUID_1, extractionTime, 2, null, page1,
+	pageCache.getGeneration());
+    pageCache.put(AUID_1, extractionTime, 2, token2, page2,
+	pageCache.getGeneration());
+    pageCache.put(AUID_1, extractionTime, 2, token3, page3,
+	pageCache.getGeneration());
+    assertNull(pageCache.get(AUID_1, extractionTime, 2, null));
+    assertSame(page2, pageCache.get(AUID_1, extractionTime, 2, token2));
+    assertSame(page3, pageCache.get(AUID_1, extractionTime, 2, token3));
+
+    // A page with more items than the maximum is not cached.
+    pageCache.invalidate(AUID_1);
+    ConfigurationUtil.addFromArgs(AuMetadataPageCache.PARAM_MAX_ITEMS, "1");
+    pageCache.put(AUID_1, extractionTime, 2, null, page1,
+	pageCache.getGeneration());
+    assertNull(pageCache.get(AUID_1, extractionTime, 2, null));
+
+    ConfigurationUtil.addFromArgs(AuMetadataPageCache.PARAM_MAX_PAGES,
+	String.valueOf(AuMetadataPageCache.DEFAULT_MAX_PAGES),
+	AuMetadataPageCache.PARAM_MAX_ITEMS,
+	String.valueOf(AuMetadataPageCache.DEFAULT_MAX_ITEMS));
+    pageCache.invalidate(AUID_1);
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs tests of the prefetching of pages with the page cache enabled.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestAuMetadataPrefetch(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+    pageCache.invalidate(AUID_1);
+    prefetcher.invalidate(AUID_1);
+    ConfigurationUtil.addFromArgs(AuMetadataPrefetcher.PARAM_ENABLED, "true");
+
+    // Get the first page, which prefetches the second one.
+    AuMetadataPageInfo firstPage =
+	getAuMetadataPage(AUID_1, 2, null, credentials);
+    assertEquals(2, firstPage.getItems().size());
+
+    String token = firstPage.getPageInfo().getContinuationToken();
+    long extractionTime =
+	new ItemMetadataContinuationToken(token).getAuExtractionTimestamp();
+
+    // Wait for the second page to be prefetched.
+    for (int i = 0; i < 200
+	&& !prefetcher.isFetched(AUID_1, extractionTime, 2, token); i++) {
+      Thread.sleep(50);
+    }
+
+    assertTrue(prefetcher.isFetched(AUID_1, extractionTime, 2, token));
+    long hitCount = prefetcher.getHitCount();
+
+    // The second page is the prefetched one.
+    AuMetadataPageInfo secondPage =
+	getAuMetadataPage(AUID_1, 2, token, credentials);
+    assertEquals(hitCount + 1, prefetcher.getHitCount());
+    assertFalse(prefetcher.isHeld(AUID_1, extractionTime, 2, token));
+    assertEquals(2, secondPage.getItems().size());
+    assertEquals(AU_1_MD.get(2).getScalarMap().get("doi"),
+	secondPage.getItems().get(0).getScalarMap().get("doi"));
+
+    // The second page is now cached, so getting the first page again does not
+    // prefetch it.
+    assertTrue(pageCache.contains(AUID_1, extractionTime, 2, token));
+    getAuMetadataPage(AUID_1, 2, null, credentials);
+    assertFalse(prefetcher.isHeld(AUID_1, extractionTime, 2, token));
+
+    ConfigurationUtil.addFromArgs(AuMetadataPrefetcher.PARAM_ENABLED,
+	"false");
+    pageCache.invalidate(AUID_1);
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Provides a page of the metadata of an AU.
+   * 
+   * @param auid
+   *          A String with the AU identifier.
+   * @param limit
+   *          An int with the maximum number of items in the page.
+   * @param continuationToken
+   *          A String with the continuation token of the page.
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @return an AuMetadataPageInfo with the page.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private AuMetadataPageInfo getAuMetadataPage(String auid, int limit,
+      String continuationToken, Credentials credentials) throws Exception {
+    UriComponentsBuilder ucb = UriComponentsBuilder.newInstance()
+	.uriComponents(UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", auid)))
+	.queryParam("limit", limit);
+
+    if (continuationToken != null) {
+      ucb.queryParam("continuationToken", continuationToken);
+    }
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(ucb.build().encode().toUri(), HttpMethod.GET,
+	    new HttpEntity<String>(null, headers), String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    return new ObjectMapper().readValue(response.getBody(),
+	AuMetadataPageInfo.class);
+  }
+
+  /**
+   * Performs field projection tests.
+   * 
+   * @param credentials
+   *          A Credential with the request username/password.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private void runTestGetMetadataAusAuidProjection(Credentials credentials)
+      throws Exception {
+    log.debug2("credentials = {}", () -> credentials);
+
+    startAuIfNecessary(AUID_1);
+
+    URI uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", AUID_1)))
+	.queryParam("fields", "doi,item_title,url.Access").build().encode()
+	.toUri();
+
+    HttpHeaders headers = new HttpHeaders();
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.GET, new HttpEntity<String>(null, headers),
+	    String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    AuMetadataPageInfo aumpi = new ObjectMapper().readValue(response.getBody(),
+	AuMetadataPageInfo.class);
+    assertEquals(AU_1_MD.size(), aumpi.getItems().size());
+    assertTrue(aumpi.getPageInfo().getCurLink()
+	.contains("fields=doi,item_title,url.Access"));
+
+    for (int i = 0; i < AU_1_MD.size(); i++) {
+      ItemMetadata expected = AU_1_MD.get(i);
+      ItemMetadata item = aumpi.getItems().get(i);
+
+      assertEquals(2, item.getScalarMap().size());
+      assertEquals(expected.getScalarMap().get("doi"),
+	  item.getScalarMap().get("doi"));
+      assertEquals(expected.getScalarMap().get("item_title"),
+	  item.getScalarMap().get("item_title"));
+      assertTrue(item.getListMap() == null || item.getListMap().isEmpty());
+      assertEquals(1, item.getMapMap().size());
+      assertEquals(Collections.singletonMap("Access",
+	  expected.getMapMap().get("url").get("Access")),
+	  item.getMapMap().get("url"));
+    }
+
+    // Field names that need encoding are encoded in the page links.
+    uri = UriComponentsBuilder.newInstance().uriComponents(
+	UriComponentsBuilder.fromUriString(
+	    getTestUrlTemplate("/metadata/aus/{auid}")).build()
+	.expand(Collections.singletonMap("auid", AUID_1)))
+	.queryParam("fields", "doi,url.Full Text&PDF").build().encode()
+	.toUri();
+
+    response = new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.GET, new HttpEntity<String>(null, headers),
+	    String.class);
+    assertEquals(HttpStatus.OK, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    aumpi = new ObjectMapper().readValue(response.getBody(),
+	AuMetadataPageInfo.class);
+    assertTrue(aumpi.getPageInfo().getCurLink()
+	.contains("fields=doi,url.Full%20Text%26PDF"));
+
+    log.debug2("Done");
+  }
+
+  /**
+   * Performs a GET operation for the metadata of an Archival Unit streamed as
+   * newline-delimited JSON.
+   * 
+   * @param auId
+   *          A String with the identifier of the Archival Unit.
+   * @param continuationToken
+   *          A String with the continuation token after which to start
+   *          streaming.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return a List<ItemMetadata> with the streamed Archival Unit metadata.
+   * @throws Exception
+   *           if there are problems.
+   */
+  private List<ItemMetadata> runTestGetMetadataAusAuidStream(String auId,
+      String continuationToken, Credentials credentials,
+      HttpStatus expectedStatus) throws Exception {
+    log.debug2("auId = {}", () -> auId);
+    log.debug2("continuationToken = {}", () -> continuationToken);
+    log.debug2("credentials = {}", () -> credentials);
+    log.debug2("expectedStatus = {}", () -> expectedStatus);
+
+    startAuIfNecessary(auId);
+
+    // Get the test URL template.
+    String template = getTestUrlTemplate("/metadata/aus/{auid}");
+
+    // Create the URI of the request to the REST service.
+    UriComponents uriComponents = UriComponentsBuilder.fromUriString(template)
+	.build().expand(Collections.singletonMap("auid", auId));
+
+    UriComponentsBuilder ucb =
+	UriComponentsBuilder.newInstance().uriComponents(uriComponents);
+
+    if (continuationToken != null) {
+      ucb.queryParam("continuationToken", continuationToken);
+    }
+
+    URI uri = ucb.build().encode().toUri();
+    log.trace("uri = {}", () -> uri);
+
+    // Initialize the request to the REST service.
+    RestTemplateBuilder templateBuilder = RestUtil.getRestTemplateBuilder(0, 0);
+
+    // Initialize the request headers.
+    HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(ListUtil.list(MediaType.APPLICATION_NDJSON));
+
+    // Set up the authentication credentials, if necessary.
+    if (credentials != null) {
+      credentials.setUpBasicAuthentication(headers);
+    }
+
+    log.trace("requestHeaders = {}", () -> headers.toSingleValueMap());
+
+    // Make the request and get the response. 
+    ResponseEntity<String> response =
+	new TestRestTemplate(templateBuilder).exchange(uri, HttpMethod.GET,
+	    new HttpEntity<String>(null, headers), String.class);
+
+    // Get the response status.
+    HttpStatusCode statusCode = response.getStatusCode();
+    HttpStatus status = HttpStatus.valueOf(statusCode.value());
+    assertEquals(expectedStatus, status);
+
+    List<ItemMetadata> result = new ArrayList<>();
+
+    if (isSuccess(status)) {
+      assertTrue(MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(
+	  response.getHeaders().getContentType()));
+
+      if (response.getBody() != null) {
+	for (String line : response.getBody().split("\n")) {
+	  if (!line.isEmpty()) {
+	    result.add(new ObjectMapper().readValue(line, ItemMetadata.class));
+	  }
+	}
+      }
+    }
+
+    log.debug2("result = {}", () -> result);
+    return result;
+  }
+
+  /**
+   * Verifies that the passed streamed metadata matches the expected items.
+   * 
+   * @param expectedItems
+   *          A List<ItemMetadata> with the expected items to found.
+   * @param items
+   *          A List<ItemMetadata> with the streamed items to be verified.
+   */
+  private void verifyStreamedMetadata(List<ItemMetadata> expectedItems,
+      List<ItemMetadata> items) {
+    log.debug2("expectedItems = {}", () -> expectedItems);
+    log.debug2("items = {}", () -> items);
+
+    assertEquals(expectedItems.size(), items.size());
+
+    for (int i = 0; i < expectedItems.size(); i++) {
+      expectedItems.get(i).setId(items.get(i).getId());
+      assertEquals(expectedItems.get(i), items.get(i));
+    }
+
+    log.debug2("Done");
+  }
+
   /**
    * Provides an indication of whether a successful response has been obtained.
    * 
@@ -695,8 +2470,11 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
 
   /**
    * Runs the getUrlsDoi()-related authenticated-specific tests.
+   *
+   * @throws Exception
+   *           if there are problems.
    */
-  private void getUrlsDoiAuthenticatedTest() {
+  private void getUrlsDoiAuthenticatedTest() throws Exception {
     log.debug2("Invoked");
 
     // No DOI.
@@ -726,8 +2504,11 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
 
   /**
    * Runs the getUrlsDoi()-related authentication-independent tests.
+   *
+   * @throws Exception
+   *           if there are problems.
    */
-  private void getUrlsDoiCommonTest() {
+  private void getUrlsDoiCommonTest() throws Exception {
     log.debug2("Invoked");
 
     // No DOI.
@@ -751,6 +2532,308 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
 
     runTestGetUrlsDoi(doi, ACCESS_CONTENT, HttpStatus.OK, expectedUrl);
 
+    // Both found and unknown DOIs are cached.
+    assertEquals(ListUtil.list(expectedUrl), resolutionCache.get(
+	new OpenUrlKey(Collections.singletonMap("rft_id", "info:doi/" + doi))));
+    assertEquals(0, resolutionCache.get(new OpenUrlKey(
+	Collections.singletonMap("rft_id", "info:doi/" + UNKNOWN_DOI))).size());
+
+    // Equivalent queries share their cached results.
+    assertEquals(ListUtil.list(expectedUrl), resolutionCache.get(
+	new OpenUrlKey(Collections.singletonMap("DOI", doi.toUpperCase()))));
+
+    Map<String, String> query = new HashMap<>();
+    query.put("id", "doi:" + doi);
+    query.put("ctx_tim", "2024-01-01T00:00:00Z");
+    assertEquals(new OpenUrlKey(
+	Collections.singletonMap("rft_id", "info:doi/" + doi)),
+	new OpenUrlKey(query));
+
+    query = new HashMap<>();
+    query.put("issn", "1313-2652");
+    query.put("volume", "8");
+    Map<String, String> query2 = new HashMap<>();
+    query2.put("rft.issn", "13132652");
+    query2.put("rft.volume", "8");
+    assertEquals(new OpenUrlKey(query2), new OpenUrlKey(query));
+
+    // A DOI does not replace another identifier, nor another DOI.
+    Map<String, String> query3 = new HashMap<>();
+    query3.put("rft_id", "http://www.example.com/article");
+    query3.put("rft.doi", doi);
+    Map<String, String> doiQuery =
+	Collections.singletonMap("rft_id", "info:doi/" + doi);
+    assertFalse(new OpenUrlKey(doiQuery).equals(new OpenUrlKey(query3)));
+    assertEquals("http://www.example.com/article",
+	new OpenUrlKey(query3).getParams().get(OpenUrlKey.OTHER_ID_PARAM));
+
+    query3.put("rft_id", "info:doi/" + UNKNOWN_DOI);
+    assertFalse(new OpenUrlKey(doiQuery).equals(new OpenUrlKey(query3)));
+    assertEquals(2, new OpenUrlKey(query3).getParams().size());
+
+    query3.put("rft.doi", UNKNOWN_DOI.toUpperCase());
+    assertEquals(new OpenUrlKey(Collections.singletonMap("rft_id",
+	"info:doi/" + UNKNOWN_DOI)), new OpenUrlKey(query3));
+
+    // The resolver receives the original parameters of a query.
+    resolutionCache.auMetadataChanged(AUID_1);
+    List<Map<String, String>> resolvedParams = new ArrayList<>();
+    urlsService.setQueryHook((key, params) -> resolvedParams.add(params));
+    runTestPostUrls("/urls/openurl", ListUtil.list(query), ACCESS_CONTENT,
+	HttpStatus.OK);
+    urlsService.setQueryHook(null);
+    assertEquals(ListUtil.list(query), resolvedParams);
+
+    // Again, from the cache.
+    runTestGetUrlsDoi(doi, AU_ADMIN, HttpStatus.OK, expectedUrl);
+    runTestGetUrlsDoi(UNKNOWN_DOI, AU_ADMIN, HttpStatus.OK, null);
+
+    // The resolver is shared by successive and concurrent requests.
+    OpenUrlResolver resolver = resolverEngine.getResolver();
+    List<String> unknownDois = new ArrayList<>();
+
+    for (int i = 0; i < 20; i++) {
+      unknownDois.add(UNKNOWN_DOI + "." + i);
+    }
+
+    runTestPostUrls("/urls/doi", unknownDois, ACCESS_CONTENT, HttpStatus.OK);
+    assertSame(resolver, resolverEngine.getResolver());
+
+    // A finished job discards the cached results.
+    resolutionCache.auMetadataChanged(AUID_1);
+    assertNull(resolutionCache.get(new OpenUrlKey(
+	Collections.singletonMap("rft_id", "info:doi/" + doi))));
+    runTestGetUrlsDoi(doi, ACCESS_CONTENT, HttpStatus.OK, expectedUrl);
+
+    // Multiple DOIs.
+    String doi2 = ITEM_METADATA_1_2.getScalarMap().get("doi");
+    List<UrlInfo> urlInfos = runTestPostUrls("/urls/doi",
+	ListUtil.list(doi2, UNKNOWN_DOI, doi), ACCESS_CONTENT, HttpStatus.OK);
+    assertEquals(3, urlInfos.size());
+    assertEquals(Collections.singletonMap("rft_id", "info:doi/" + doi2),
+	urlInfos.get(0).getParams());
+    assertEquals(ListUtil.list(
+	ITEM_METADATA_1_2.getMapMap().get("url").get("Access")),
+	urlInfos.get(0).getUrls());
+    assertEquals(0, urlInfos.get(1).getUrls().size());
+    assertEquals(ListUtil.list(expectedUrl), urlInfos.get(2).getUrls());
+
+    // No DOIs.
+    assertEquals(0, runTestPostUrls("/urls/doi", new ArrayList<String>(),
+	AU_ADMIN, HttpStatus.OK).size());
+
+    // Identical concurrent lookups, which share their resolution.
+    ConfigurationUtil.addFromArgs(UrlsApiServiceImpl.PARAM_BATCH_THREADS,
+	"20");
+    urlsService.stopBatchExecutor();
+    resolutionCache.auMetadataChanged(AUID_1);
+
+    long performedCount = urlsService.getPerformedQueryCount();
+    long coalescedCount = urlsService.getCoalescedQueryCount();
+    CountDownLatch release = new CountDownLatch(1);
+
+    // The query performed waits until all the others wait for it.
+    urlsService.setQueryHook((key, params) -> {
+      try {
+	release.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException ie) {
+	Thread.currentThread().interrupt();
+      }
+    });
+
+    ExecutorService requester = Executors.newSingleThreadExecutor();
+    Future<List<UrlInfo>> futureUrlInfos = requester.submit(() ->
+	runTestPostUrls("/urls/doi", Collections.nCopies(20, doi),
+	    ACCESS_CONTENT, HttpStatus.OK));
+
+    for (int i = 0; i < 300; i++) {
+      if (urlsService.getCoalescedQueryCount() - coalescedCount >= 19) {
+	break;
+      }
+
+      Thread.sleep(100);
+    }
+
+    assertEquals(19, urlsService.getCoalescedQueryCount() - coalescedCount);
+    assertEquals(1, urlsService.getInFlightQueryCount());
+
+    release.countDown();
+    urlInfos = futureUrlInfos.get(30, TimeUnit.SECONDS);
+    requester.shutdown();
+    urlsService.setQueryHook(null);
+
+    assertEquals(20, urlInfos.size());
+
+    for (UrlInfo urlInfo : urlInfos) {
+      assertEquals(ListUtil.list(expectedUrl), urlInfo.getUrls());
+    }
+
+    // The resolver ran once and the query is no longer in progress.
+    assertEquals(1, urlsService.getPerformedQueryCount() - performedCount);
+    assertEquals(0, urlsService.getInFlightQueryCount());
+    assertEquals(ListUtil.list(expectedUrl), resolutionCache.get(
+	new OpenUrlKey(Collections.singletonMap("rft_id", "info:doi/" + doi))));
+
+    // A failed query is not left in progress, nor cached.
+    resolutionCache.auMetadataChanged(AUID_1);
+    urlsService.setQueryHook((key, params) -> {
+      throw new IllegalStateException("Failed on purpose");
+    });
+    runTestPostUrls("/urls/doi", ListUtil.list(doi), ACCESS_CONTENT,
+	HttpStatus.INTERNAL_SERVER_ERROR);
+    urlsService.setQueryHook(null);
+
+    assertEquals(0, urlsService.getInFlightQueryCount());
+    assertNull(resolutionCache.get(
+	new OpenUrlKey(Collections.singletonMap("rft_id", "info:doi/" + doi))));
+
+    // The next identical query is performed again.
+    performedCount = urlsService.getPerformedQueryCount();
+    assertEquals(ListUtil.list(expectedUrl), runTestPostUrls("/urls/doi",
+	ListUtil.list(doi), ACCESS_CONTENT, HttpStatus.OK).get(0).getUrls());
+    assertEquals(1, urlsService.getPerformedQueryCount() - performedCount);
+    assertEquals(0, urlsService.getInFlightQueryCount());
+
+    ConfigurationUtil.addFromArgs(UrlsApiServiceImpl.PARAM_BATCH_THREADS,
+	String.valueOf(UrlsApiServiceImpl.DEFAULT_BATCH_THREADS));
+    urlsService.stopBatchExecutor();
+
+    // Too many lookups waiting.
+    ConfigurationUtil.addFromArgs(UrlsApiServiceImpl.PARAM_BATCH_THREADS, "1",
+	UrlsApiServiceImpl.PARAM_BATCH_MAX_QUEUED, "1");
+    urlsService.stopBatchExecutor();
+
+    URI uri = UriComponentsBuilder.fromUriString(
+	getTestUrlTemplate("/urls/doi")).build().encode().toUri();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    ACCESS_CONTENT.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.POST,
+	    new HttpEntity<List<?>>(Collections.nCopies(50, doi), headers),
+	    String.class);
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+	HttpStatus.valueOf(response.getStatusCode().value()));
+    assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+    // A batch that fits is still performed.
+    assertEquals(ListUtil.list(expectedUrl), runTestPostUrls("/urls/doi",
+	ListUtil.list(doi), ACCESS_CONTENT, HttpStatus.OK).get(0).getUrls());
+
+    ConfigurationUtil.addFromArgs(UrlsApiServiceImpl.PARAM_BATCH_THREADS,
+	String.valueOf(UrlsApiServiceImpl.DEFAULT_BATCH_THREADS),
+	UrlsApiServiceImpl.PARAM_BATCH_MAX_QUEUED,
+	String.valueOf(UrlsApiServiceImpl.DEFAULT_BATCH_MAX_QUEUED));
+    urlsService.stopBatchExecutor();
+
+    // From the DOI index.
+    ConfigurationUtil.addFromArgs(DoiIndex.PARAM_ENABLED, "true",
+	DoiIndex.PARAM_INDEX_FILE, getTempDirPath() + "/doi-index",
+	DoiIndex.PARAM_SORT_RUN_SIZE, "2");
+    doiIndex.rebuild();
+
+    // The index records the state of the database it was built from.
+    assertFalse(doiIndex.isStale());
+
+    // The index is sorted across runs and DOIs are case-insensitive.
+    assertEquals(ListUtil.list(expectedUrl),
+	doiIndex.lookup(doi.toUpperCase()));
+    assertEquals(ListUtil.list(
+	ITEM_METADATA_1_2.getMapMap().get("url").get("Access")),
+	doiIndex.lookup(doi2));
+    assertEquals(0, doiIndex.lookup(UNKNOWN_DOI).size());
+
+    runTestGetUrlsDoi(doi, ACCESS_CONTENT, HttpStatus.OK, expectedUrl);
+    runTestGetUrlsDoi(UNKNOWN_DOI, AU_ADMIN, HttpStatus.OK, null);
+
+    urlInfos = runTestPostUrls("/urls/doi", ListUtil.list(doi, UNKNOWN_DOI),
+	ACCESS_CONTENT, HttpStatus.OK);
+    assertEquals(Collections.singletonMap("rft_id", "info:doi/" + doi),
+	urlInfos.get(0).getParams());
+    assertEquals(ListUtil.list(expectedUrl), urlInfos.get(0).getUrls());
+    assertEquals(0, urlInfos.get(1).getUrls().size());
+
+    ConfigurationUtil.addFromArgs(DoiIndex.PARAM_ENABLED, "false");
+
+    // Definite misses, from the identifier filter, once the job monitor has
+    // seen that no job is unfinished.
+    ConfigurationUtil.addFromArgs(IdentifierFilter.PARAM_ENABLED, "true");
+    identifierFilter.rebuild();
+    jobMonitor.poll();
+    assertFalse(jobMonitor.hasPendingChanges());
+
+    assertTrue(identifierFilter.mightContainDoi(doi.toUpperCase()));
+    assertFalse(identifierFilter.mightContainDoi(UNKNOWN_DOI));
+    assertTrue(identifierFilter.mightContainIssn(
+	ITEM_METADATA_1_1.getMapMap().get("issn").get("p_issn")));
+    assertTrue(identifierFilter.excludes(
+	Collections.singletonMap("rft_id", "info:doi/" + UNKNOWN_DOI)));
+    assertFalse(identifierFilter.excludes(
+	Collections.singletonMap("rft_id", "info:doi/" + doi)));
+
+    // No query is excluded while a scheduled job has not been seen finished.
+    jobMonitor.jobScheduled();
+    assertTrue(jobMonitor.hasPendingChanges());
+    assertFalse(identifierFilter.excludes(
+	Collections.singletonMap("rft_id", "info:doi/" + UNKNOWN_DOI)));
+    jobMonitor.poll();
+    assertTrue(identifierFilter.excludes(
+	Collections.singletonMap("rft_id", "info:doi/" + UNKNOWN_DOI)));
+
+    // Other parameters may lead to results.
+    query = new HashMap<>();
+    query.put("rft_id", "info:doi/" + UNKNOWN_DOI);
+    query.put("rft.jtitle", "BioRisk");
+    assertFalse(identifierFilter.excludes(query));
+
+    // ISSNs only in the title database, which is searched with the ISSNs as
+    // given in the query.
+    String tdbOnlyIssn = "1234-5679";
+    Properties tdbProps = new Properties();
+    tdbProps.setProperty("title", "Title Database Only");
+    tdbProps.setProperty("journalTitle", "Title Database Only");
+    tdbProps.setProperty("issn", tdbOnlyIssn);
+    tdbProps.setProperty("plugin",
+	"org.lockss.plugin.simulated.SimulatedPlugin");
+    tdbProps.setProperty("param.1.key", "root");
+    tdbProps.setProperty("param.1.value", getTempDirPath() + "/tdbonly");
+
+    Tdb tdb = new Tdb();
+    tdb.addTdbAuFromProperties(tdbProps);
+    ConfigurationUtil.setTdb(tdb);
+
+    assertFalse(identifierFilter.mightContainIssn(tdbOnlyIssn));
+    assertFalse(identifierFilter.excludes(
+	Collections.singletonMap("rft.issn", tdbOnlyIssn)));
+    assertFalse(identifierFilter.excludes(
+	Collections.singletonMap("rft.issn", tdbOnlyIssn.replace("-", ""))));
+    assertTrue(identifierFilter.excludes(
+	Collections.singletonMap("rft.issn", "0000-0019")));
+
+    Map<String, String> tdbOnlyQuery =
+	Collections.singletonMap("rft.issn", tdbOnlyIssn);
+    resolvedParams.clear();
+    urlsService.setQueryHook((key, params) -> resolvedParams.add(params));
+    runTestPostUrls("/urls/openurl", ListUtil.list(tdbOnlyQuery),
+	ACCESS_CONTENT, HttpStatus.OK);
+    urlsService.setQueryHook(null);
+    assertEquals(ListUtil.list(tdbOnlyQuery), resolvedParams);
+
+    ConfigurationUtil.setTdb(new Tdb());
+
+    runTestGetUrlsDoi(doi, ACCESS_CONTENT, HttpStatus.OK, expectedUrl);
+    runTestGetUrlsDoi(UNKNOWN_DOI, AU_ADMIN, HttpStatus.OK, null);
+
+    // The identifiers of an AU are added when its job finishes.
+    identifierFilter.auMetadataChanged(AUID_2);
+    assertTrue(identifierFilter.mightContainIssn(
+	ITEM_METADATA_2_1.getMapMap().get("issn").get("e_issn")));
+
+    ConfigurationUtil.addFromArgs(IdentifierFilter.PARAM_ENABLED, "false");
+
     log.debug2("Done");
   }
 
@@ -852,8 +2935,11 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
 
   /**
    * Runs the getUrlsOpenUrl()-related authenticated-specific tests.
+   *
+   * @throws Exception
+   *           if there are problems.
    */
-  private void getUrlsOpenUrlAuthenticatedTest() {
+  private void getUrlsOpenUrlAuthenticatedTest() throws Exception {
     log.debug2("Invoked");
 
     // No OpenURL params.
@@ -903,8 +2989,11 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
 
   /**
    * Runs the getUrlsOpenUrl()-related authentication-independent tests.
+   *
+   * @throws Exception
+   *           if there are problems.
    */
-  private void getUrlsOpenUrlCommonTest() {
+  private void getUrlsOpenUrlCommonTest() throws Exception {
     log.debug2("Invoked");
 
     // No OpenURL params.
@@ -956,9 +3045,149 @@ public class TestApiServiceImpls extends SpringLockssTestCase4 {
 
     runTestGetUrlsOpenUrl(params, ACCESS_CONTENT, HttpStatus.OK, expectedUrl);
 
+    // Multiple OpenURL queries.
+    Map<String, String> query1 = new HashMap<>();
+    query1.put("rft.issn",
+	ITEM_METADATA_1_3.getMapMap().get("issn").get("p_issn"));
+    query1.put("rft.volume", ITEM_METADATA_1_3.getScalarMap().get("volume"));
+    query1.put("rft.spage",
+	ITEM_METADATA_1_3.getScalarMap().get("start_page"));
+
+    Map<String, String> query2 =
+	Collections.singletonMap("rft_id", "info:doi/" + UNKNOWN_DOI);
+
+    List<UrlInfo> urlInfos = runTestPostUrls("/urls/openurl",
+	ListUtil.list(query1, query2), AU_ADMIN, HttpStatus.OK);
+    assertEquals(2, urlInfos.size());
+    assertEquals(query1, urlInfos.get(0).getParams());
+    assertEquals(ListUtil.list(
+	ITEM_METADATA_1_3.getMapMap().get("url").get("Access")),
+	urlInfos.get(0).getUrls());
+    assertEquals(query2, urlInfos.get(1).getParams());
+    assertEquals(0, urlInfos.get(1).getUrls().size());
+
+    // From the citation index.
+    ConfigurationUtil.addFromArgs(CitationIndex.PARAM_ENABLED, "true");
+    citationIndex.rebuild();
+
+    Map<String, String> query3 = new HashMap<>();
+    query3.put("issn", "1313-2652");
+    query3.put("volume", ITEM_METADATA_1_3.getScalarMap().get("volume"));
+    query3.put("spage", ITEM_METADATA_1_3.getScalarMap().get("start_page"));
+
+    assertEquals(ListUtil.list(
+	ITEM_METADATA_1_3.getMapMap().get("url").get("Access")),
+	citationIndex.lookup(new OpenUrlKey(query1)));
+    assertEquals(ListUtil.list(
+	ITEM_METADATA_1_3.getMapMap().get("url").get("Access")),
+	citationIndex.lookup(new OpenUrlKey(query3)));
+
+    // Queries with other parameters are left to the resolver.
+    query3.put("rft.atitle", "Standardised methods");
+    assertNull(citationIndex.lookup(new OpenUrlKey(query3)));
+    assertNull(citationIndex.lookup(new OpenUrlKey(query2)));
+
+    urlInfos = runTestPostUrls("/urls/openurl", ListUtil.list(query1),
+	ACCESS_CONTENT, HttpStatus.OK);
+    assertEquals(query1, urlInfos.get(0).getParams());
+    assertEquals(ListUtil.list(
+	ITEM_METADATA_1_3.getMapMap().get("url").get("Access")),
+	urlInfos.get(0).getUrls());
+
+    // The citations of an AU are replaced when its job finishes.
+    citationIndex.reindexAu(AUID_2);
+
+    Map<String, String> query4 = new HashMap<>();
+    query4.put("rft.eissn",
+	ITEM_METADATA_2_1.getMapMap().get("issn").get("e_issn"));
+    query4.put("rft.volume", ITEM_METADATA_2_1.getScalarMap().get("volume"));
+    query4.put("rft.spage",
+	ITEM_METADATA_2_1.getScalarMap().get("start_page"));
+
+    assertEquals(ListUtil.list(
+	ITEM_METADATA_2_1.getMapMap().get("url").get("Access")),
+	citationIndex.lookup(new OpenUrlKey(query4)));
+
+    // Items of an AU in issues that restart their page numbering share the
+    // citation key without issue, which then matches both access URLs.
+    ItemMetadata issue1Item = new ObjectMapper().readValue(
+	new ObjectMapper().writeValueAsString(ITEM_METADATA_1_3),
+	ItemMetadata.class);
+    issue1Item.getScalarMap().put("issue", "1");
+    issue1Item.getMapMap().get("url").put("Access", "http://example.com/1");
+
+    ItemMetadata issue2Item = new ObjectMapper().readValue(
+	new ObjectMapper().writeValueAsString(issue1Item), ItemMetadata.class);
+    issue2Item.getScalarMap().put("issue", "2");
+    issue2Item.getMapMap().get("url").put("Access", "http://example.com/2");
+
+    Map<String, Set<String>> urlsByKey = new HashMap<>();
+    CitationIndex.addCitationKeys(issue1Item, urlsByKey);
+    CitationIndex.addCitationKeys(issue2Item, urlsByKey);
+
+    String issn = ITEM_METADATA_1_3.getMapMap().get("issn").get("p_issn");
+    String volume = ITEM_METADATA_1_3.getScalarMap().get("volume");
+    String startPage = ITEM_METADATA_1_3.getScalarMap().get("start_page");
+
+    assertEquals(2, urlsByKey.get(CitationIndex.citationKey(issn, volume,
+	null, startPage)).size());
+    assertEquals(Collections.singleton("http://example.com/1"),
+	urlsByKey.get(CitationIndex.citationKey(issn, volume, "1",
+	    startPage)));
+
+    ConfigurationUtil.addFromArgs(CitationIndex.PARAM_ENABLED, "false");
+
     log.debug2("Done");
   }
 
+  /**
+   * Performs a POST operation for the URLs of multiple DOIs or OpenURL
+   * queries.
+   *
+   * @param path
+   *          A String with the path of the request.
+   * @param inputs
+   *          A {@code List<?>} with the DOIs or OpenURL queries.
+   * @param credentials
+   *          A Credentials with the request credentials.
+   * @param expectedStatus
+   *          An HttpStatus with the HTTP status of the result.
+   * @return a {@code List<UrlInfo>} with the URL information of each input.
+   */
+  private List<UrlInfo> runTestPostUrls(String path, List<?> inputs,
+      Credentials credentials, HttpStatus expectedStatus) {
+    log.debug2("path = {}", () -> path);
+    log.debug2("inputs = {}", () -> inputs);
+
+    URI uri = UriComponentsBuilder.fromUriString(getTestUrlTemplate(path))
+	.build().encode().toUri();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    credentials.setUpBasicAuthentication(headers);
+
+    ResponseEntity<String> response =
+	new TestRestTemplate(RestUtil.getRestTemplateBuilder(0, 0))
+	.exchange(uri, HttpMethod.POST,
+	    new HttpEntity<List<?>>(inputs, headers), String.class);
+    assertEquals(expectedStatus, HttpStatus.valueOf(response.getStatusCode()
+	.value()));
+
+    List<UrlInfo> result = null;
+
+    if (isSuccess(expectedStatus)) {
+      try {
+	result = new ObjectMapper().readValue(response.getBody(),
+	    new TypeReference<List<UrlInfo>>() {});
+      } catch (IOException ioe) {
+	fail("Cannot parse response: " + ioe);
+      }
+    }
+
+    log.debug2("result = {}", result);
+    return result;
+  }
+
   /**
    * Performs a GET operation for the URL that results from performing an
    * OpenURL query.
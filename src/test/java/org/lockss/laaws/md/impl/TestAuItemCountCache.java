@@ -0,0 +1,114 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lockss.test.LockssTestCase4;
+
+/**
+ * Test class for org.lockss.laaws.md.impl.AuItemCountCache.
+ */
+public class TestAuItemCountCache extends LockssTestCase4 {
+  private static final String AUID = "org|lockss|plugin|TestPlugin&base_url~x";
+
+  private MetadataJobMonitor jobMonitor;
+  private CountingMetadataServiceSql mdSql;
+  private AuItemCountCache cache;
+
+  @Before
+  public void setUpCache() {
+    jobMonitor = new MetadataJobMonitor();
+    mdSql = new CountingMetadataServiceSql();
+    cache = new AuItemCountCache(jobMonitor, mdSql);
+  }
+
+  @After
+  public void tearDownCache() {
+    jobMonitor.stop();
+  }
+
+  /**
+   * Tests that a count is computed once per metadata extraction.
+   */
+  @Test
+  public void testExtractionTime() throws Exception {
+    mdSql.itemCount = 5;
+    assertEquals(5, cache.getItemCount(AUID, 1000L));
+    assertEquals(1, mdSql.queryCount);
+
+    // From the cache.
+    mdSql.itemCount = 6;
+    assertEquals(5, cache.getItemCount(AUID, 1000L));
+    assertEquals(1, mdSql.queryCount);
+
+    // Another extraction.
+    assertEquals(6, cache.getItemCount(AUID, 2000L));
+    assertEquals(2, mdSql.queryCount);
+  }
+
+  /**
+   * Tests that a count is discarded when a job for its AU finishes.
+   */
+  @Test
+  public void testJobFinished() throws Exception {
+    mdSql.itemCount = 5;
+    assertEquals(5, cache.getItemCount(AUID, 1000L));
+
+    // A job for another AU.
+    mdSql.itemCount = 6;
+    jobMonitor.notifyAuMetadataChanged(AUID + "2");
+    assertEquals(5, cache.getItemCount(AUID, 1000L));
+    assertEquals(1, mdSql.queryCount);
+
+    // A job for the AU, with the same extraction time.
+    jobMonitor.notifyAuMetadataChanged(AUID);
+    assertEquals(6, cache.getItemCount(AUID, 1000L));
+    assertEquals(2, mdSql.queryCount);
+  }
+
+  /**
+   * A MetadataServiceSql that provides a set item count and counts the
+   * queries.
+   */
+  private static class CountingMetadataServiceSql extends MetadataServiceSql {
+    private long itemCount = 0;
+    private int queryCount = 0;
+
+    @Override
+    public long getAuItemCount(String auid) {
+      queryCount++;
+      return itemCount;
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.lockss.metadata.ItemMetadata;
+import org.lockss.test.LockssTestCase4;
+import org.lockss.util.ListUtil;
+
+/**
+ * Test class for org.lockss.laaws.md.impl.ItemMetadataCompactor.
+ */
+public class TestItemMetadataCompactor extends LockssTestCase4 {
+  private static final List<String> NAMES =
+      ListUtil.list("au_id", "publisher_name", "issn", "item_title");
+
+  /**
+   * Tests that the compacted items expand back to the original ones.
+   */
+  @Test
+  public void testRoundTrip() {
+    List<ItemMetadata> items = ListUtil.list(
+	newItem("Item 1", "1234-5679"),
+	newItem("Item 2", "1234-5679"),
+	newItem("Item 3", "1234-5679"));
+
+    ItemMetadataCompactor compactor = new ItemMetadataCompactor(items, NAMES);
+
+    // The elements common to all the items are hoisted.
+    ItemMetadata auConstants = compactor.getAuConstants();
+    assertEquals("auid", auConstants.getScalarMap().get("au_id"));
+    assertEquals("Publisher",
+	auConstants.getScalarMap().get("publisher_name"));
+    assertEquals(Collections.singletonMap("p_issn", "1234-5679"),
+	auConstants.getMapMap().get("issn"));
+    assertFalse(auConstants.getScalarMap().containsKey("item_title"));
+
+    // The compacted items do not have them.
+    List<ItemMetadata> compacted = compactor.getItems();
+    assertEquals(items.size(), compacted.size());
+
+    for (ItemMetadata item : compacted) {
+      assertFalse(item.getScalarMap().containsKey("au_id"));
+      assertFalse(item.getScalarMap().containsKey("publisher_name"));
+      assertFalse(item.getMapMap().containsKey("issn"));
+      assertTrue(item.getScalarMap().containsKey("item_title"));
+    }
+
+    assertItemsEqual(items, expand(auConstants, compacted));
+
+    // The original items are not modified.
+    assertEquals("auid", items.get(0).getScalarMap().get("au_id"));
+    assertTrue(items.get(0).getMapMap().containsKey("issn"));
+  }
+
+  /**
+   * Tests that elements with different values in some item are not hoisted.
+   */
+  @Test
+  public void testNotConstant() {
+    List<ItemMetadata> items = ListUtil.list(
+	newItem("Item 1", "1234-5679"),
+	newItem("Item 2", "0000-0019"));
+    items.get(1).getScalarMap().remove("publisher_name");
+
+    ItemMetadataCompactor compactor = new ItemMetadataCompactor(items, NAMES);
+    ItemMetadata auConstants = compactor.getAuConstants();
+
+    assertEquals(Collections.singletonMap("au_id", "auid"),
+	auConstants.getScalarMap());
+    assertTrue(auConstants.getMapMap().isEmpty());
+    assertItemsEqual(items, expand(auConstants, compactor.getItems()));
+  }
+
+  /**
+   * Tests that nothing is hoisted out of a page without items or when no
+   * element is common to all the items.
+   */
+  @Test
+  public void testNothingHoisted() {
+    List<ItemMetadata> noItems = new ArrayList<>();
+    ItemMetadataCompactor compactor =
+	new ItemMetadataCompactor(noItems, NAMES);
+    assertSame(noItems, compactor.getItems());
+    assertTrue(compactor.getAuConstants().getScalarMap().isEmpty());
+
+    List<ItemMetadata> items = ListUtil.list(
+	newItem("Item 1", "1234-5679"),
+	newItem("Item 2", "0000-0019"));
+    compactor = new ItemMetadataCompactor(items,
+	ListUtil.list("item_title", "issn"));
+    assertSame(items, compactor.getItems());
+  }
+
+  /**
+   * Provides a new item.
+   *
+   * @param title
+   *          A String with the title of the item.
+   * @param issn
+   *          A String with the print ISSN of the item.
+   * @return an ItemMetadata with the item.
+   */
+  private static ItemMetadata newItem(String title, String issn) {
+    ItemMetadata item = new ItemMetadata();
+
+    Map<String, String> scalarMap = new HashMap<>();
+    scalarMap.put("au_id", "auid");
+    scalarMap.put("publisher_name", "Publisher");
+    scalarMap.put("item_title", title);
+    item.setScalarMap(scalarMap);
+
+    Map<String, Map<String, String>> mapMap = new HashMap<>();
+    mapMap.put("issn", new HashMap<>(Collections.singletonMap("p_issn", issn)));
+    item.setMapMap(mapMap);
+
+    return item;
+  }
+
+  /**
+   * Provides the items resulting from adding back the hoisted elements to
+   * compacted items.
+   *
+   * @param auConstants
+   *          An ItemMetadata with the hoisted elements.
+   * @param compacted
+   *          A {@code List<ItemMetadata>} with the compacted items.
+   * @return a {@code List<ItemMetadata>} with the expanded items.
+   */
+  private static List<ItemMetadata> expand(ItemMetadata auConstants,
+      List<ItemMetadata> compacted) {
+    List<ItemMetadata> result = new ArrayList<>();
+
+    for (ItemMetadata item : compacted) {
+      ItemMetadata expanded = new ItemMetadata();
+      expanded.setScalarMap(new HashMap<>(item.getScalarMap()));
+      expanded.getScalarMap().putAll(auConstants.getScalarMap());
+      expanded.setMapMap(new HashMap<>(item.getMapMap()));
+      expanded.getMapMap().putAll(auConstants.getMapMap());
+      result.add(expanded);
+    }
+
+    return result;
+  }
+
+  private static void assertItemsEqual(List<ItemMetadata> expected,
+      List<ItemMetadata> actual) {
+    assertEquals(expected.size(), actual.size());
+
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getScalarMap(),
+	  actual.get(i).getScalarMap());
+      assertEquals(expected.get(i).getMapMap(), actual.get(i).getMapMap());
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import org.lockss.metadata.ItemMetadata;
+import org.lockss.metadata.ItemMetadataPage;
+import org.lockss.test.LockssTestCase4;
+import org.lockss.util.ListUtil;
+
+/**
+ * Test class for org.lockss.laaws.md.impl.ItemMetadataInterner.
+ */
+public class TestItemMetadataInterner extends LockssTestCase4 {
+  /**
+   * Tests that equal strings in the items of a page share a single instance.
+   */
+  @Test
+  public void testIntern() {
+    ItemMetadata item1 = newItem("Item 1");
+    ItemMetadata item2 = newItem("Item 2");
+    ItemMetadata expected1 = newItem("Item 1");
+    ItemMetadata expected2 = newItem("Item 2");
+
+    // The items do not share any string instances to start with.
+    assertNotSame(item1.getScalarMap().get("publisher_name"),
+	item2.getScalarMap().get("publisher_name"));
+
+    ItemMetadataInterner interner = new ItemMetadataInterner();
+    interner.intern(item1);
+    interner.intern(item2);
+
+    // The contents of the items are not changed.
+    assertItemEquals(expected1, item1);
+    assertItemEquals(expected2, item2);
+
+    // Equal values are the same instance.
+    assertSame(item1.getScalarMap().get("publisher_name"),
+	item2.getScalarMap().get("publisher_name"));
+    assertSame(item1.getSetMap().get("keyword").iterator().next(),
+	item2.getSetMap().get("keyword").iterator().next());
+    assertSame(item1.getListMap().get("author").get(0),
+	item2.getListMap().get("author").get(0));
+    assertSame(item1.getMapMap().get("issn").get("p_issn"),
+	item2.getMapMap().get("issn").get("p_issn"));
+
+    // Different values are not.
+    assertNotSame(item1.getScalarMap().get("item_title"),
+	item2.getScalarMap().get("item_title"));
+
+    // Equal names are the same instance.
+    assertSame(getKey(item1.getScalarMap(), "publisher_name"),
+	getKey(item2.getScalarMap(), "publisher_name"));
+    assertSame(getKey(item1.getMapMap().get("issn"), "p_issn"),
+	getKey(item2.getMapMap().get("issn"), "p_issn"));
+
+    // Null elements are kept.
+    assertTrue(item1.getSetMap().containsKey("subject"));
+    assertNull(item1.getSetMap().get("subject"));
+  }
+
+  /**
+   * Tests that interning a null page is harmless.
+   */
+  @Test
+  public void testInternNullPage() {
+    assertNull(ItemMetadataInterner.intern((ItemMetadataPage)null));
+  }
+
+  /**
+   * Provides a new item with new instances of its strings.
+   *
+   * @param title
+   *          A String with the title of the item.
+   * @return an ItemMetadata with the item.
+   */
+  private static ItemMetadata newItem(String title) {
+    ItemMetadata item = new ItemMetadata();
+
+    Map<String, String> scalarMap = new HashMap<>();
+    scalarMap.put(new String("publisher_name"), new String("Publisher"));
+    scalarMap.put(new String("item_title"), new String(title));
+    item.setScalarMap(scalarMap);
+
+    Map<String, Set<String>> setMap = new HashMap<>();
+    setMap.put(new String("keyword"),
+	new LinkedHashSet<>(Collections.singleton(new String("Keyword"))));
+    setMap.put(new String("subject"), null);
+    item.setSetMap(setMap);
+
+    Map<String, List<String>> listMap = new HashMap<>();
+    listMap.put(new String("author"),
+	new ArrayList<>(ListUtil.list(new String("Author"))));
+    item.setListMap(listMap);
+
+    Map<String, Map<String, String>> mapMap = new HashMap<>();
+    Map<String, String> issns = new HashMap<>();
+    issns.put(new String("p_issn"), new String("1234-5679"));
+    mapMap.put(new String("issn"), issns);
+    item.setMapMap(mapMap);
+
+    return item;
+  }
+
+  /**
+   * Provides the instance of a key of a map.
+   *
+   * @param map
+   *          A {@code Map<String, ?>} with the map.
+   * @param key
+   *          A String with a string equal to the key.
+   * @return a String with the key instance in the map.
+   */
+  private static String getKey(Map<String, ?> map, String key) {
+    for (String mapKey : map.keySet()) {
+      if (mapKey.equals(key)) {
+	return mapKey;
+      }
+    }
+
+    return null;
+  }
+
+  private static void assertItemEquals(ItemMetadata expected,
+      ItemMetadata actual) {
+    assertEquals(expected.getScalarMap(), actual.getScalarMap());
+    assertEquals(expected.getSetMap(), actual.getSetMap());
+    assertEquals(expected.getListMap(), actual.getListMap());
+    assertEquals(expected.getMapMap(), actual.getMapMap());
+  }
+}
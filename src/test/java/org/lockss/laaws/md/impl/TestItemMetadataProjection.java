@@ -0,0 +1,176 @@
+/*
+
+Copyright (c) 2000-2026 Board of Trustees of Leland Stanford Jr. University,
+all rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation and/or
+other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors
+may be used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ */
+package org.lockss.laaws.md.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import org.lockss.metadata.ItemMetadata;
+import org.lockss.test.LockssTestCase4;
+import org.lockss.util.ListUtil;
+
+/**
+ * Test class for org.lockss.laaws.md.impl.ItemMetadataProjection.
+ */
+public class TestItemMetadataProjection extends LockssTestCase4 {
+  /**
+   * Tests the projections that include all the metadata elements.
+   */
+  @Test
+  public void testAll() {
+    assertSame(ItemMetadataProjection.ALL,
+	ItemMetadataProjection.fromFields(null));
+    assertSame(ItemMetadataProjection.ALL,
+	ItemMetadataProjection.fromFields(Collections.emptyList()));
+    assertSame(ItemMetadataProjection.ALL,
+	ItemMetadataProjection.fromFields(ListUtil.list(" , ", null)));
+
+    ItemMetadata item = newItem();
+    assertSame(item, ItemMetadataProjection.ALL.project(item));
+  }
+
+  /**
+   * Tests the projection of elements of each kind.
+   */
+  @Test
+  public void testElements() {
+    ItemMetadataProjection projection = ItemMetadataProjection.fromFields(
+	ListUtil.list("doi,keyword", " author ", "issn", "unknown"));
+    assertFalse(projection.isAll());
+
+    ItemMetadata item = newItem();
+    ItemMetadata projected = projection.project(item);
+
+    assertEquals(item.getId(), projected.getId());
+    assertEquals(Collections.singletonMap("doi", "10.1234/item"),
+	projected.getScalarMap());
+    assertEquals(item.getSetMap(), projected.getSetMap());
+    assertEquals(item.getListMap(), projected.getListMap());
+    assertEquals(Collections.singletonMap("issn", item.getMapMap()
+	.get("issn")), projected.getMapMap());
+  }
+
+  /**
+   * Tests the projection of single entries of nested maps.
+   */
+  @Test
+  public void testMapEntries() {
+    ItemMetadata item = newItem();
+
+    // Single entries.
+    ItemMetadata projected = ItemMetadataProjection.fromFields(
+	ListUtil.list("url.Access", "url.Full Text", "issn.p_issn"))
+	.project(item);
+
+    Map<String, String> urls = new HashMap<>();
+    urls.put("Access", "http://example.com/access");
+    urls.put("Full Text", "http://example.com/fulltext");
+    assertEquals(urls, projected.getMapMap().get("url"));
+    assertEquals(Collections.singletonMap("p_issn", "1234-5679"),
+	projected.getMapMap().get("issn"));
+    assertTrue(projected.getScalarMap().isEmpty());
+
+    // A whole map element includes all its entries.
+    projected = ItemMetadataProjection.fromFields(
+	ListUtil.list("url.Access", "url")).project(item);
+    assertEquals(item.getMapMap().get("url"),
+	projected.getMapMap().get("url"));
+
+    // Maps without any of the selected entries are left out.
+    projected = ItemMetadataProjection.fromFields(
+	ListUtil.list("url.Unknown", "doi")).project(item);
+    assertFalse(projected.getMapMap().containsKey("url"));
+
+    // The projected item is not modified.
+    assertEquals(3, item.getMapMap().get("url").size());
+    assertEquals(2, item.getMapMap().get("issn").size());
+  }
+
+  /**
+   * Tests the projection of a list of items.
+   */
+  @Test
+  public void testList() {
+    List<ItemMetadata> items = ListUtil.list(newItem(), newItem());
+    assertSame(items, ItemMetadataProjection.ALL.project(items));
+
+    List<ItemMetadata> projected = ItemMetadataProjection
+	.fromFields(ListUtil.list("doi")).project(items);
+    assertEquals(2, projected.size());
+
+    for (ItemMetadata item : projected) {
+      assertEquals(Collections.singletonMap("doi", "10.1234/item"),
+	  item.getScalarMap());
+      assertTrue(item.getMapMap().isEmpty());
+    }
+  }
+
+  /**
+   * Provides a new item.
+   *
+   * @return an ItemMetadata with the item.
+   */
+  private static ItemMetadata newItem() {
+    ItemMetadata item = new ItemMetadata();
+
+    Map<String, String> scalarMap = new HashMap<>();
+    scalarMap.put("doi", "10.1234/item");
+    scalarMap.put("item_title", "Title");
+    item.setScalarMap(scalarMap);
+
+    Map<String, Set<String>> setMap = new HashMap<>();
+    setMap.put("keyword", new LinkedHashSet<>(ListUtil.list("Keyword")));
+    item.setSetMap(setMap);
+
+    Map<String, List<String>> listMap = new HashMap<>();
+    listMap.put("author", ListUtil.list("Author"));
+    item.setListMap(listMap);
+
+    Map<String, Map<String, String>> mapMap = new HashMap<>();
+    Map<String, String> urls = new HashMap<>();
+    urls.put("Access", "http://example.com/access");
+    urls.put("Full Text", "http://example.com/fulltext");
+    urls.put("PDF", "http://example.com/pdf");
+    mapMap.put("url", urls);
+    Map<String, String> issns = new HashMap<>();
+    issns.put("p_issn", "1234-5679");
+    issns.put("e_issn", "0000-0019");
+    mapMap.put("issn", issns);
+    item.setMapMap(mapMap);
+
+    return item;
+  }
+}
@@ -43,6 +43,7 @@ import org.lockss.util.rest.status.ApiStatus;
 import org.lockss.log.L4JLogger;
 import org.lockss.app.*;
 import org.lockss.spring.test.SpringLockssTestCase4;
+import org.lockss.test.ConfigurationUtil;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
@@ -50,10 +51,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit4.SpringRunner;
 
 /**
@@ -115,6 +118,7 @@ public class TestStatusApiServiceImpl extends SpringLockssTestCase4 {
 
     runGetSwaggerDocsTest(getTestUrlTemplate("/v3/api-docs"));
     getStatusTest();
+    checkReadyTest();
 
     log.debug2("Done");
   }
@@ -199,6 +203,95 @@ public class TestStatusApiServiceImpl extends SpringLockssTestCase4 {
     log.debug2("Done");
   }
 
+  /**
+   * Runs the readiness check tests.
+   */
+  private void checkReadyTest() {
+    log.debug2("Invoked");
+
+    ApiStatus notReady = new ApiStatus("swagger/swagger.yaml");
+    notReady.setReady(false);
+    notReady.setStartupStatus(ApiStatus.StartupStatus.NONE);
+
+    // By default, the request waits for the service to become ready.
+    ConfigurationUtil.addFromArgs(BaseMdApiServiceImpl.PARAM_FAIL_FAST,
+	"false");
+    ReadinessTestService service = new ReadinessTestService(notReady);
+    assertTrue(service.checkReady());
+    assertEquals(1, service.waitCount);
+    assertNull(service.getRetryAfterHeader());
+
+    // In fail-fast mode, the request is rejected without waiting, with a
+    // Retry-After header clamped to the maximum.
+    ConfigurationUtil.addFromArgs(BaseMdApiServiceImpl.PARAM_FAIL_FAST, "true",
+	BaseMdApiServiceImpl.PARAM_PHASE_DURATION, "1h",
+	BaseMdApiServiceImpl.PARAM_MIN_RETRY_AFTER, "5s",
+	BaseMdApiServiceImpl.PARAM_MAX_RETRY_AFTER, "2m");
+    service = new ReadinessTestService(notReady);
+    assertFalse(service.checkReady());
+    assertEquals(0, service.waitCount);
+    assertEquals("120", service.getRetryAfterHeader());
+
+    // The Retry-After header clamped to the minimum.
+    ConfigurationUtil.addFromArgs(BaseMdApiServiceImpl.PARAM_PHASE_DURATION,
+	"1ms");
+    service = new ReadinessTestService(notReady);
+    assertFalse(service.checkReady());
+    assertEquals("5", service.getRetryAfterHeader());
+
+    // The Retry-After header within the bounds: All the phases after the
+    // first one remain.
+    ConfigurationUtil.addFromArgs(BaseMdApiServiceImpl.PARAM_PHASE_DURATION,
+	"10s", BaseMdApiServiceImpl.PARAM_MAX_RETRY_AFTER, "1h");
+    service = new ReadinessTestService(notReady);
+    assertFalse(service.checkReady());
+    assertEquals(String.valueOf(10
+	* (ApiStatus.StartupStatus.values().length - 1)),
+	service.getRetryAfterHeader());
+
+    // In fail-fast mode, a ready service accepts the request right away.
+    ApiStatus ready = new ApiStatus("swagger/swagger.yaml");
+    ready.setReady(true);
+    ready.setStartupStatus(ApiStatus.StartupStatus.AUS_STARTED);
+    service = new ReadinessTestService(ready);
+    assertTrue(service.checkReady());
+    assertEquals(0, service.waitCount);
+    assertNull(service.getRetryAfterHeader());
+
+    ConfigurationUtil.addFromArgs(BaseMdApiServiceImpl.PARAM_FAIL_FAST,
+	"false");
+
+    log.debug2("Done");
+  }
+
+  /**
+   * A service with a fixed status that records its waits for readiness.
+   */
+  private static class ReadinessTestService extends BaseMdApiServiceImpl {
+    private final ApiStatus apiStatus;
+    private int waitCount = 0;
+
+    ReadinessTestService(ApiStatus apiStatus) {
+      this.apiStatus = apiStatus;
+      response = new MockHttpServletResponse();
+    }
+
+    @Override
+    boolean waitUntilReady() {
+      waitCount++;
+      return true;
+    }
+
+    @Override
+    ApiStatus getApiStatus() {
+      return apiStatus;
+    }
+
+    String getRetryAfterHeader() {
+      return response.getHeader(HttpHeaders.RETRY_AFTER);
+    }
+  }
+
   /**
    * Provides the URL template to be tested.
    * 